@@ -1,7 +1,10 @@
 package com.lavong55.auth;
 
+import com.lavong55.customer.CustomerPrincipal;
+import com.lavong55.jwt.TokenPair;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -24,4 +27,26 @@ public class AuthenticationController {
                 .header(HttpHeaders.AUTHORIZATION, response.token())
                 .body(response);
     }
+
+    @PostMapping("refresh")
+    public ResponseEntity<TokenPair> refresh(@RequestBody RefreshTokenRequest request) {
+        TokenPair tokens = authenticationService.refresh(request);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.AUTHORIZATION, tokens.accessToken())
+                .body(tokens);
+    }
+
+    @PostMapping("logout")
+    public ResponseEntity<Void> logout(@RequestBody RefreshTokenRequest request) {
+        authenticationService.logout(request);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Authenticated by the access token, unlike logout.
+    @PostMapping("logout-all")
+    public ResponseEntity<Void> logoutEverywhere(
+            @AuthenticationPrincipal CustomerPrincipal principal) {
+        authenticationService.logoutEverywhere(principal);
+        return ResponseEntity.noContent().build();
+    }
 }
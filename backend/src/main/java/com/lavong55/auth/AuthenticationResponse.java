@@ -4,6 +4,7 @@ import com.lavong55.customer.CustomerDTO;
 
 public record AuthenticationResponse(
         String token,
+        String refreshToken,
         CustomerDTO customerDTO) {
 
 }
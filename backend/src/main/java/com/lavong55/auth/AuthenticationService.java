@@ -3,7 +3,9 @@ package com.lavong55.auth;
 import com.lavong55.customer.Customer;
 import com.lavong55.customer.CustomerDTO;
 import com.lavong55.customer.CustomerDTOMapper;
-import com.lavong55.jwt.JWTUtil;
+import com.lavong55.customer.CustomerPrincipal;
+import com.lavong55.jwt.RefreshTokenService;
+import com.lavong55.jwt.TokenPair;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -14,12 +16,12 @@ public class AuthenticationService {
 
     private final AuthenticationManager authenticationManager;
     private final CustomerDTOMapper customerDTOMapper;
-    private final JWTUtil jwtUtil;
+    private final RefreshTokenService refreshTokenService;
 
-    public AuthenticationService(AuthenticationManager authenticationManager, CustomerDTOMapper customerDTOMapper, JWTUtil jwtUtil) {
+    public AuthenticationService(AuthenticationManager authenticationManager, CustomerDTOMapper customerDTOMapper, RefreshTokenService refreshTokenService) {
         this.authenticationManager = authenticationManager;
         this.customerDTOMapper = customerDTOMapper;
-        this.jwtUtil = jwtUtil;
+        this.refreshTokenService = refreshTokenService;
     }
 
     public AuthenticationResponse login (AuthenticationRequest request) {
@@ -31,7 +33,20 @@ public class AuthenticationService {
         );
         Customer principal = (Customer) authentication.getPrincipal();
         CustomerDTO customerDTO = customerDTOMapper.apply(principal);
-        String token = jwtUtil.issueToken(customerDTO.username(), customerDTO.roles());
-        return new AuthenticationResponse(token, customerDTO);
+        TokenPair tokens = refreshTokenService.issue(customerDTO.id(), customerDTO.username(), customerDTO.roles());
+        return new AuthenticationResponse(tokens.accessToken(), tokens.refreshToken(), customerDTO);
+    }
+
+    public TokenPair refresh(RefreshTokenRequest request) {
+        return refreshTokenService.refresh(request.refreshToken());
+    }
+
+    public void logout(RefreshTokenRequest request) {
+        refreshTokenService.revoke(request.refreshToken());
+    }
+
+    // Ends every session of the caller, on every device.
+    public void logoutEverywhere(CustomerPrincipal principal) {
+        refreshTokenService.revokeAll(principal.id());
     }
 }
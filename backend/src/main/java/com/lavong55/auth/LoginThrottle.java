@@ -0,0 +1,89 @@
+package com.lavong55.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+
+/*
+Token buckets for login attempts, one set keyed by client IP and one by username. Buckets live
+in bounded Caffeine caches (striped, concurrent, W-TinyLFU eviction) and are dropped after
+sitting idle, so a spray of random usernames or addresses cannot grow memory without bound;
+an evicted bucket simply comes back full. Meters: auth.login.throttle tagged key=ip|username
+and result=allowed|throttled, plus cache.* for the two bucket caches.
+*/
+@Component
+public class LoginThrottle {
+
+    private final Limit perIp;
+    private final Limit perUsername;
+
+    public LoginThrottle(MeterRegistry meterRegistry,
+                         @Value("${auth.login-throttle.per-ip.capacity:20}") int ipCapacity,
+                         @Value("${auth.login-throttle.per-ip.refill-period:PT1M}") Duration ipRefillPeriod,
+                         @Value("${auth.login-throttle.per-username.capacity:5}") int usernameCapacity,
+                         @Value("${auth.login-throttle.per-username.refill-period:PT1M}") Duration usernameRefillPeriod,
+                         @Value("${auth.login-throttle.maximum-entries:100000}") long maximumEntries,
+                         @Value("${auth.login-throttle.idle-expiry:PT10M}") Duration idleExpiry) {
+        this.perIp = new Limit("ip", ipCapacity, ipRefillPeriod, maximumEntries, idleExpiry, meterRegistry);
+        this.perUsername = new Limit("username", usernameCapacity, usernameRefillPeriod,
+                maximumEntries, idleExpiry, meterRegistry);
+    }
+
+    // Empty if the attempt may proceed, otherwise how long the caller should wait.
+    // The IP bucket is charged first so a throttled address cannot drain a victim's username bucket.
+    public Optional<Duration> tryAcquire(String clientIp, String username) {
+        long now = System.nanoTime();
+        Optional<Duration> wait = perIp.tryAcquire(clientIp, now);
+        if (wait.isEmpty() && username != null && !username.isBlank()) {
+            wait = perUsername.tryAcquire(username.toLowerCase(Locale.ROOT), now);
+        }
+        return wait;
+    }
+
+    private static final class Limit {
+        private final int capacity;
+        private final long refillPeriodNanos;
+        private final Cache<String, TokenBucket> buckets;
+        private final Counter allowed;
+        private final Counter throttled;
+
+        Limit(String key, int capacity, Duration refillPeriod, long maximumEntries,
+              Duration idleExpiry, MeterRegistry meterRegistry) {
+            this.capacity = capacity;
+            this.refillPeriodNanos = refillPeriod.toNanos();
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maximumEntries)
+                    .expireAfterAccess(idleExpiry)
+                    .recordStats()
+                    .build();
+            this.allowed = Counter.builder("auth.login.throttle")
+                    .tag("key", key)
+                    .tag("result", "allowed")
+                    .register(meterRegistry);
+            this.throttled = Counter.builder("auth.login.throttle")
+                    .tag("key", key)
+                    .tag("result", "throttled")
+                    .register(meterRegistry);
+            CaffeineCacheMetrics.monitor(meterRegistry, buckets, "loginThrottle." + key);
+        }
+
+        Optional<Duration> tryAcquire(String key, long now) {
+            long waitNanos = buckets.get(key, k -> new TokenBucket(capacity, refillPeriodNanos))
+                    .tryAcquire(now);
+            if (waitNanos == 0) {
+                allowed.increment();
+                return Optional.empty();
+            }
+            throttled.increment();
+            return Optional.of(Duration.ofNanos(waitNanos));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.lavong55.auth;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lavong55.exception.PayloadTooLargeException;
+import com.lavong55.exception.TooManyRequestsException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpMethod;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+
+// Rejects login attempts over the per-IP or per-username rate with 429 + Retry-After,
+// before the request reaches AuthenticationManager and its BCrypt check.
+// The IP is request.getRemoteAddr(): behind the load balancer it is the client address only
+// because server.forward-headers-strategy=native lets Tomcat take it from X-Forwarded-For
+// when the peer is a trusted (internal) proxy.
+@Component
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+    private static final String LOGIN_PATH = "/api/v1/auth/login";
+    // A login body is a username and a password; anything bigger is refused unread.
+    static final int MAX_BODY_BYTES = 4096;
+
+    private final LoginThrottle loginThrottle;
+    private final ObjectMapper objectMapper;
+    private final HandlerExceptionResolver handlerExceptionResolver;
+
+    public LoginThrottleFilter(LoginThrottle loginThrottle,
+                               ObjectMapper objectMapper,
+                               @Qualifier("handlerExceptionResolver") HandlerExceptionResolver handlerExceptionResolver) {
+        this.loginThrottle = loginThrottle;
+        this.objectMapper = objectMapper;
+        this.handlerExceptionResolver = handlerExceptionResolver;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !HttpMethod.POST.matches(request.getMethod())
+                || !LOGIN_PATH.equals(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+        // The username is in the JSON body, so buffer it (login bodies are tiny) and replay it downstream.
+        // Bounded even without a Content-Length: at most one byte past the cap is read.
+        if (request.getContentLengthLong() > MAX_BODY_BYTES) {
+            rejectTooLarge(request, response);
+            return;
+        }
+        byte[] body = request.getInputStream().readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            rejectTooLarge(request, response);
+            return;
+        }
+
+        Optional<Duration> retryAfter = loginThrottle.tryAcquire(request.getRemoteAddr(), username(body));
+        if (retryAfter.isPresent()) {
+            handlerExceptionResolver.resolveException(request, response, null,
+                    new TooManyRequestsException("too many login attempts, retry later", retryAfter.get()));
+            return;
+        }
+
+        filterChain.doFilter(new CachedBodyRequest(request, body), response);
+    }
+
+    private void rejectTooLarge(HttpServletRequest request, HttpServletResponse response) {
+        handlerExceptionResolver.resolveException(request, response, null,
+                new PayloadTooLargeException("login body exceeds " + MAX_BODY_BYTES + " bytes"));
+    }
+
+    private String username(byte[] body) {
+        try {
+            JsonNode username = objectMapper.readTree(body).get("username");
+            return username != null && username.isTextual() ? username.asText() : null;
+        } catch (IOException | RuntimeException e) {
+            // Malformed bodies are still charged to the IP and rejected later by the controller.
+            return null;
+        }
+    }
+
+    // The body is already in memory, so the stream is always ready and a ReadListener is told so
+    // straight away.
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return input.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
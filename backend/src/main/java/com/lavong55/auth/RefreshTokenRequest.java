@@ -0,0 +1,6 @@
+package com.lavong55.auth;
+
+public record RefreshTokenRequest(
+        String refreshToken
+) {
+}
@@ -0,0 +1,37 @@
+package com.lavong55.auth;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Lock-free token bucket in its GCRA form: instead of a token count plus a refill timestamp, the
+whole state is one "theoretical arrival time" (TAT), so tryAcquire() is a single CAS loop.
+A bucket of `capacity` tokens refilling one token every `emissionIntervalNanos` admits a
+request at `now` iff TAT - now <= capacity * interval after charging one interval.
+*/
+final class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    TokenBucket(int capacity, long refillPeriodNanos) {
+        this.emissionIntervalNanos = Math.max(1, refillPeriodNanos / capacity);
+        this.burstNanos = emissionIntervalNanos * capacity;
+    }
+
+    // Returns 0 if a token was taken, otherwise the nanoseconds until one is available.
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long tat = current == Long.MIN_VALUE || current - nowNanos < 0 ? nowNanos : current;
+            long next = tat + emissionIntervalNanos;
+            long ahead = next - nowNanos;
+            if (ahead > burstNanos) {
+                return ahead - burstNanos;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
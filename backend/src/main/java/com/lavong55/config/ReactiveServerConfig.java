@@ -0,0 +1,109 @@
+package com.lavong55.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lavong55.customer.ReactiveCustomerHandler;
+import com.lavong55.exception.ReactiveExceptionHandler;
+import com.lavong55.jwt.JWTUtil;
+import com.lavong55.jwt.ReactiveJWTAuthenticationFilter;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/*
+reactive.enabled=true serves the customer API a second time, non-blocking end to end: functional
+WebFlux routes on Reactor Netty (reactive.server.port) over R2DBC. The servlet stack on
+server.port is unchanged, so both can be load tested side by side against the same database.
+Only the customer CRUD routes exist here; log in through the servlet API.
+
+The R2DBC pool is deliberately not a ConnectionFactory bean: Boot's DataSource and Flyway
+auto-configuration back off when one exists, which would take the JDBC side down with it.
+*/
+@Configuration
+@ConditionalOnProperty(name = "reactive.enabled", havingValue = "true")
+public class ReactiveServerConfig implements DisposableBean {
+
+    static final String CUSTOMERS_PATH = "/api/v1/customers";
+
+    private ConnectionPool connectionPool;
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient(
+            @Value("${reactive.r2dbc.url}") String url,
+            @Value("${reactive.r2dbc.username}") String username,
+            @Value("${reactive.r2dbc.password}") String password,
+            @Value("${reactive.r2dbc.pool.max-size:20}") int maxSize) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url)
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        connectionPool = new ConnectionPool(ConnectionPoolConfiguration
+                .builder(ConnectionFactories.get(options))
+                .maxSize(maxSize)
+                .build());
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> reactiveCustomerRoutes(ReactiveCustomerHandler handler,
+                                                                JWTUtil jwtUtil) {
+        RouterFunction<ServerResponse> authenticated = route()
+                .GET(CUSTOMERS_PATH, handler::getAllCustomers)
+                .GET(CUSTOMERS_PATH + "/{customerId}", handler::getCustomer)
+                .PUT(CUSTOMERS_PATH + "/{customerId}", handler::updateCustomer)
+                .DELETE(CUSTOMERS_PATH + "/{customerId}", handler::deleteCustomer)
+                .filter(new ReactiveJWTAuthenticationFilter(jwtUtil))
+                .build();
+        return route()
+                .POST(CUSTOMERS_PATH, handler::registerCustomer)
+                .add(authenticated)
+                // Outermost, so it also catches errors thrown before a handler returns its Mono.
+                .filter((request, next) -> Mono.defer(() -> next.handle(request))
+                        .onErrorResume(e -> ReactiveExceptionHandler.handle(e, request)))
+                .build();
+    }
+
+    @Bean(destroyMethod = "disposeNow")
+    public DisposableServer reactiveServer(RouterFunction<ServerResponse> reactiveCustomerRoutes,
+                                           ObjectMapper objectMapper,
+                                           @Value("${reactive.server.port:8081}") int port) {
+        // Boot's ObjectMapper, so both stacks render dates and DTOs identically.
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+        return HttpServer.create()
+                .port(port)
+                .handle(new ReactorHttpHandlerAdapter(
+                        RouterFunctions.toHttpHandler(reactiveCustomerRoutes, strategies)))
+                .bindNow();
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.lavong55.config;
+
+import com.lavong55.datasource.ReplicaRoutingDataSource;
+import com.lavong55.datasource.ReplicaSet;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+datasource.routing.enabled=true replaces the single spring.datasource pool with a routing data
+source: reads marked by ReadRouting (the customer DAOs' lookups) and
+@Transactional(readOnly = true) work go to the replicas in datasource.routing.replica-urls,
+everything else to the primary. Replicas use the primary's credentials and driver, and every
+pool takes spring.datasource.hikari.* (pool size, timeouts) the way Boot's own pool would.
+
+The pools are not beans, so Boot's Hikari metrics don't reach them: they report hikaricp.*
+themselves, tagged pool=primary|replica-N. Flyway, JPA and JdbcTemplate all get the routing
+data source, and since they run migrations and writes outside read-only transactions those
+stay on the primary.
+*/
+@Configuration
+@ConditionalOnProperty(name = "datasource.routing.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    @Bean(destroyMethod = "close")
+    public ReplicaSet replicaSet(
+            DataSourceProperties properties,
+            Environment environment,
+            MeterRegistry meterRegistry,
+            @Value("${datasource.routing.replica-urls}") List<String> replicaUrls,
+            @Value("${datasource.routing.strategy:round-robin}") String strategy,
+            @Value("${datasource.routing.max-lag:5s}") Duration maxLag,
+            @Value("${datasource.routing.lag-check-interval:2s}") Duration lagCheckInterval) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary =
+                pool(properties, binder, properties.determineUrl(), "primary", meterRegistry);
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            HikariDataSource replica =
+                    pool(properties, binder, url.trim(), "replica-" + replicas.size(), meterRegistry);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        return new ReplicaSet(primary, replicas, ReplicaSet.strategy(strategy),
+                maxLag, lagCheckInterval, meterRegistry);
+    }
+
+    // Url and name are set after binding: a spring.datasource.hikari.pool-name would otherwise
+    // give every pool the same name and merge their meters.
+    private static HikariDataSource pool(DataSourceProperties properties,
+                                         Binder binder,
+                                         String url,
+                                         String name,
+                                         MeterRegistry meterRegistry) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setJdbcUrl(url);
+        pool.setPoolName(name);
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return pool;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaSet replicaSet) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(replicaSet));
+    }
+}
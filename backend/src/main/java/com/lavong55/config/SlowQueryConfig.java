@@ -0,0 +1,36 @@
+package com.lavong55.config;
+
+import com.lavong55.datasource.SlowQueryDataSource;
+import com.lavong55.datasource.SlowQueryLog;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/*
+datasource.slow-query.enabled=true wraps the application's DataSource bean (Boot's pool, or the
+routing data source from ReplicaRoutingConfig) in a SlowQueryDataSource, so every statement from
+JdbcTemplate, Hibernate and Flyway is timed. Replaces spring.jpa.show-sql, which logged every
+statement whether slow or not.
+*/
+@Configuration
+@ConditionalOnProperty(name = "datasource.slow-query.enabled", havingValue = "true")
+public class SlowQueryConfig {
+
+    // Static and lazy: a post-processor must not pull SlowQueryLog in before the context is ready.
+    @Bean
+    public static BeanPostProcessor slowQueryDataSourcePostProcessor(ObjectProvider<SlowQueryLog> slowQueryLog) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && "dataSource".equals(beanName)) {
+                    return new SlowQueryDataSource(dataSource, slowQueryLog.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,326 @@
+package com.lavong55.customer;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/*
+Decorates the jdbc CustomerDao with an in-memory Bloom filter of registered emails. Email
+existence checks that the filter answers with "definitely not present" never reach the
+database; "maybe present" falls through to the real query. The filter is loaded by streaming
+the email column once the application is ready, kept up to date by writes made through this
+DAO, and rebuilt periodically (to pick up writes from other instances and drop deleted emails)
+or when it outgrows its capacity. The unique email index stays the source of truth, so a stale
+filter can cost an extra query or a conflict, never a duplicate row. Paths that write the table
+directly (the bulk import, the r2dbc handler) call remember() for the emails they add.
+*/
+@Repository("bloom")
+public class BloomFilterCustomerDataAccessService implements CustomerDao {
+
+    private static final Logger log = LoggerFactory.getLogger(BloomFilterCustomerDataAccessService.class);
+
+    private final CustomerDao delegate;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final Duration rebuildInterval;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+    // A lock rather than synchronized: rebuilds stream from JDBC, which must not pin virtual threads.
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    // null until the first load finishes; every lookup goes to the database until then.
+    private volatile EmailBloomFilter filter;
+    // Non-null while a rebuild streams emails, so concurrent writes land in both filters.
+    private volatile EmailBloomFilter building;
+
+    private final LongAdder definitelyAbsent = new LongAdder();
+    private final LongAdder maybePresent = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder deletesSinceRebuild = new LongAdder();
+    private volatile Duration lastRebuildDuration;
+    private volatile Instant lastRebuiltAt;
+
+    public BloomFilterCustomerDataAccessService(
+            @Qualifier("jdbc") CustomerDao delegate,
+            @Value("${customer.email-filter.expected-insertions:1000000}") long expectedInsertions,
+            @Value("${customer.email-filter.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${customer.email-filter.rebuild-interval:PT1H}") Duration rebuildInterval) {
+        this.delegate = delegate;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildInterval = rebuildInterval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "email-filter-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        scheduler.scheduleWithFixedDelay(this::scheduledRebuild,
+                0, rebuildInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // An exception escaping a scheduled task cancels every later run, so a failed rebuild (a
+    // database blip during the scan) is logged and the current filter kept until the next one.
+    void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Email filter rebuild failed; keeping the current filter", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // Streams every email into a fresh filter sized for the current population, then swaps it in.
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            rebuildLocked();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void rebuildLocked() {
+        long start = System.nanoTime();
+        EmailBloomFilter current = filter;
+        long capacity = Math.max(expectedInsertions,
+                current == null ? 0 : current.approximateElementCount() * 2);
+        EmailBloomFilter next = new EmailBloomFilter(capacity, falsePositiveRate);
+        building = next;
+        try {
+            deletesSinceRebuild.reset();
+            delegate.forEachEmail(next::add);
+            filter = next;
+            lastRebuildDuration = Duration.ofNanos(System.nanoTime() - start);
+            lastRebuiltAt = Instant.now();
+        } finally {
+            building = null;
+            rebuildRequested.set(false);
+        }
+    }
+
+    public void requestRebuild() {
+        if (rebuildRequested.compareAndSet(false, true)) {
+            scheduler.execute(this::rebuild);
+        }
+    }
+
+    public Stats stats() {
+        EmailBloomFilter current = filter;
+        return new Stats(
+                current != null,
+                current == null ? 0 : current.approximateElementCount(),
+                current == null ? 0 : current.expectedInsertions(),
+                current == null ? 0 : current.bitSize(),
+                current == null ? 0 : current.hashFunctions(),
+                current == null ? 0 : current.expectedFalsePositiveRate(),
+                definitelyAbsent.sum(),
+                maybePresent.sum(),
+                falsePositives.sum(),
+                lastRebuildDuration == null ? null : lastRebuildDuration.toMillis(),
+                lastRebuiltAt
+        );
+    }
+
+    public record Stats(
+            boolean loaded,
+            long elements,
+            long capacity,
+            long bits,
+            int hashFunctions,
+            double expectedFalsePositiveRate,
+            long definitelyAbsent,
+            long maybePresent,
+            long observedFalsePositives,
+            Long lastRebuildMillis,
+            Instant lastRebuiltAt
+    ) {
+    }
+
+    private boolean definitelyAbsent(String email) {
+        EmailBloomFilter current = filter;
+        if (current == null || email == null) {
+            return false;
+        }
+        if (current.mightContain(email)) {
+            maybePresent.increment();
+            return false;
+        }
+        definitelyAbsent.increment();
+        return true;
+    }
+
+    /*
+    Adds an email written without going through this DAO, so the filter stops answering
+    "definitely not present" for it before the next rebuild.
+
+    A rebuild publishes filter before it clears building, so an email added to the old filter
+    and missed by building (cleared in between) would be lost with the old filter. Re-reading
+    filter afterwards catches that: if it changed, the email goes into the new one too.
+    */
+    public void remember(String email) {
+        if (email == null) {
+            return;
+        }
+        EmailBloomFilter current = filter;
+        if (current != null) {
+            current.add(email);
+        }
+        EmailBloomFilter next = building;
+        if (next != null) {
+            next.add(email);
+        }
+        EmailBloomFilter published = filter;
+        if (published != null && published != current) {
+            published.add(email);
+        }
+        if (published != null && published.approximateElementCount() > published.expectedInsertions()) {
+            requestRebuild();
+        }
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        if (definitelyAbsent(email)) {
+            return false;
+        }
+        boolean exists = delegate.existsCustomerWithEmail(email);
+        if (!exists && filter != null) {
+            falsePositives.increment();
+        }
+        return exists;
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        List<String> candidates = emails.stream()
+                .filter(email -> !definitelyAbsent(email))
+                .toList();
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+        return delegate.selectExistingEmails(candidates);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+        remember(customer.getEmail());
+    }
+
+    @Override
+    public boolean insertCustomerIfEmailAvailable(Customer customer) {
+        boolean inserted = delegate.insertCustomerIfEmailAvailable(customer);
+        if (inserted) {
+            remember(customer.getEmail());
+        }
+        return inserted;
+    }
+
+    @Override
+    public Set<String> insertCustomers(List<Customer> customers, int batchSize) {
+        Set<String> skipped = delegate.insertCustomers(customers, batchSize);
+        customers.stream()
+                .map(Customer::getEmail)
+                .filter(email -> !skipped.contains(email.toLowerCase(Locale.ROOT)))
+                .forEach(this::remember);
+        return skipped;
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        delegate.updateCustomer(update);
+        remember(update.getEmail());
+    }
+
+    @Override
+    public Optional<Customer> updateChangedFields(Customer update) {
+        Optional<Customer> updated = delegate.updateChangedFields(update);
+        updated.ifPresent(customer -> remember(customer.getEmail()));
+        return updated;
+    }
+
+    @Override
+    public void updateNamesAndAges(List<Customer> customers, int batchSize) {
+        delegate.updateNamesAndAges(customers, batchSize);
+    }
+
+    @Override
+    public void updatePassword(String email, String encodedPassword) {
+        delegate.updatePassword(email, encodedPassword);
+    }
+
+    @Override
+    public void deleteCustomerById(Long customerId) {
+        delegate.deleteCustomerById(customerId);
+        // Bloom filters cannot forget; rebuild once deletions start to inflate false positives.
+        deletesSinceRebuild.increment();
+        EmailBloomFilter current = filter;
+        if (current != null && deletesSinceRebuild.sum() > current.expectedInsertions() / 10) {
+            requestRebuild();
+        }
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        return delegate.selectCustomers(afterId, limit);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        return delegate.selectCustomerById(id);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Long id) {
+        return delegate.existsCustomerWithId(id);
+    }
+
+    // Not short-circuited: a filter that missed another instance's insert would lock that user out.
+    @Override
+    public Optional<Customer> selectUserByEmail(String email) {
+        return delegate.selectUserByEmail(email);
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        delegate.forEachCustomer(action);
+    }
+
+    @Override
+    public void forEachEmail(Consumer<String> action) {
+        delegate.forEachEmail(action);
+    }
+}
@@ -0,0 +1,254 @@
+package com.lavong55.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/*
+Read-through cache in front of the bloom -> jdbc CustomerDao chain (writeBehind -> bloom -> jdbc
+with customer.write-behind.enabled). Customers are cached by id,
+plus an email -> id index so login-style lookups hit the same entries. Caffeine gives a bounded
+size with W-TinyLFU eviction and a TTL; every write through this DAO invalidates the affected
+id and emails (absence is never cached, so inserts only clear a stale email mapping left by
+a row deleted elsewhere). Entries are copied in and out because Customer is a mutable entity.
+A load only fills the cache if no eviction touched it while the row was being read: evict bumps
+a generation (per id stripe, and a global one for email lookups, whose id isn't known up front)
+before invalidating, and the fill compares it inside an atomic compute on the key.
+Hit/miss/eviction counts are published as cache.* meters tagged cache=customersById /
+customerIdsByEmail.
+*/
+@Repository("cache")
+public class CachingCustomerDataAccessService implements CustomerDao {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final CustomerDao delegate;
+    private final AtomicLongArray idGenerations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLong evictions = new AtomicLong();
+    private final Cache<Long, Customer> customersById;
+    private final Cache<String, Long> customerIdsByEmail;
+
+    @Autowired
+    public CachingCustomerDataAccessService(
+            @Qualifier("bloom") CustomerDao bloom,
+            @Qualifier("writeBehind") ObjectProvider<CustomerDao> writeBehind,
+            MeterRegistry meterRegistry,
+            @Value("${customer.cache.maximum-size:100000}") long maximumSize,
+            @Value("${customer.cache.expire-after-write:PT10M}") Duration expireAfterWrite) {
+        this(writeBehind.getIfAvailable(() -> bloom), meterRegistry, maximumSize, expireAfterWrite);
+    }
+
+    CachingCustomerDataAccessService(CustomerDao delegate,
+                                     MeterRegistry meterRegistry,
+                                     long maximumSize,
+                                     Duration expireAfterWrite) {
+        this.delegate = delegate;
+        this.customersById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.customerIdsByEmail = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, customersById, "customersById");
+        CaffeineCacheMetrics.monitor(meterRegistry, customerIdsByEmail, "customerIdsByEmail");
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        Customer cached = customersById.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(copy(cached));
+        }
+        long generation = idGenerations.get(stripe(id));
+        Optional<Customer> loaded = delegate.selectCustomerById(id);
+        loaded.ifPresent(customer -> cache(customer, () -> idGenerations.get(stripe(id)) == generation));
+        return loaded;
+    }
+
+    @Override
+    public Optional<Customer> selectUserByEmail(String email) {
+        Long id = customerIdsByEmail.getIfPresent(key(email));
+        if (id != null) {
+            Customer cached = customersById.getIfPresent(id);
+            if (cached != null && cached.getEmail().equalsIgnoreCase(email)) {
+                return Optional.of(copy(cached));
+            }
+            customerIdsByEmail.invalidate(key(email));
+        }
+        long generation = evictions.get();
+        Optional<Customer> loaded = delegate.selectUserByEmail(email);
+        loaded.ifPresent(customer -> cache(customer, () -> evictions.get() == generation));
+        return loaded;
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Long id) {
+        return customersById.getIfPresent(id) != null || delegate.existsCustomerWithId(id);
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        Long id = customerIdsByEmail.getIfPresent(key(email));
+        return (id != null && customersById.getIfPresent(id) != null)
+                || delegate.existsCustomerWithEmail(email);
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        try {
+            delegate.updateCustomer(update);
+        } finally {
+            evict(update.getId(), update.getEmail());
+        }
+    }
+
+    @Override
+    public Optional<Customer> updateChangedFields(Customer update) {
+        try {
+            return delegate.updateChangedFields(update);
+        } finally {
+            evict(update.getId(), update.getEmail());
+        }
+    }
+
+    @Override
+    public void updatePassword(String email, String encodedPassword) {
+        Long id = customerIdsByEmail.getIfPresent(key(email));
+        try {
+            delegate.updatePassword(email, encodedPassword);
+        } finally {
+            evict(id, email);
+        }
+    }
+
+    @Override
+    public void deleteCustomerById(Long customerId) {
+        try {
+            delegate.deleteCustomerById(customerId);
+        } finally {
+            evict(customerId, null);
+        }
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        try {
+            delegate.insertCustomer(customer);
+        } finally {
+            evict(null, customer.getEmail());
+        }
+    }
+
+    @Override
+    public boolean insertCustomerIfEmailAvailable(Customer customer) {
+        try {
+            return delegate.insertCustomerIfEmailAvailable(customer);
+        } finally {
+            evict(null, customer.getEmail());
+        }
+    }
+
+    @Override
+    public Set<String> insertCustomers(List<Customer> customers, int batchSize) {
+        try {
+            return delegate.insertCustomers(customers, batchSize);
+        } finally {
+            customers.forEach(customer -> evict(null, customer.getEmail()));
+        }
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        return delegate.selectCustomers(afterId, limit);
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        delegate.forEachCustomer(action);
+    }
+
+    @Override
+    public void forEachEmail(Consumer<String> action) {
+        delegate.forEachEmail(action);
+    }
+
+    // For writes that bypass this DAO, such as the reactive endpoints.
+    void invalidate(Long id) {
+        evict(id, null);
+    }
+
+    // Fills the cache unless unchanged() says an eviction ran since the row was read. The check runs
+    // inside compute, so an evict that bumps the generation afterwards invalidates after the fill.
+    private void cache(Customer customer, BooleanSupplier unchanged) {
+        customersById.asMap().compute(customer.getId(),
+                (id, current) -> unchanged.getAsBoolean() ? copy(customer) : current);
+        customerIdsByEmail.asMap().compute(key(customer.getEmail()),
+                (email, current) -> unchanged.getAsBoolean() ? customer.getId() : current);
+    }
+
+    // Drops the id and both the old (cached) and new email mappings. The generations move first,
+    // so a load that read the row before this write can no longer fill the cache.
+    private void evict(Long id, String newEmail) {
+        evictions.incrementAndGet();
+        if (id != null) {
+            idGenerations.incrementAndGet(stripe(id));
+            Customer cached = customersById.getIfPresent(id);
+            if (cached != null) {
+                customerIdsByEmail.invalidate(key(cached.getEmail()));
+            }
+            customersById.invalidate(id);
+        }
+        if (newEmail != null) {
+            customerIdsByEmail.invalidate(key(newEmail));
+        }
+    }
+
+    private static int stripe(Long id) {
+        return Long.hashCode(id) & (GENERATION_STRIPES - 1);
+    }
+
+    private static String key(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private static Customer copy(Customer customer) {
+        return new Customer(
+                customer.getId(),
+                customer.getName(),
+                customer.getEmail(),
+                customer.getPassword(),
+                customer.getAge(),
+                customer.getGender());
+    }
+}
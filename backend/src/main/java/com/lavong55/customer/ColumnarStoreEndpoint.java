@@ -0,0 +1,24 @@
+package com.lavong55.customer;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// GET /actuator/columnarstore reports the columnar snapshot's record count and memory per record.
+@Component
+@Endpoint(id = "columnarstore")
+@ConditionalOnProperty(name = "customer.columnar.enabled", havingValue = "true")
+public class ColumnarStoreEndpoint {
+
+    private final CustomerColumnarDataAccessService columnarStore;
+
+    public ColumnarStoreEndpoint(CustomerColumnarDataAccessService columnarStore) {
+        this.columnarStore = columnarStore;
+    }
+
+    @ReadOperation
+    public CustomerColumnarDataAccessService.MemoryStats memoryStats() {
+        return columnarStore.memoryStats();
+    }
+}
@@ -0,0 +1,14 @@
+package com.lavong55.customer;
+
+public record CustomerBatchResult(
+        int index,
+        String email,
+        Status status,
+        String message
+) {
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        INVALID
+    }
+}
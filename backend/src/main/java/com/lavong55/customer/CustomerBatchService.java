@@ -0,0 +1,137 @@
+package com.lavong55.customer;
+
+import com.lavong55.exception.RequestValidationException;
+import com.lavong55.security.PasswordHasher;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+//Registers many customers at once: one duplicate query, parallel hashing, batched inserts.
+@Service
+public class CustomerBatchService {
+
+    private final CustomerDao customerDao;
+    private final PasswordHasher passwordHasher;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxBatchSize;
+    private final int insertChunkSize;
+
+    public CustomerBatchService(@Qualifier("bloom") CustomerDao customerDao,
+                                PasswordHasher passwordHasher,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${customer.batch.max-size:10000}") int maxBatchSize,
+                                @Value("${customer.batch.insert-chunk-size:500}") int insertChunkSize) {
+        this.customerDao = customerDao;
+        this.passwordHasher = passwordHasher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxBatchSize = maxBatchSize;
+        this.insertChunkSize = insertChunkSize;
+    }
+
+    public List<CustomerBatchResult> addCustomers(List<CustomerRegistrationRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new RequestValidationException("no customers in batch");
+        }
+        if (requests.size() > maxBatchSize) {
+            throw new RequestValidationException(
+                    "batch size must not exceed %s".formatted(maxBatchSize)
+            );
+        }
+
+        CustomerBatchResult[] results = new CustomerBatchResult[requests.size()];
+
+        // Validate and drop repeats inside the batch itself; first occurrence wins.
+        // Keys are lower-cased to match the case-insensitive unique email index.
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            CustomerRegistrationRequest request = requests.get(i);
+            String email = request == null ? null : request.email();
+            String problem = validate(request);
+            if (problem != null) {
+                results[i] = new CustomerBatchResult(i, email, CustomerBatchResult.Status.INVALID, problem);
+            } else if (candidates.putIfAbsent(email.toLowerCase(Locale.ROOT), i) != null) {
+                results[i] = duplicate(i, email);
+            }
+        }
+
+        // One set-based query for every email left in the batch.
+        Set<String> existing = candidates.isEmpty()
+                ? Set.of()
+                : new HashSet<>(customerDao.selectExistingEmails(candidates.keySet()));
+
+        // Hash the rest in parallel; this is where the time goes, not the round trips.
+        List<Integer> indexes = new ArrayList<>();
+        List<CompletableFuture<Customer>> pending = new ArrayList<>();
+        candidates.forEach((email, i) -> {
+            CustomerRegistrationRequest request = requests.get(i);
+            if (existing.contains(email)) {
+                results[i] = duplicate(i, request.email());
+                return;
+            }
+            indexes.add(i);
+            pending.add(passwordHasher.encodeAsync(request.password())
+                    .thenApply(hash -> new Customer(
+                            request.name(),
+                            request.email(),
+                            hash,
+                            request.age(),
+                            request.gender())));
+        });
+
+        List<Customer> customers = pending.stream()
+                .map(CompletableFuture::join)
+                .toList();
+
+        // The connection is only taken once hashing is done. An email registered concurrently
+        // after the check is skipped by the insert and reported like any other duplicate.
+        Set<String> taken = customers.isEmpty()
+                ? Set.of()
+                : transactionTemplate.execute(status -> customerDao.insertCustomers(customers, insertChunkSize));
+        for (int i : indexes) {
+            String email = requests.get(i).email();
+            results[i] = taken.contains(email.toLowerCase(Locale.ROOT))
+                    ? duplicate(i, email)
+                    : new CustomerBatchResult(i, email, CustomerBatchResult.Status.CREATED, null);
+        }
+
+        return List.of(results);
+    }
+
+    static String validate(CustomerRegistrationRequest request) {
+        if (request == null) {
+            return "customer is required";
+        }
+        if (request.name() == null || request.name().isBlank()) {
+            return "name is required";
+        }
+        if (request.email() == null || request.email().isBlank()) {
+            return "email is required";
+        }
+        if (request.password() == null || request.password().isEmpty()) {
+            return "password is required";
+        }
+        if (request.age() == null) {
+            return "age is required";
+        }
+        if (request.gender() == null) {
+            return "gender is required";
+        }
+        return null;
+    }
+
+    private static CustomerBatchResult duplicate(int index, String email) {
+        return new CustomerBatchResult(
+                index, email, CustomerBatchResult.Status.DUPLICATE, "email already taken");
+    }
+}
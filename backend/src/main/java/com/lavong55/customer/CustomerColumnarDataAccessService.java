@@ -0,0 +1,557 @@
+package com.lavong55.customer;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/*
+In-memory copy of the customer table in columnar, primitive arrays instead of Customer objects,
+for measuring memory per record and for benchmarks (CustomerColumnarBenchmark). It is not a
+serving replica: no request path reads from it.
+A row is an index into parallel columns:
+- ids (long[]), ages (int[]) and genders (byte[], -1 = deleted)
+- names, emails and passwords as long refs into a shared Utf8Slab, optionally off heap
+- emailHashes (int[]) so index probes and resizes never rehash the strings
+
+Lookups go through two open-addressing indexes: id -> row (LongIntHashIndex) and a
+case-insensitive email -> row table of row + 1 (0 = empty). Customer and CustomerDTO objects
+are built only when a row leaves the store.
+
+Rows are appended in id order, so keyset pages are a binary search plus a scan. Deletes leave a
+tombstone row and updated strings are appended, with the old bytes counted as garbage in
+memoryStats(). A write-heavy workload would need compaction, which this store doesn't do.
+
+customer.columnar.enabled=true loads the table through the jdbc DAO at startup, and its only
+consumer is the columnarstore actuator endpoint. Writes through this DAO go to the database
+first, so the id sequence and the unique email index decide, and are mirrored here once accepted.
+The API writes through the cache -> bloom -> jdbc chain instead, and those writes never reach
+this store. The snapshot goes stale from the moment it loads while still holding its memory, so
+leave it disabled outside diagnostics. A store built without a source (tests, benchmarks) assigns
+ids itself.
+*/
+@Repository("columnar")
+@ConditionalOnProperty(name = "customer.columnar.enabled", havingValue = "true")
+public class CustomerColumnarDataAccessService implements CustomerDao {
+
+    private static final byte DELETED = -1;
+    private static final Gender[] GENDERS = Gender.values();
+    private static final List<String> ROLES = List.of("ROLE_USER");
+    // Scans copy this many rows per read lock, so long exports don't starve writers.
+    private static final int SCAN_BATCH = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Writes go here first; null for a standalone store.
+    private final CustomerDao source;
+    // Held across a database insert, so ids are mirrored in the order the sequence hands them out.
+    private final ReentrantLock insertLock = new ReentrantLock();
+    private final Utf8Slab strings;
+    private final LongIntHashIndex idIndex;
+
+    private long[] ids;
+    private int[] ages;
+    private byte[] genders;
+    private long[] names;
+    private long[] emails;
+    private long[] passwords;
+    private int[] emailHashes;
+    private int rows;
+    private int deletedRows;
+    private long lastId;
+
+    private int[] emailSlots;
+    private int emailMask;
+
+    public CustomerColumnarDataAccessService(
+            @Qualifier("jdbc") CustomerDao source,
+            @Value("${customer.columnar.initial-capacity:1048576}") int initialCapacity,
+            @Value("${customer.columnar.slab-chunk-size:16777216}") int slabChunkSize,
+            @Value("${customer.columnar.off-heap:false}") boolean offHeap) {
+        this(initialCapacity, slabChunkSize, offHeap, source);
+        source.forEachCustomer(this::load);
+    }
+
+    CustomerColumnarDataAccessService(int initialCapacity, int slabChunkSize, boolean offHeap) {
+        this(initialCapacity, slabChunkSize, offHeap, null);
+    }
+
+    private CustomerColumnarDataAccessService(int initialCapacity,
+                                              int slabChunkSize,
+                                              boolean offHeap,
+                                              CustomerDao source) {
+        this.source = source;
+        int capacity = Math.max(16, initialCapacity);
+        this.strings = new Utf8Slab(slabChunkSize, offHeap);
+        this.idIndex = new LongIntHashIndex(capacity);
+        this.ids = new long[capacity];
+        this.ages = new int[capacity];
+        this.genders = new byte[capacity];
+        this.names = new long[capacity];
+        this.emails = new long[capacity];
+        this.passwords = new long[capacity];
+        this.emailHashes = new int[capacity];
+        this.emailSlots = new int[LongIntHashIndex.tableSize(capacity)];
+        this.emailMask = emailSlots.length - 1;
+    }
+
+    /*
+    Appends a row that keeps its existing id, e.g. while loading from the database. Ids must
+    arrive in ascending order.
+    */
+    void load(Customer customer) {
+        lock.writeLock().lock();
+        try {
+            if (customer.getId() <= lastId) {
+                throw new IllegalArgumentException(
+                        "customer ids must be loaded in ascending order, got %s after %s"
+                                .formatted(customer.getId(), lastId));
+            }
+            if (findEmail(customer.getEmail()) >= 0) {
+                throw new DuplicateKeyException(
+                        "email [%s] already taken".formatted(customer.getEmail()));
+            }
+            append(customer.getId(), customer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        List<Customer> customers = new ArrayList<>();
+        forEachCustomer(customers::add);
+        return customers;
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Customer> page = new ArrayList<>(Math.min(limit, 1024));
+            int row = Arrays.binarySearch(ids, 0, rows, afterId == null ? 0L : afterId);
+            row = row >= 0 ? row + 1 : -row - 1;
+            for (; row < rows && page.size() < limit; row++) {
+                if (genders[row] != DELETED) {
+                    page.add(customer(row));
+                }
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        lock.readLock().lock();
+        try {
+            int row = idIndex.get(id);
+            return row == LongIntHashIndex.ABSENT ? Optional.empty() : Optional.of(customer(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Skips the Customer entity entirely for read-only API responses.
+    public Optional<CustomerDTO> selectCustomerDTOById(Long id) {
+        lock.readLock().lock();
+        try {
+            int row = idIndex.get(id);
+            if (row == LongIntHashIndex.ABSENT) {
+                return Optional.empty();
+            }
+            String email = strings.get(emails[row]);
+            return Optional.of(new CustomerDTO(
+                    ids[row],
+                    strings.get(names[row]),
+                    email,
+                    GENDERS[genders[row]],
+                    ages[row],
+                    ROLES,
+                    email));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Customer> selectUserByEmail(String email) {
+        lock.readLock().lock();
+        try {
+            int row = findEmail(email);
+            return row < 0 ? Optional.empty() : Optional.of(customer(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Long id) {
+        lock.readLock().lock();
+        try {
+            return idIndex.get(id) != LongIntHashIndex.ABSENT;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        lock.readLock().lock();
+        try {
+            return findEmail(email) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        if (!insertCustomerIfEmailAvailable(customer)) {
+            throw new DuplicateKeyException(
+                    "email [%s] already taken".formatted(customer.getEmail()));
+        }
+    }
+
+    @Override
+    public boolean insertCustomerIfEmailAvailable(Customer customer) {
+        if (source != null) {
+            insertLock.lock();
+            try {
+                if (!source.insertCustomerIfEmailAvailable(customer)) {
+                    return false;
+                }
+                mirrorInsert(customer);
+                return true;
+            } finally {
+                insertLock.unlock();
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            if (findEmail(customer.getEmail()) >= 0) {
+                return false;
+            }
+            customer.setId(lastId + 1);
+            append(customer.getId(), customer);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteCustomerById(Long customerId) {
+        if (source != null) {
+            source.deleteCustomerById(customerId);
+        }
+        lock.writeLock().lock();
+        try {
+            int row = idIndex.get(customerId);
+            if (row != LongIntHashIndex.ABSENT) {
+                delete(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        updateChangedFields(update);
+    }
+
+    @Override
+    public Optional<Customer> updateChangedFields(Customer update) {
+        if (source == null) {
+            return apply(update, false);
+        }
+        Optional<Customer> updated = source.updateChangedFields(update);
+        updated.ifPresent(row -> apply(row, true));
+        return updated;
+    }
+
+    /*
+    Writes the non-null fields that differ from the row. For a mirrored write the database has
+    already accepted the email, so a local row still holding it is stale and dropped.
+    */
+    private Optional<Customer> apply(Customer update, boolean mirrored) {
+        lock.writeLock().lock();
+        try {
+            int row = idIndex.get(update.getId());
+            if (row == LongIntHashIndex.ABSENT) {
+                return Optional.empty();
+            }
+            String name = update.getName() != null && !update.getName().equals(strings.get(names[row]))
+                    ? update.getName() : null;
+            String email = update.getEmail() != null && !update.getEmail().equals(strings.get(emails[row]))
+                    ? update.getEmail() : null;
+            boolean age = update.getAge() != null && update.getAge() != ages[row];
+            if (name == null && email == null && !age) {
+                return Optional.empty();
+            }
+            if (email != null) {
+                int owner = findEmail(email);
+                if (owner >= 0 && owner != row) {
+                    if (!mirrored) {
+                        throw new DuplicateKeyException("email [%s] already taken".formatted(email));
+                    }
+                    delete(owner);
+                }
+                removeEmail(row);
+                strings.release(emails[row]);
+                emails[row] = strings.append(email);
+                emailHashes[row] = strings.hashIgnoreAsciiCase(emails[row]);
+                insertEmail(row);
+            }
+            if (name != null) {
+                strings.release(names[row]);
+                names[row] = strings.append(name);
+            }
+            if (age) {
+                ages[row] = update.getAge();
+            }
+            return Optional.of(customer(row));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void updatePassword(String email, String encodedPassword) {
+        if (source != null) {
+            source.updatePassword(email, encodedPassword);
+        }
+        lock.writeLock().lock();
+        try {
+            int row = findEmail(email);
+            if (row >= 0) {
+                strings.release(passwords[row]);
+                passwords[row] = strings.append(encodedPassword);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        List<Customer> batch = new ArrayList<>(SCAN_BATCH);
+        int row = 0;
+        while (true) {
+            lock.readLock().lock();
+            try {
+                for (; row < rows && batch.size() < SCAN_BATCH; row++) {
+                    if (genders[row] != DELETED) {
+                        batch.add(customer(row));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            batch.forEach(action);
+            batch.clear();
+        }
+    }
+
+    @Override
+    public void forEachEmail(Consumer<String> action) {
+        List<String> batch = new ArrayList<>(SCAN_BATCH);
+        int row = 0;
+        while (true) {
+            lock.readLock().lock();
+            try {
+                for (; row < rows && batch.size() < SCAN_BATCH; row++) {
+                    if (genders[row] != DELETED) {
+                        batch.add(strings.get(emails[row]));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            batch.forEach(action);
+            batch.clear();
+        }
+    }
+
+    public MemoryStats memoryStats() {
+        lock.readLock().lock();
+        try {
+            long columnBytes = (long) ids.length
+                    * (Long.BYTES * 4 + Integer.BYTES * 2 + Byte.BYTES);
+            long indexBytes = idIndex.bytes() + (long) emailSlots.length * Integer.BYTES;
+            long stringBytes = strings.allocatedBytes();
+            int records = rows - deletedRows;
+            return new MemoryStats(
+                    records,
+                    deletedRows,
+                    columnBytes,
+                    indexBytes,
+                    stringBytes,
+                    strings.usedBytes(),
+                    strings.garbageBytes(),
+                    strings.isOffHeap(),
+                    records == 0 ? 0 : (double) (columnBytes + indexBytes + stringBytes) / records);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Allocated bytes, so bytesPerRecord includes spare capacity in the columns, indexes and slab.
+    public record MemoryStats(
+            int records,
+            int deletedRecords,
+            long columnBytes,
+            long indexBytes,
+            long stringBytes,
+            long stringBytesUsed,
+            long stringBytesGarbage,
+            boolean offHeap,
+            double bytesPerRecord
+    ) {
+    }
+
+    // Caller holds insertLock. The row already has its database id.
+    private void mirrorInsert(Customer customer) {
+        lock.writeLock().lock();
+        try {
+            if (customer.getId() <= lastId) {
+                // Can't be placed in id order; the row shows up after the next load.
+                return;
+            }
+            int owner = findEmail(customer.getEmail());
+            if (owner >= 0) {
+                delete(owner);
+            }
+            append(customer.getId(), customer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock.
+    private void delete(int row) {
+        removeEmail(row);
+        idIndex.remove(ids[row]);
+        strings.release(names[row]);
+        strings.release(emails[row]);
+        strings.release(passwords[row]);
+        genders[row] = DELETED;
+        deletedRows++;
+    }
+
+    // Caller holds the write lock and has checked the email is free.
+    private void append(long id, Customer customer) {
+        if (rows == ids.length) {
+            grow(ids.length * 2);
+        }
+        int row = rows;
+        ids[row] = id;
+        ages[row] = customer.getAge();
+        genders[row] = (byte) customer.getGender().ordinal();
+        names[row] = strings.append(customer.getName());
+        emails[row] = strings.append(customer.getEmail());
+        passwords[row] = strings.append(customer.getPassword());
+        emailHashes[row] = strings.hashIgnoreAsciiCase(emails[row]);
+        rows++;
+        lastId = id;
+        idIndex.put(id, row);
+        insertEmail(row);
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        genders = Arrays.copyOf(genders, capacity);
+        names = Arrays.copyOf(names, capacity);
+        emails = Arrays.copyOf(emails, capacity);
+        passwords = Arrays.copyOf(passwords, capacity);
+        emailHashes = Arrays.copyOf(emailHashes, capacity);
+    }
+
+    private Customer customer(int row) {
+        return new Customer(
+                ids[row],
+                strings.get(names[row]),
+                strings.get(emails[row]),
+                strings.get(passwords[row]),
+                ages[row],
+                GENDERS[genders[row]]);
+    }
+
+    // Email index: linear probing over row + 1, load factor at most 1/2.
+
+    private int findEmail(String email) {
+        byte[] bytes = email.getBytes(StandardCharsets.UTF_8);
+        int hash = Utf8Slab.hashIgnoreAsciiCase(bytes);
+        for (int slot = hash & emailMask; ; slot = (slot + 1) & emailMask) {
+            int entry = emailSlots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int row = entry - 1;
+            if (emailHashes[row] == hash && strings.equalsIgnoreAsciiCase(emails[row], bytes)) {
+                return row;
+            }
+        }
+    }
+
+    private void insertEmail(int row) {
+        if ((idIndex.size() + 1) * 2 > emailSlots.length) {
+            resizeEmailIndex(emailSlots.length * 2);
+        }
+        int slot = emailHashes[row] & emailMask;
+        while (emailSlots[slot] != 0) {
+            slot = (slot + 1) & emailMask;
+        }
+        emailSlots[slot] = row + 1;
+    }
+
+    private void removeEmail(int row) {
+        int slot = emailHashes[row] & emailMask;
+        while (emailSlots[slot] != row + 1) {
+            slot = (slot + 1) & emailMask;
+        }
+        int hole = slot;
+        for (int next = (hole + 1) & emailMask; emailSlots[next] != 0; next = (next + 1) & emailMask) {
+            int home = emailHashes[emailSlots[next] - 1] & emailMask;
+            boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (!stays) {
+                emailSlots[hole] = emailSlots[next];
+                hole = next;
+            }
+        }
+        emailSlots[hole] = 0;
+    }
+
+    private void resizeEmailIndex(int capacity) {
+        int[] old = emailSlots;
+        emailSlots = new int[capacity];
+        emailMask = capacity - 1;
+        for (int entry : old) {
+            if (entry != 0) {
+                int slot = emailHashes[entry - 1] & emailMask;
+                while (emailSlots[slot] != 0) {
+                    slot = (slot + 1) & emailMask;
+                }
+                emailSlots[slot] = entry;
+            }
+        }
+    }
+}
@@ -1,26 +1,56 @@
 package com.lavong55.customer;
 
-import com.lavong55.jwt.JWTUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.lavong55.jwt.RefreshTokenService;
+import com.lavong55.jwt.TokenPair;
+import com.lavong55.security.AdminAccess;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("api/v1/customers")
 public class CustomerController {
 
     private final CustomerService customerService;
-    private final JWTUtil jwtUtil;
+    private final CustomerBatchService customerBatchService;
+    private final CustomerImportService customerImportService;
+    private final CustomerCsvExportService customerCsvExportService;
+    private final AdminAccess adminAccess;
+    private final RefreshTokenService refreshTokenService;
+    private final ObjectMapper objectMapper;
 
     //Annotation is redundant.
     @Autowired
     public CustomerController(CustomerService customerService,
-                              JWTUtil jwtUtil) {
+                              CustomerBatchService customerBatchService,
+                              CustomerImportService customerImportService,
+                              CustomerCsvExportService customerCsvExportService,
+                              AdminAccess adminAccess,
+                              RefreshTokenService refreshTokenService,
+                              ObjectMapper objectMapper) {
         this.customerService = customerService;
-        this.jwtUtil = jwtUtil;
+        this.customerBatchService = customerBatchService;
+        this.customerImportService = customerImportService;
+        this.customerCsvExportService = customerCsvExportService;
+        this.adminAccess = adminAccess;
+        this.refreshTokenService = refreshTokenService;
+        this.objectMapper = objectMapper;
     }
 
     /*
@@ -29,8 +59,103 @@ public class CustomerController {
            method = RequestMethod.GET
    )*/
     @GetMapping
-    public List<CustomerDTO> getCustomers() {
-        return customerService.getAllCustomers();
+    public CustomerPage getCustomers(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        return customerService.getCustomers(after, limit);
+    }
+
+    // Streams every customer straight to the response, one JSON document per line.
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportCustomers(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        try (SequenceWriter writer = objectMapper.writerFor(CustomerDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n")
+                .writeValues(response.getOutputStream())) {
+            streamCustomers(writer);
+        }
+    }
+
+    // Same stream, written as a single JSON array for clients that cannot read NDJSON.
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void exportCustomersAsArray(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (SequenceWriter writer = objectMapper.writerFor(CustomerDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .writeValuesAsArray(response.getOutputStream())) {
+            streamCustomers(writer);
+        }
+    }
+
+    // Raw CSV dump of the whole table produced by Postgres COPY, for operators only (see
+    // AdminAccess). Gzip-compressed on the fly when the client accepts it.
+    @GetMapping(value = "export", produces = "text/csv")
+    public void exportCustomersAsCsv(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            Authentication authentication,
+            HttpServletResponse response) throws IOException {
+        if (!adminAccess.isAdmin(authentication)) {
+            throw new AccessDeniedException("CSV export is restricted to operators");
+        }
+        response.setContentType("text/csv");
+        boolean gzip = acceptsGzip(acceptEncoding);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        try (OutputStream out = gzip
+                ? new GZIPOutputStream(response.getOutputStream(), 64 * 1024)
+                : response.getOutputStream()) {
+            customerCsvExportService.exportCsv(out);
+        }
+    }
+
+    /*
+    Whether an Accept-Encoding header allows gzip: listed as gzip, x-gzip or * with a q-value
+    above zero. An explicit gzip entry wins over *, so "*, gzip;q=0" means no.
+    */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean accepted = quality(parts) > 0;
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                return accepted;
+            }
+            if (coding.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.length() > 2 && parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private void streamCustomers(SequenceWriter writer) {
+        customerService.exportCustomers(customer -> {
+            try {
+                writer.write(customer);
+            } catch (IOException e) {
+                // Client disconnected: abort the export so the DAO cancels its query.
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
     @GetMapping("{customerId}")
@@ -39,14 +164,32 @@ public class CustomerController {
         return customerService.getCustomer(customerId);
     }
 
+    // Signs the new customer in: the access token in the header as /auth/login does, and the
+    // pair in the body so the client can refresh it.
     @PostMapping
-    public ResponseEntity<?> registerCustomer(
+    public ResponseEntity<TokenPair> registerCustomer(
             @RequestBody CustomerRegistrationRequest request){
-        customerService.addCustomer(request);
-        String jwtToken = jwtUtil.issueToken(request.email(), "ROLE_USER");
+        Long customerId = customerService.addCustomer(request);
+        TokenPair tokens = refreshTokenService.issue(customerId, request.email(), List.of("ROLE_USER"));
         return ResponseEntity.ok()
-                .header(HttpHeaders.AUTHORIZATION,jwtToken)
-                .build();
+                .header(HttpHeaders.AUTHORIZATION, tokens.accessToken())
+                .body(tokens);
+    }
+
+    @PostMapping("batch")
+    public List<CustomerBatchResult> registerCustomers(
+            @RequestBody List<CustomerRegistrationRequest> requests) {
+        return customerBatchService.addCustomers(requests);
+    }
+
+    // Bulk load from a CSV (name,email,password,age,gender) or NDJSON request body.
+    @PostMapping(value = "import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public CustomerImportResult importCustomers(HttpServletRequest request) throws IOException {
+        CustomerImportService.Format format =
+                MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(request.getContentType()))
+                        ? CustomerImportService.Format.NDJSON
+                        : CustomerImportService.Format.CSV;
+        return customerImportService.importCustomers(request.getInputStream(), format);
     }
 
     @DeleteMapping("{customerId}")
@@ -55,6 +198,18 @@ public class CustomerController {
         customerService.deleteCustomerById(customerId);
     }
 
+    // Forced logout of a customer, for operators only.
+    @DeleteMapping("{customerId}/sessions")
+    public ResponseEntity<Void> revokeSessions(
+            @PathVariable("customerId") Long customerId,
+            Authentication authentication) {
+        if (!adminAccess.isAdmin(authentication)) {
+            throw new AccessDeniedException("session revocation is restricted to operators");
+        }
+        customerService.revokeSessions(customerId);
+        return ResponseEntity.noContent().build();
+    }
+
     @PutMapping("{customerId}")
     public void deleteCustomer(
             @PathVariable("customerId") Long customerId,
@@ -0,0 +1,47 @@
+package com.lavong55.customer;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/*
+Dumps the customer table as CSV with COPY ... TO STDOUT. Postgres renders the CSV itself and
+the bytes are passed straight through to the caller's stream, so no Customer or CustomerDTO
+objects are created per row. The password column is deliberately not part of the query.
+*/
+@Service
+public class CustomerCsvExportService {
+
+    private static final String COPY_SQL = """
+            COPY (
+                SELECT id, name, email, age, gender
+                FROM customer
+                ORDER BY id
+            ) TO STDOUT WITH (FORMAT csv, HEADER)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CustomerCsvExportService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Returns the number of rows written. If the stream fails (client gone) PgJDBC cancels the COPY.
+    public long exportCsv(OutputStream out) {
+        Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class)
+                        .getCopyAPI()
+                        .copyOut(COPY_SQL, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return rows == null ? 0 : rows;
+    }
+}
@@ -1,7 +1,14 @@
 package com.lavong55.customer;
 
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /*Create interface to achieve abstraction. Used to group related methods
 with empty bodies. Interacts with db. The purpose of this interface is
@@ -10,13 +17,103 @@ allowing for flexibility and modularity in the application architecture.*/
 
 public interface CustomerDao {
     List<Customer> selectAllCustomers();
+    List<Customer> selectCustomers(Long afterId, int limit);
     Optional<Customer> selectCustomerById(Long id);
     void insertCustomer(Customer customer);
+
+    // Inserts the customer unless the email is already registered (compared case-insensitively).
+    // Returns false on a conflict. Database implementations rely on the unique email index.
+    default boolean insertCustomerIfEmailAvailable(Customer customer) {
+        if (existsCustomerWithEmail(customer.getEmail())) {
+            return false;
+        }
+        insertCustomer(customer);
+        return true;
+    }
     boolean existsCustomerWithEmail(String email);
+
+    // Set-based duplicate check: returns which of the given emails are already registered,
+    // lower-cased.
+    default Set<String> selectExistingEmails(Collection<String> emails) {
+        return emails.stream()
+                .filter(this::existsCustomerWithEmail)
+                .map(email -> email.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+    }
+
+    // Inserts many customers, sending them to the database in groups of batchSize. Customers
+    // whose email is already registered are skipped; their emails are returned, lower-cased.
+    default Set<String> insertCustomers(List<Customer> customers, int batchSize) {
+        return customers.stream()
+                .filter(customer -> !insertCustomerIfEmailAvailable(customer))
+                .map(customer -> customer.getEmail().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+    }
     boolean existsCustomerWithId(Long id);
     void deleteCustomerById(Long customerId);
     void updateCustomer(Customer update);
+
+    // Writes the name and age of many customers by id, sending them to the database in groups
+    // of batchSize. Ids that no longer exist are skipped. The default goes through
+    // updateChangedFields, so the other columns of the stored row are kept.
+    default void updateNamesAndAges(List<Customer> customers, int batchSize) {
+        customers.forEach(customer -> {
+            Customer update = new Customer();
+            update.setId(customer.getId());
+            update.setName(customer.getName());
+            update.setAge(customer.getAge());
+            updateChangedFields(update);
+        });
+    }
+
+    // Replaces the stored password hash of the customer with this email (compared case-insensitively).
+    void updatePassword(String email, String encodedPassword);
+
+    /*
+    Applies the non-null fields of update, but only if at least one of them differs from
+    the stored row. Returns the updated row, or empty when nothing was written (missing id
+    or no changes). Throws DuplicateKeyException when the new email belongs to another
+    customer. Database implementations should do this in a single statement.
+    */
+    default Optional<Customer> updateChangedFields(Customer update) {
+        return selectCustomerById(update.getId()).flatMap(customer -> {
+            boolean changes = false;
+            if (update.getName() != null && !update.getName().equals(customer.getName())) {
+                customer.setName(update.getName());
+                changes = true;
+            }
+            if (update.getAge() != null && !update.getAge().equals(customer.getAge())) {
+                customer.setAge(update.getAge());
+                changes = true;
+            }
+            if (update.getEmail() != null && !update.getEmail().equals(customer.getEmail())) {
+                if (!update.getEmail().equalsIgnoreCase(customer.getEmail())
+                        && existsCustomerWithEmail(update.getEmail())) {
+                    throw new DuplicateKeyException(
+                            "email [%s] already taken".formatted(update.getEmail()));
+                }
+                customer.setEmail(update.getEmail());
+                changes = true;
+            }
+            if (!changes) {
+                return Optional.empty();
+            }
+            updateCustomer(customer);
+            return Optional.of(customer);
+        });
+    }
     Optional<Customer> selectUserByEmail(String email);
+
+    // Visits every customer in id order. Implementations backed by a database should
+    // override this to stream rows instead of materializing the whole table.
+    default void forEachCustomer(Consumer<Customer> action) {
+        selectAllCustomers().forEach(action);
+    }
+
+    // Visits every registered email, in no particular order.
+    default void forEachEmail(Consumer<String> action) {
+        forEachCustomer(customer -> action.accept(customer.getEmail()));
+    }
 }
 
 /*
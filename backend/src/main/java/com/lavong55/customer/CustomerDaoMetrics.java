@@ -0,0 +1,116 @@
+package com.lavong55.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.autoproxy.AbstractBeanFactoryAwareAdvisingPostProcessor;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+Times every CustomerDao call on every CustomerDao bean: customer.dao tagged dao (the @Repository
+name, so cache, bloom, jdbc, jpa, list ... each show up as their own layer), method, outcome
+(success|error) and exception. Error counts are the outcome=error series.
+
+The advice is added to the beans' existing proxies (@Repository beans are already proxied for
+exception translation), class-based so beans injected by their concrete type keep working. The
+pointcut is static, so only CustomerDao methods pay for it; calls a bean makes on itself are not
+counted. The success timer for each bean and method is resolved once and cached; histograms
+and percentiles come from management.metrics.distribution.* in application.yaml.
+*/
+@Component
+public class CustomerDaoMetrics extends AbstractBeanFactoryAwareAdvisingPostProcessor {
+
+    public CustomerDaoMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        // The registry is looked up on first use: resolving it while post-processors are being
+        // created would skip the registry's own customization (meter filters, common tags).
+        this.advisor = new DefaultPointcutAdvisor(new DaoMethods(), new Timing(meterRegistry));
+        setBeforeExistingAdvisors(true);
+        setProxyTargetClass(true);
+    }
+
+    private static final class DaoMethods extends StaticMethodMatcherPointcut {
+
+        private DaoMethods() {
+            setClassFilter(CustomerDao.class::isAssignableFrom);
+        }
+
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            return ReflectionUtils.findMethod(CustomerDao.class, method.getName(), method.getParameterTypes()) != null;
+        }
+    }
+
+    private static final class Timing implements MethodInterceptor {
+
+        private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+        private final ClassValue<Map<String, Timer>> successTimers = new ClassValue<>() {
+            @Override
+            protected Map<String, Timer> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+        private volatile MeterRegistry meterRegistry;
+
+        private Timing(ObjectProvider<MeterRegistry> meterRegistryProvider) {
+            this.meterRegistryProvider = meterRegistryProvider;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = invocation.proceed();
+            } catch (Throwable e) {
+                timer(invocation, "error", e.getClass().getSimpleName())
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw e;
+            }
+            Class<?> daoClass = AopUtils.getTargetClass(invocation.getThis());
+            successTimers.get(daoClass)
+                    .computeIfAbsent(invocation.getMethod().getName(),
+                            method -> timer(invocation, "success", "none"))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        }
+
+        private Timer timer(MethodInvocation invocation, String outcome, String exception) {
+            return Timer.builder("customer.dao")
+                    .description("CustomerDao call latency")
+                    .tag("dao", daoName(AopUtils.getTargetClass(invocation.getThis())))
+                    .tag("method", invocation.getMethod().getName())
+                    .tag("outcome", outcome)
+                    .tag("exception", exception)
+                    .register(meterRegistry());
+        }
+
+        private MeterRegistry meterRegistry() {
+            MeterRegistry registry = meterRegistry;
+            if (registry == null) {
+                registry = meterRegistryProvider.getObject();
+                meterRegistry = registry;
+            }
+            return registry;
+        }
+
+        private static String daoName(Class<?> daoClass) {
+            Repository repository = AnnotationUtils.findAnnotation(daoClass, Repository.class);
+            return repository != null && !repository.value().isEmpty()
+                    ? repository.value()
+                    : daoClass.getSimpleName();
+        }
+    }
+}
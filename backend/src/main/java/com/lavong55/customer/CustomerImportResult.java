@@ -0,0 +1,12 @@
+package com.lavong55.customer;
+
+import java.util.List;
+
+public record CustomerImportResult(
+        long rowsRead,
+        long imported,
+        long invalid,
+        long duplicates,
+        List<String> errors
+) {
+}
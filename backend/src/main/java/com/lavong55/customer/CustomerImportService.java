@@ -0,0 +1,281 @@
+package com.lavong55.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lavong55.security.PasswordHasher;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/*
+Bulk import for migration loads. The upload is read line by line, rows are validated and
+hashed a chunk at a time, and pushed with COPY into a temporary staging table. A single
+INSERT ... SELECT then merges the staging table into customer, skipping emails that are
+already registered (or repeated in the file) and reporting them instead of failing the load.
+Only one chunk of rows is ever held on the heap. The merge returns the emails it inserted,
+which are added to the email Bloom filter as they stream back.
+*/
+@Service
+public class CustomerImportService {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    // Caps how many per-line problems are echoed back; the counts are always exact.
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordHasher passwordHasher;
+    private final ObjectMapper objectMapper;
+    private final BloomFilterCustomerDataAccessService emailFilter;
+    private final int chunkSize;
+
+    public CustomerImportService(JdbcTemplate jdbcTemplate,
+                                 PasswordHasher passwordHasher,
+                                 ObjectMapper objectMapper,
+                                 BloomFilterCustomerDataAccessService emailFilter,
+                                 @Value("${customer.import.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordHasher = passwordHasher;
+        this.objectMapper = objectMapper;
+        this.emailFilter = emailFilter;
+        this.chunkSize = chunkSize;
+    }
+
+    public CustomerImportResult importCustomers(InputStream input, Format format) {
+        return jdbcTemplate.execute((ConnectionCallback<CustomerImportResult>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                CustomerImportResult result = importCustomers(connection, input, format);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    private CustomerImportResult importCustomers(Connection connection,
+                                                 InputStream input,
+                                                 Format format) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TEMP TABLE customer_import(
+                        line BIGINT NOT NULL,
+                        name TEXT NOT NULL,
+                        email TEXT NOT NULL,
+                        password TEXT NOT NULL,
+                        age INT NOT NULL,
+                        gender TEXT NOT NULL
+                    ) ON COMMIT DROP
+                    """);
+        }
+
+        List<String> errors = new ArrayList<>();
+        long rowsRead = 0;
+        long invalid = 0;
+        long staged = 0;
+
+        CopyIn copyIn = connection.unwrap(PGConnection.class)
+                .getCopyAPI()
+                .copyIn("COPY customer_import(line, name, email, password, age, gender) FROM STDIN WITH (FORMAT csv)");
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            long line = 0;
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank() || (format == Format.CSV && line == 1 && isCsvHeader(text))) {
+                    continue;
+                }
+                rowsRead++;
+                CustomerRegistrationRequest request;
+                String problem;
+                try {
+                    request = parse(text, format);
+                    problem = CustomerBatchService.validate(request);
+                } catch (IllegalArgumentException | IOException e) {
+                    request = null;
+                    problem = "malformed row";
+                }
+                if (problem != null) {
+                    invalid++;
+                    report(errors, "line %s: %s".formatted(line, problem));
+                    continue;
+                }
+                chunk.add(new Row(line, request));
+                if (chunk.size() == chunkSize) {
+                    staged += stage(copyIn, chunk);
+                    chunk.clear();
+                }
+            }
+            staged += stage(copyIn, chunk);
+            copyIn.endCopy();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+
+        // Rows whose email is already registered, or repeats a line earlier in the file.
+        var duplicatesSql = """
+                SELECT line, email
+                FROM (
+                    SELECT line, email,
+                           row_number() OVER (PARTITION BY lower(email) ORDER BY line) AS occurrence
+                    FROM customer_import
+                ) staged
+                WHERE occurrence > 1
+                   OR EXISTS (SELECT 1 FROM customer c WHERE lower(c.email) = lower(staged.email))
+                ORDER BY line
+                LIMIT ?
+                """;
+        try (PreparedStatement ps = connection.prepareStatement(duplicatesSql)) {
+            ps.setInt(1, MAX_REPORTED_ERRORS);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    report(errors, "line %s: email already taken (%s)"
+                            .formatted(rs.getLong("line"), rs.getString("email")));
+                }
+            }
+        }
+
+        var mergeSql = """
+                INSERT INTO customer(name, email, password, age, gender)
+                SELECT DISTINCT ON (lower(email)) name, email, password, age, gender
+                FROM customer_import staged
+                ORDER BY lower(email), line
+                ON CONFLICT DO NOTHING
+                RETURNING email
+                """;
+        long imported = 0;
+        try (Statement statement = connection.createStatement()) {
+            // Read the returned emails in batches rather than all at once.
+            statement.setFetchSize(chunkSize);
+            try (ResultSet rs = statement.executeQuery(mergeSql)) {
+                while (rs.next()) {
+                    emailFilter.remember(rs.getString(1));
+                    imported++;
+                }
+            }
+        }
+
+        return new CustomerImportResult(rowsRead, imported, invalid, staged - imported, errors);
+    }
+
+    // Hashes the chunk on the hashing pool, then streams it to the open COPY as CSV.
+    private long stage(CopyIn copyIn, List<Row> chunk) throws SQLException {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        List<CompletableFuture<String>> hashes = chunk.stream()
+                .map(row -> passwordHasher.encodeAsync(row.request().password()))
+                .toList();
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < chunk.size(); i++) {
+            Row row = chunk.get(i);
+            CustomerRegistrationRequest request = row.request();
+            csv.append(row.line()).append(',')
+                    .append(quote(request.name())).append(',')
+                    .append(quote(request.email())).append(',')
+                    .append(quote(hashes.get(i).join())).append(',')
+                    .append(request.age()).append(',')
+                    .append(request.gender().name()).append('\n');
+        }
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        return chunk.size();
+    }
+
+    private CustomerRegistrationRequest parse(String text, Format format) throws IOException {
+        if (format == Format.NDJSON) {
+            return objectMapper.readValue(text, CustomerRegistrationRequest.class);
+        }
+        List<String> fields = parseCsvLine(text);
+        if (fields.size() != 5) {
+            throw new IllegalArgumentException("expected 5 columns");
+        }
+        return new CustomerRegistrationRequest(
+                fields.get(0),
+                fields.get(1),
+                fields.get(2),
+                Integer.valueOf(fields.get(3).trim()),
+                Gender.valueOf(fields.get(4).trim().toUpperCase()));
+    }
+
+    private static boolean isCsvHeader(String text) {
+        return text.trim().toLowerCase().startsWith("name,");
+    }
+
+    private static void report(List<String> errors, String error) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    // Splits one CSV record: name,email,password,age,gender. Quoted fields may contain
+    // commas and doubled quotes, but not line breaks.
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quote");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private record Row(long line, CustomerRegistrationRequest request) {
+    }
+}
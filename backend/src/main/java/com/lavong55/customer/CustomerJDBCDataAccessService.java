@@ -1,20 +1,52 @@
 package com.lavong55.customer;
 
+import com.lavong55.datasource.ReadRouting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+/*
+Reads go through ReadRouting, so with datasource.routing.enabled they may be served by a read
+replica; writes record the ids and emails they touch, which keeps reads of those rows on the
+primary for the read-your-writes window.
+*/
 @Repository("jdbc")
 public class CustomerJDBCDataAccessService implements CustomerDao{
 
+    // Rows pulled per round trip by the export cursor; bounds heap use regardless of table size.
+    static final int EXPORT_FETCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
     private final CustomerRowMapper customerRowMapper;
+    private final ReadRouting readRouting;
 
     public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper) {
+        this(jdbcTemplate, customerRowMapper, ReadRouting.disabled());
+    }
+
+    @Autowired
+    public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper,
+                                         ReadRouting readRouting) {
         this.jdbcTemplate = jdbcTemplate;
         this.customerRowMapper = customerRowMapper;
+        this.readRouting = readRouting;
     }
 
     @Override
@@ -23,7 +55,73 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
                     SELECT id, name, email, password, age, gender
                     FROM customer
                     """;
-        return jdbcTemplate.query(sql, customerRowMapper);
+        return readRouting.read(() -> jdbcTemplate.query(sql, customerRowMapper));
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        var sql = """
+                    SELECT id, name, email, password, age, gender
+                    FROM customer
+                    ORDER BY id
+                    """;
+        readRouting.scan(() -> streamQuery(sql, customerRowMapper, action));
+    }
+
+    @Override
+    public void forEachEmail(Consumer<String> action) {
+        var sql = """
+                    SELECT email
+                    FROM customer
+                    """;
+        readRouting.scan(() -> streamQuery(sql, (rs, rowNum) -> rs.getString("email"), action));
+    }
+
+    private <T> void streamQuery(String sql, RowMapper<T> rowMapper, Consumer<T> action) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            // PgJDBC only uses a server-side cursor (honouring the fetch size) when
+            // autocommit is off; otherwise it buffers the whole result set.
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(EXPORT_FETCH_SIZE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    int rowNum = 0;
+                    while (rs.next()) {
+                        action.accept(rowMapper.mapRow(rs, rowNum++));
+                    }
+                } catch (RuntimeException e) {
+                    // The consumer failed (e.g. the client went away): stop the query server side.
+                    ps.cancel();
+                    throw e;
+                }
+            } finally {
+                if (autoCommit) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        // Keyset pagination: seek past the last seen id using the primary key index,
+        // so deep pages cost the same as the first one (unlike OFFSET).
+        var sql = """
+                    SELECT id, name, email, password, age, gender
+                    FROM customer
+                    WHERE id > ?
+                    ORDER BY id
+                    LIMIT ?
+                    """;
+        return readRouting.read(() -> jdbcTemplate.query(sql, customerRowMapper,
+                afterId == null ? 0L : afterId,
+                limit));
     }
 
     @Override
@@ -33,9 +131,9 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
                     FROM customer
                     WHERE id = ?
                     """;
-        return jdbcTemplate.query(sql, customerRowMapper, id)
+        return readRouting.read(() -> jdbcTemplate.query(sql, customerRowMapper, id)
                 .stream()
-                .findFirst();
+                .findFirst(), id);
     }
 
     @Override
@@ -44,25 +142,112 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
                 INSERT INTO customer(name, email, password, age, gender)
                 VALUES (?, ?, ?, ?, ?)
                 """;
-        int update = jdbcTemplate.update(sql,
+        jdbcTemplate.update(sql,
                 customer.getName(),
                 customer.getEmail(),
                 customer.getPassword(),
                 customer.getAge(),
                 customer.getGender().name());
-        System.out.println("jdbcTemplate.update = " + update);
+        readRouting.written(emailKey(customer.getEmail()));
+    }
 
+    @Override
+    public boolean insertCustomerIfEmailAvailable(Customer customer) {
+        // The unique index on lower(email) arbitrates: no prior existence check, no race.
+        var sql = """
+                INSERT INTO customer(name, email, password, age, gender)
+                VALUES (?, ?, ?, ?, ?)
+                ON CONFLICT DO NOTHING
+                RETURNING id
+                """;
+        List<Long> ids = jdbcTemplate.queryForList(sql, Long.class,
+                customer.getName(),
+                customer.getEmail(),
+                customer.getPassword(),
+                customer.getAge(),
+                customer.getGender().name());
+        if (ids.isEmpty()) {
+            return false;
+        }
+        customer.setId(ids.get(0));
+        readRouting.written(customer.getId(), emailKey(customer.getEmail()));
+        return true;
     }
 
     @Override
     public boolean existsCustomerWithEmail(String email) {
         var sql = """
-                    SELECT count(id)
+                    SELECT EXISTS (
+                        SELECT 1
+                        FROM customer
+                        WHERE lower(email) = lower(?)
+                    )
+                    """;
+        return readRouting.read(() -> Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, email)),
+                emailKey(email));
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        // One round trip for the whole batch; the array is bound as a single parameter.
+        var sql = """
+                    SELECT lower(email) AS email
                     FROM customer
-                    WHERE email = ?
+                    WHERE lower(email) = ANY(?)
                     """;
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class,email);
-        return count != null && count > 0;
+        Object[] normalized = emails.stream()
+                .map(email -> email.toLowerCase(Locale.ROOT))
+                .toArray();
+        return readRouting.read(() -> new HashSet<>(jdbcTemplate.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", normalized)),
+                (rs, rowNum) -> rs.getString("email"))), normalized);
+    }
+
+    @Override
+    public Set<String> insertCustomers(List<Customer> customers, int batchSize) {
+        // One multi-row insert per group. Like insertCustomerIfEmailAvailable, the unique index
+        // arbitrates: a taken email skips its row instead of failing the batch, and the emails
+        // that did go in come back so the rest can be reported.
+        var sql = """
+                INSERT INTO customer(name, email, password, age, gender)
+                SELECT * FROM unnest(?::text[], ?::text[], ?::text[], ?::int[], ?::text[])
+                ON CONFLICT DO NOTHING
+                RETURNING lower(email)
+                """;
+        Set<String> skipped = new HashSet<>();
+        for (int from = 0; from < customers.size(); from += batchSize) {
+            List<Customer> group = customers.subList(from, Math.min(from + batchSize, customers.size()));
+            List<String> inserted = jdbcTemplate.query(sql, ps -> {
+                Connection connection = ps.getConnection();
+                ps.setArray(1, connection.createArrayOf("text", group.stream().map(Customer::getName).toArray()));
+                ps.setArray(2, connection.createArrayOf("text", group.stream().map(Customer::getEmail).toArray()));
+                ps.setArray(3, connection.createArrayOf("text", group.stream().map(Customer::getPassword).toArray()));
+                ps.setArray(4, connection.createArrayOf("int4", group.stream().map(Customer::getAge).toArray()));
+                ps.setArray(5, connection.createArrayOf("text", group.stream().map(c -> c.getGender().name()).toArray()));
+            }, (rs, rowNum) -> rs.getString(1));
+            group.forEach(customer -> skipped.add(emailKey(customer.getEmail())));
+            skipped.removeAll(inserted);
+            inserted.forEach(readRouting::written);
+        }
+        return skipped;
+    }
+
+    @Override
+    public void updateNamesAndAges(List<Customer> customers, int batchSize) {
+        var sql = """
+                UPDATE customer
+                SET name = ?, age = ?
+                WHERE id = ?
+                """;
+        jdbcTemplate.batchUpdate(sql, customers, batchSize, (ps, customer) -> {
+            ps.setString(1, customer.getName());
+            ps.setInt(2, customer.getAge());
+            ps.setLong(3, customer.getId());
+        });
+        customers.forEach(customer -> readRouting.written(customer.getId()));
     }
 
     @Override
@@ -72,7 +257,7 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
                     FROM customer
                     WHERE id = ?
                     """;
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class,id);
+        Integer count = readRouting.read(() -> jdbcTemplate.queryForObject(sql, Integer.class,id), id);
         return count != null && count > 0;
 
     }
@@ -85,39 +270,81 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
                 WHERE id = ?
                 """;
         //Anything delete/insert is update.
-        int result = jdbcTemplate.update(sql,customerId);
-        System.out.println("deleteCustomerById result = " + result);
+        jdbcTemplate.update(sql,customerId);
+        readRouting.written(customerId);
+    }
 
+    @Override
+    public void updatePassword(String email, String encodedPassword) {
+        var sql = """
+                    UPDATE customer
+                    SET password = ?
+                    WHERE lower(email) = lower(?)
+                    """;
+        jdbcTemplate.update(sql, encodedPassword, email);
+        readRouting.written(emailKey(email));
     }
 
     @Override
     public void updateCustomer(Customer update) {
-        if (update.getName() != null) {
-            String sql = "UPDATE customer SET name = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getName(),
-                    update.getId()
-            );
-            System.out.println("update customer name result = " + result);
+        Map<String, Object> columns = columnsToUpdate(update);
+        if (columns.isEmpty()) {
+            return;
         }
-        if (update.getAge() != null) {
-            String sql = "UPDATE customer SET age = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getAge(),
-                    update.getId()
-            );
-            System.out.println("update customer age result = " + result);
+        // One statement for all changed columns instead of one round trip per field.
+        var sql = "UPDATE customer SET " + setClause(columns) + " WHERE id = ?";
+        List<Object> args = new ArrayList<>(columns.values());
+        args.add(update.getId());
+        jdbcTemplate.update(sql, args.toArray());
+        readRouting.written(update.getId(), emailKey(update.getEmail()));
+    }
+
+    @Override
+    public Optional<Customer> updateChangedFields(Customer update) {
+        Map<String, Object> columns = columnsToUpdate(update);
+        if (columns.isEmpty()) {
+            return Optional.empty();
+        }
+        // Only write when a value actually differs, and hand the row back with RETURNING so
+        // callers need no read before or after the update. A taken email trips the unique
+        // index and surfaces as DuplicateKeyException.
+        StringBuilder sql = new StringBuilder()
+                .append("UPDATE customer SET ").append(setClause(columns))
+                .append(" WHERE id = ? AND (")
+                .append(columns.keySet().stream()
+                        .map(column -> column + " IS DISTINCT FROM ?")
+                        .collect(Collectors.joining(" OR ")))
+                .append(")");
+        List<Object> args = new ArrayList<>(columns.values());
+        args.add(update.getId());
+        args.addAll(columns.values());
+        sql.append(" RETURNING id, name, email, password, age, gender");
+        Optional<Customer> updated = jdbcTemplate.query(sql.toString(), customerRowMapper, args.toArray())
+                .stream()
+                .findFirst();
+        updated.ifPresent(customer -> readRouting.written(customer.getId(), emailKey(customer.getEmail())));
+        return updated;
+    }
+
+    // Column names are fixed here, only values are bound, so building the SQL is injection safe.
+    private static Map<String, Object> columnsToUpdate(Customer update) {
+        Map<String, Object> columns = new LinkedHashMap<>();
+        if (update.getName() != null) {
+            columns.put("name", update.getName());
         }
         if (update.getEmail() != null) {
-            String sql = "UPDATE customer SET email = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getEmail(),
-                    update.getId());
-            System.out.println("update customer email result = " + result);
+            columns.put("email", update.getEmail());
+        }
+        if (update.getAge() != null) {
+            columns.put("age", update.getAge());
         }
+        return columns;
+    }
+
+    private static String setClause(Map<String, Object> columns) {
+        return columns.keySet().stream()
+                .map(column -> column + " = ?")
+                .collect(Collectors.joining(", "));
     }
 
     @Override
@@ -125,11 +352,15 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
         var sql = """
                     SELECT id, name, email, password, age, gender
                     FROM customer
-                    WHERE email = ?
+                    WHERE lower(email) = lower(?)
                     """;
-        return jdbcTemplate.query(sql, customerRowMapper, email)
+        return readRouting.read(() -> jdbcTemplate.query(sql, customerRowMapper, email)
                 .stream()
-                .findFirst();
+                .findFirst(), emailKey(email));
+    }
+
+    private static String emailKey(String email) {
+        return email == null ? null : email.toLowerCase(Locale.ROOT);
     }
 }
 
@@ -1,17 +1,34 @@
 package com.lavong55.customer;
 
+import com.lavong55.datasource.ReadRouting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
 //Provides implementation of the CustomerDao
+//Repository reads run in read-only transactions, so with replica routing they go to a replica;
+//lookups of rows written within the read-your-writes window are pinned to the primary.
 @Repository("jpa")
 public class CustomerJPADataAccessService implements CustomerDao{
 
     private final CustomerRepository customerRepository;
+    private final ReadRouting readRouting;
 
     public CustomerJPADataAccessService(CustomerRepository customerRepository) {
+        this(customerRepository, ReadRouting.disabled());
+    }
+
+    @Autowired
+    public CustomerJPADataAccessService(CustomerRepository customerRepository, ReadRouting readRouting) {
         this.customerRepository = customerRepository;
+        this.readRouting = readRouting;
     }
 
     @Override
@@ -19,40 +36,95 @@ public class CustomerJPADataAccessService implements CustomerDao{
         return customerRepository.findAll();
     }
 
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        // Always page 0: the id predicate does the seeking, so no OFFSET is generated.
+        return customerRepository.findByIdGreaterThan(
+                afterId == null ? 0L : afterId,
+                PageRequest.of(0, limit, Sort.by("id")));
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Long id) {
-        return customerRepository.findById(Math.toIntExact(id));
+        return readRouting.read(() -> customerRepository.findById(Math.toIntExact(id)), id);
     }
 
     @Override
     public void insertCustomer(Customer customer) {
         customerRepository.save(customer);
+        readRouting.written(customer.getId(), emailKey(customer.getEmail()));
+    }
+
+    @Override
+    public boolean insertCustomerIfEmailAvailable(Customer customer) {
+        if (customerRepository.existsCustomerByEmail(customer.getEmail())) {
+            return false;
+        }
+        try {
+            customerRepository.save(customer);
+            readRouting.written(customer.getId(), emailKey(customer.getEmail()));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Lost the race to a concurrent registration; the unique email index rejected the row.
+            return false;
+        }
     }
 
     @Override
     public boolean existsCustomerWithEmail(String email) {
-        return customerRepository.existsCustomerByEmail(email);
+        return readRouting.read(() -> customerRepository.existsCustomerByEmail(email), emailKey(email));
             }
 
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return customerRepository.findEmailsIn(emails.stream()
+                .map(email -> email.toLowerCase(Locale.ROOT))
+                .toList());
+    }
+
+    @Override
+    public Set<String> insertCustomers(List<Customer> customers, int batchSize) {
+        // A conflicting row would fail the flush and the caller's transaction with it, so taken
+        // emails are filtered out first.
+        Set<String> taken = selectExistingEmails(customers.stream().map(Customer::getEmail).toList());
+        List<Customer> available = customers.stream()
+                .filter(customer -> !taken.contains(emailKey(customer.getEmail())))
+                .toList();
+        customerRepository.saveAll(available);
+        available.forEach(customer -> readRouting.written(customer.getId(), emailKey(customer.getEmail())));
+        return taken;
+    }
+
     @Override
     public boolean existsCustomerWithId(Long id) {
-        return customerRepository.existsCustomerById(id);
+        return readRouting.read(() -> customerRepository.existsCustomerById(id), id);
     }
 
     @Override
     public void deleteCustomerById(Long customerId) {
         customerRepository.deleteById(Math.toIntExact(customerId));
-
+        readRouting.written(customerId);
     }
 
     @Override
     public void updateCustomer(Customer update) {
         customerRepository.save(update);
+        readRouting.written(update.getId(), emailKey(update.getEmail()));
+    }
+
+    @Override
+    public void updatePassword(String email, String encodedPassword) {
+        customerRepository.updatePassword(email, encodedPassword);
+        readRouting.written(emailKey(email));
     }
 
     @Override
     public Optional<Customer> selectUserByEmail(String email) {
-        return customerRepository.findCustomerByEmail(email);
+        return readRouting.read(() -> customerRepository.findCustomerByEmail(email), emailKey(email));
+    }
+
+    private static String emailKey(String email) {
+        return email == null ? null : email.toLowerCase(Locale.ROOT);
     }
 }
 
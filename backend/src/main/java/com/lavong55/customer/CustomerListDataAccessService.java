@@ -1,88 +1,375 @@
 package com.lavong55.customer;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+/*
+Concurrent in-memory CustomerDao, for load tests without a database and for edge nodes.
+
+- Ids come from an AtomicLong, like the database sequence.
+- customersById is a skip list, so lookups are O(log n) and id-ordered pages and exports need no sort.
+- idsByEmail is the unique email index (lower-cased, like the database's). Inserts and email
+  changes claim their key with putIfAbsent, so exactly one of two racing writers gets an email.
+- Writes to the same id are serialized on one of a fixed set of lock stripes, which keeps the two
+  indexes consistent without a global lock. Reads take no lock.
+
+Stored customers are private copies and are never mutated: every write swaps in a new copy and
+every read returns a copy, so callers can't change the store behind its back.
+
+With customer.persistence.enabled the store recovers its rows from disk instead of seeding demo
+customers, and every write is logged while its row lock is held, so the log has each row's
+writes in the order they were applied. A write is appended before the maps change: if encoding
+(a field over 64 KiB) or the append fails, the store is left as it was instead of holding a row
+the log never saw. Waiting for the write to be durable happens after the lock is released; see
+CustomerStorePersistence.
+*/
 @Repository("list")
 public class CustomerListDataAccessService implements CustomerDao {
 
-    // db
-    private static final List<Customer> customers;
-    private final CustomerRepository customerRepository;
+    private static final int STRIPES = 64;
+
+    private final AtomicLong idSequence = new AtomicLong();
+    private final ConcurrentNavigableMap<Long, Customer> customersById = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Long> idsByEmail = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    // null unless customer.persistence.enabled
+    private final CustomerStorePersistence persistence;
+
+    public CustomerListDataAccessService() {
+        this((CustomerStorePersistence) null);
+    }
 
-    public CustomerListDataAccessService(CustomerRepository customerRepository) {
-        this.customerRepository = customerRepository;
+    @Autowired
+    public CustomerListDataAccessService(ObjectProvider<CustomerStorePersistence> persistence) {
+        this(persistence.getIfAvailable());
     }
 
-    static {
-        customers = new ArrayList<>();
+    CustomerListDataAccessService(CustomerStorePersistence persistence) {
+        this.persistence = persistence;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
 
-        Customer alex = new Customer(
+        if (persistence != null) {
+            persistence.recover(this);
+            return;
+        }
+        insertCustomer(new Customer(
                 "Alex",
                 "alex@gmail.com",
                 "password", 21,
-                Gender.MALE);
-        customers.add(alex);
-
-        Customer jamila = new Customer(
+                Gender.MALE));
+        insertCustomer(new Customer(
                 "Jamila",
                 "jamila@gmail.com",
                 "password", 19,
-                Gender.MALE);
-        customers.add(jamila);
+                Gender.MALE));
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
+        return customersById.values()
+                .stream()
+                .map(CustomerListDataAccessService::copy)
+                .toList();
+    }
 
-        return customers;
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        long after = afterId == null ? 0L : afterId;
+        return customersById.tailMap(after, false)
+                .values()
+                .stream()
+                .limit(limit)
+                .map(CustomerListDataAccessService::copy)
+                .toList();
     }
 
     @Override
     public Optional<Customer> selectCustomerById(Long id) {
-        return customers.stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(customersById.get(id))
+                .map(CustomerListDataAccessService::copy);
     }
 
     @Override
     public void insertCustomer(Customer customer) {
-        customers.add(customer);
+        if (!insertCustomerIfEmailAvailable(customer)) {
+            throw new DuplicateKeyException(
+                    "email [%s] already taken".formatted(customer.getEmail()));
+        }
+    }
+
+    @Override
+    public boolean insertCustomerIfEmailAvailable(Customer customer) {
+        long id = idSequence.incrementAndGet();
+        if (idsByEmail.putIfAbsent(key(customer.getEmail()), id) != null) {
+            return false;
+        }
+        // The email is claimed before the row is visible; until then lookups by email see no customer.
+        customer.setId(id);
+        Customer stored = copy(customer);
+        long position;
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            position = logUpsert(stored);
+            customersById.put(id, stored);
+        } catch (RuntimeException e) {
+            idsByEmail.remove(key(customer.getEmail()), id);
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(position);
+        return true;
     }
 
     @Override
     public boolean existsCustomerWithEmail(String email) {
-        return customers.stream()
-                .anyMatch(c -> c.getEmail().equals(email));
+        return findByEmail(email) != null;
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return emails.stream()
+                .map(CustomerListDataAccessService::key)
+                .filter(email -> findByEmail(email) != null)
+                .collect(Collectors.toSet());
     }
 
     @Override
     public boolean existsCustomerWithId(Long id) {
-        return customers.stream()
-                .anyMatch(c -> c.getId().equals(id));
+        return customersById.containsKey(id);
     }
 
     @Override
     public void deleteCustomerById(Long customerId) {
-        customers.stream()
-                .filter(c -> c.getId().equals(customerId))
-                .findFirst()
-                .ifPresent(customers::remove);
+        long position = 0;
+        ReentrantLock lock = lockFor(customerId);
+        lock.lock();
+        try {
+            Customer current = customersById.get(customerId);
+            if (current != null) {
+                position = persistence == null ? 0 : persistence.logDelete(customerId);
+                customersById.remove(customerId);
+                idsByEmail.remove(key(current.getEmail()), customerId);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(position);
     }
 
+    // Writes the non-null name, email and age, like the jdbc DAO's UPDATE; a no-op for unknown
+    // ids, like an UPDATE matching no rows.
     @Override
     public void updateCustomer(Customer customer) {
-        customers.add(customer);
+        long position = 0;
+        ReentrantLock lock = lockFor(customer.getId());
+        lock.lock();
+        try {
+            Customer current = customersById.get(customer.getId());
+            if (current != null) {
+                Customer updated = copy(current);
+                if (customer.getName() != null) {
+                    updated.setName(customer.getName());
+                }
+                if (customer.getEmail() != null) {
+                    updated.setEmail(customer.getEmail());
+                }
+                if (customer.getAge() != null) {
+                    updated.setAge(customer.getAge());
+                }
+                position = replace(current, updated);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(position);
+    }
+
+    // Check and write under the row's lock, so concurrent updates can't both see "changed".
+    @Override
+    public Optional<Customer> updateChangedFields(Customer update) {
+        long position;
+        Customer updated;
+        ReentrantLock lock = lockFor(update.getId());
+        lock.lock();
+        try {
+            Customer current = customersById.get(update.getId());
+            if (current == null) {
+                return Optional.empty();
+            }
+            updated = copy(current);
+            boolean changes = false;
+            if (update.getName() != null && !update.getName().equals(current.getName())) {
+                updated.setName(update.getName());
+                changes = true;
+            }
+            if (update.getAge() != null && !update.getAge().equals(current.getAge())) {
+                updated.setAge(update.getAge());
+                changes = true;
+            }
+            if (update.getEmail() != null && !update.getEmail().equals(current.getEmail())) {
+                updated.setEmail(update.getEmail());
+                changes = true;
+            }
+            if (!changes) {
+                return Optional.empty();
+            }
+            position = replace(current, updated);
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(position);
+        return Optional.of(copy(updated));
+    }
+
+    @Override
+    public void updatePassword(String email, String encodedPassword) {
+        Long id = idsByEmail.get(key(email));
+        if (id == null) {
+            return;
+        }
+        long position = 0;
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            Customer current = customersById.get(id);
+            if (current != null && current.getEmail().equalsIgnoreCase(email)) {
+                Customer updated = copy(current);
+                updated.setPassword(encodedPassword);
+                position = logUpsert(updated);
+                customersById.put(id, updated);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(position);
     }
 
     @Override
     public Optional<Customer> selectUserByEmail(String email) {
-        return customers.stream()
-                .filter(c -> c.getUsername().equals(email))
-                .findFirst();
+        return Optional.ofNullable(findByEmail(email))
+                .map(CustomerListDataAccessService::copy);
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        customersById.values().forEach(customer -> action.accept(copy(customer)));
+    }
+
+    @Override
+    public void forEachEmail(Consumer<String> action) {
+        customersById.values().forEach(customer -> action.accept(customer.getEmail()));
+    }
+
+    // Replaces the whole store with recovered rows; called once, before the store is in use.
+    // Rows go into the skip list in id order, which keeps its search paths in cache; the email
+    // index, the larger cost, is built on all cores.
+    void restore(Collection<Customer> customers, long lastId) {
+        customersById.clear();
+        idsByEmail.clear();
+        List<Customer> sorted = new ArrayList<>(customers);
+        sorted.sort(Comparator.comparing(Customer::getId));
+        for (Customer customer : sorted) {
+            customersById.put(customer.getId(), customer);
+        }
+        sorted.parallelStream()
+                .forEach(customer -> idsByEmail.put(key(customer.getEmail()), customer.getId()));
+        idSequence.set(lastId);
+    }
+
+    long lastId() {
+        return idSequence.get();
+    }
+
+    // Caller holds the row's lock. Claims a changed email before releasing the old one, so the
+    // row is never without an index entry and a taken email leaves everything untouched.
+    // Returns the log position to wait for.
+    private long replace(Customer current, Customer updated) {
+        String oldKey = key(current.getEmail());
+        String newKey = key(updated.getEmail());
+        boolean claimed = false;
+        if (!oldKey.equals(newKey)) {
+            Long owner = idsByEmail.putIfAbsent(newKey, updated.getId());
+            if (owner != null && !owner.equals(updated.getId())) {
+                throw new DuplicateKeyException(
+                        "email [%s] already taken".formatted(updated.getEmail()));
+            }
+            claimed = owner == null;
+        }
+        long position;
+        try {
+            position = logUpsert(updated);
+        } catch (RuntimeException e) {
+            if (claimed) {
+                idsByEmail.remove(newKey, updated.getId());
+            }
+            throw e;
+        }
+        customersById.put(updated.getId(), updated);
+        if (!oldKey.equals(newKey)) {
+            idsByEmail.remove(oldKey, updated.getId());
+        }
+        return position;
+    }
+
+    // Caller holds the row's lock.
+    private long logUpsert(Customer row) {
+        return persistence == null ? 0 : persistence.logUpsert(row);
+    }
+
+    private void awaitDurable(long position) {
+        if (persistence != null) {
+            persistence.awaitDurable(position);
+        }
+    }
+
+    private Customer findByEmail(String email) {
+        Long id = idsByEmail.get(key(email));
+        if (id == null) {
+            return null;
+        }
+        Customer customer = customersById.get(id);
+        // Null while an insert is still publishing the row, or after a concurrent email change.
+        return customer != null && customer.getEmail().equalsIgnoreCase(email) ? customer : null;
+    }
+
+    private ReentrantLock lockFor(Long id) {
+        return locks[Long.hashCode(id) & (STRIPES - 1)];
+    }
+
+    private static String key(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private static Customer copy(Customer customer) {
+        return new Customer(
+                customer.getId(),
+                customer.getName(),
+                customer.getEmail(),
+                customer.getPassword(),
+                customer.getAge(),
+                customer.getGender());
     }
 }
 
@@ -90,7 +377,7 @@ public class CustomerListDataAccessService implements CustomerDao {
 b. CustomerListDataAccessService:
 
 This implementation does not use any database directly.
-It maintains an in-memory list of customers (List<Customer> customers).
+It maintains customers in memory: a map keyed by id plus a unique index on email.
 The CustomerListDataAccessService class is annotated with @Repository("list"), indicating that it is a Spring
 repository component with the name "list".
- */
\ No newline at end of file
+ */
@@ -0,0 +1,326 @@
+package com.lavong55.customer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/*
+Append-only customer mutation log in fixed-size segment files, each written through a
+read-write memory mapping: an append is a memcpy into the page cache, with no system call.
+
+Positions are (segment << 32 | offset), pointing just past a record, so they stay comparable
+whatever the segment size. Unused space at the end of a segment is zeros, which reads as "end".
+
+Durability is a single flusher thread forcing the written range to disk:
+- SYNC: append() returns a position and the caller waits in awaitDurable() until a force covers
+  it. Writers that arrive while a force is running share the next one: group commit.
+- PERIODIC: the flusher forces every flush interval and nobody waits. A crash loses at most
+  that interval of writes.
+*/
+final class CustomerMutationLog implements Closeable {
+
+    enum Durability { SYNC, PERIODIC }
+
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Durability durability;
+    private final long flushIntervalNanos;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private long segmentIndex;
+    private MappedByteBuffer segment;
+    private int offset;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition flushRequested = flushLock.newCondition();
+    private final Condition flushed = flushLock.newCondition();
+    private volatile long writtenPosition;
+    private volatile long durablePosition;
+    private volatile boolean closed;
+    private MappedByteBuffer lastFlushedSegment;
+    private int lastFlushedOffset;
+    private final Thread flusher;
+
+    // Opens the log for appending at a position returned by replay().
+    CustomerMutationLog(Path directory, int segmentSize, Durability durability,
+                        Duration flushInterval, long position) {
+        if (segmentSize < 2 * CustomerRecords.MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException(
+                    "segment size must be at least %d bytes".formatted(2 * CustomerRecords.MAX_RECORD_BYTES));
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.durability = durability;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.segmentIndex = segment(position);
+        this.offset = offset(position);
+        this.segment = map(segmentIndex);
+        // Zero whatever a crash left past the last valid record, so stale bytes can never be
+        // read as records once new ones are appended in front of them.
+        ByteBuffer tail = segment.duplicate().position(offset);
+        if (!CustomerRecords.isEnd(tail)) {
+            for (int i = offset; i < segment.capacity(); i++) {
+                segment.put(i, (byte) 0);
+            }
+            segment.force();
+        }
+        this.writtenPosition = position;
+        this.durablePosition = position;
+        this.flusher = new Thread(this::flushLoop, "customer-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /*
+    Reads every valid record from a position onwards and returns the position just past the last
+    one: where appending resumes. Replay stops at the first torn or corrupt record; segments
+    after it are deleted, since they can't be ordered after a gap.
+    */
+    static long replay(Path directory, long from, Consumer<CustomerRecords.Mutation> consumer) {
+        List<Long> segments = segments(directory);
+        long index = segment(from);
+        int start = offset(from);
+        long end = from;
+        while (segments.contains(index)) {
+            MappedByteBuffer buffer = mapReadOnly(file(directory, index));
+            buffer.position(Math.min(start, buffer.capacity()));
+            CustomerRecords.Mutation mutation;
+            while ((mutation = CustomerRecords.read(buffer)) != null) {
+                consumer.accept(mutation);
+                end = position(index, buffer.position());
+            }
+            end = Math.max(end, position(index, buffer.position()));
+            if (!CustomerRecords.isEnd(buffer)) {
+                long corrupt = index;
+                segments.stream()
+                        .filter(later -> later > corrupt)
+                        .forEach(later -> delete(file(directory, later)));
+                break;
+            }
+            index++;
+            start = 0;
+            if (segments.contains(index)) {
+                end = position(index, 0);
+            }
+        }
+        return end;
+    }
+
+    long append(byte[] record) {
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("customer log is closed");
+            }
+            if (offset + record.length > segmentSize) {
+                roll();
+            }
+            segment.put(offset, record);
+            offset += record.length;
+            long position = position(segmentIndex, offset);
+            writtenPosition = position;
+            return position;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Blocks until everything up to the position is on disk; returns at once under PERIODIC.
+    void awaitDurable(long position) {
+        if (durability != Durability.SYNC || durablePosition >= position) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            while (durablePosition < position && !closed) {
+                flushRequested.signal();
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Starts a new segment, unless the current one is empty, and returns its start position.
+    long startNewSegment() {
+        appendLock.lock();
+        try {
+            if (offset > 0) {
+                roll();
+            }
+            return position(segmentIndex, 0);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Deletes segments that hold only records before the position, once a snapshot covers them.
+    void deleteSegmentsBefore(long position) {
+        segments(directory).stream()
+                .filter(index -> index < segment(position))
+                .forEach(index -> delete(file(directory, index)));
+    }
+
+    long writtenPosition() {
+        return writtenPosition;
+    }
+
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            segment.force();
+        } finally {
+            appendLock.unlock();
+        }
+        markDurable(writtenPosition);
+        flushLock.lock();
+        try {
+            flushRequested.signal();
+        } finally {
+            flushLock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Caller holds appendLock. Rolls are rare, so the old segment is forced inline.
+    private void roll() {
+        segment.force();
+        markDurable(position(segmentIndex, offset));
+        segmentIndex++;
+        offset = 0;
+        segment = map(segmentIndex);
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            flushLock.lock();
+            try {
+                // SYNC flushes as soon as a writer asks; PERIODIC on the interval only.
+                if (!closed && (durability == Durability.PERIODIC || durablePosition >= writtenPosition)) {
+                    flushRequested.awaitNanos(flushIntervalNanos);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                flushLock.unlock();
+            }
+            flush();
+        }
+    }
+
+    private void flush() {
+        MappedByteBuffer buffer;
+        long target;
+        int to;
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            buffer = segment;
+            target = writtenPosition;
+            to = offset;
+        } finally {
+            appendLock.unlock();
+        }
+        if (target <= durablePosition) {
+            return;
+        }
+        int from = buffer == lastFlushedSegment ? lastFlushedOffset : 0;
+        if (to > from) {
+            buffer.force(from, to - from);
+        }
+        lastFlushedSegment = buffer;
+        lastFlushedOffset = to;
+        markDurable(target);
+    }
+
+    private void markDurable(long position) {
+        flushLock.lock();
+        try {
+            if (position > durablePosition) {
+                durablePosition = position;
+            }
+            flushed.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private MappedByteBuffer map(long index) {
+        try (FileChannel channel = FileChannel.open(file(directory, index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Mapping past the end grows the file to a full, zero-filled segment.
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MappedByteBuffer mapReadOnly(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Long> segments(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path file(Path directory, long index) {
+        return directory.resolve("%020d%s".formatted(index, SUFFIX));
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static long position(long segment, int offset) {
+        return segment << 32 | offset;
+    }
+
+    private static long segment(long position) {
+        return position >>> 32;
+    }
+
+    private static int offset(long position) {
+        return (int) position;
+    }
+}
@@ -0,0 +1,9 @@
+package com.lavong55.customer;
+
+import java.util.List;
+
+public record CustomerPage(
+        List<CustomerDTO> customers,
+        Long nextCursor
+) {
+}
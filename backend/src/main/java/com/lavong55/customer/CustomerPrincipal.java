@@ -0,0 +1,26 @@
+package com.lavong55.customer;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.security.Principal;
+import java.util.List;
+
+/*
+Immutable principal placed in the SecurityContext for JWT-authenticated requests. Carries
+only what authorization needs, never the password hash, so it is safe to cache.
+*/
+public record CustomerPrincipal(
+        Long id,
+        String email,
+        List<GrantedAuthority> authorities
+) implements Principal {
+
+    public CustomerPrincipal {
+        authorities = List.copyOf(authorities);
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -0,0 +1,94 @@
+package com.lavong55.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Principal lookup for JWTAuthenticationFilter. Resolving a token subject only needs the
+customer's id and authorities, so misses run a narrow id/email query instead of loading the
+full entity, and hits (the steady state) need no database round trip at all. Entries live
+for a short TTL and are evicted explicitly when a customer is updated or deleted, so an
+email change or deletion locks the old token out immediately on this instance.
+*/
+@Service
+public class CustomerPrincipalStore {
+
+    private static final List<GrantedAuthority> AUTHORITIES =
+            List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<String, CustomerPrincipal> principalsByEmail;
+    // Bumped by every evict, so a load that overlapped one can withdraw what it cached.
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CustomerPrincipalStore(JdbcTemplate jdbcTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${customer.principal-cache.maximum-size:100000}") long maximumSize,
+                                  @Value("${customer.principal-cache.expire-after-write:PT5M}") Duration expireAfterWrite) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.principalsByEmail = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principalsByEmail, "customerPrincipals");
+    }
+
+    public CustomerPrincipal loadPrincipal(String email) {
+        // Not cache.get(key, loader): that runs the query while holding a map bin lock, which
+        // pins a virtual thread's carrier. Concurrent misses may both query; the last put wins.
+        // An evict (delete, email change) that ran while we queried may have missed our put, so
+        // the entry is taken back out if one did: evict bumps the counter before it scans.
+        String key = key(email);
+        CustomerPrincipal principal = principalsByEmail.getIfPresent(key);
+        if (principal == null) {
+            long generation = evictions.get();
+            principal = selectPrincipal(key);
+            if (principal == null) {
+                throw new UsernameNotFoundException("Username " + email + " not found");
+            }
+            principalsByEmail.put(key, principal);
+            if (evictions.get() != generation) {
+                principalsByEmail.asMap().remove(key, principal);
+            }
+        }
+        return principal;
+    }
+
+    public void evict(Long customerId) {
+        // Keyed by email because that is what tokens carry; id evictions are rare enough to scan.
+        evictions.incrementAndGet();
+        principalsByEmail.asMap().values().removeIf(principal -> principal.id().equals(customerId));
+    }
+
+    private CustomerPrincipal selectPrincipal(String email) {
+        var sql = """
+                SELECT id, email
+                FROM customer
+                WHERE lower(email) = ?
+                """;
+        return jdbcTemplate.query(sql,
+                        (rs, rowNum) -> new CustomerPrincipal(rs.getLong("id"), rs.getString("email"), AUTHORITIES),
+                        email)
+                .stream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static String key(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
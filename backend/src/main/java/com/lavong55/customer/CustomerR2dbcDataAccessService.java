@@ -0,0 +1,151 @@
+package com.lavong55.customer;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Repository("r2dbc")
+@ConditionalOnProperty(name = "reactive.enabled", havingValue = "true")
+public class CustomerR2dbcDataAccessService implements ReactiveCustomerDao {
+
+    private final DatabaseClient databaseClient;
+    private final int fetchSize;
+
+    public CustomerR2dbcDataAccessService(DatabaseClient databaseClient,
+                                          @Value("${reactive.fetch-size:256}") int fetchSize) {
+        this.databaseClient = databaseClient;
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public Flux<Customer> selectAllCustomers() {
+        var sql = """
+                    SELECT id, name, email, password, age, gender
+                    FROM customer
+                    ORDER BY id
+                    """;
+        // With a fetch size the driver reads through a portal, pulling the next rows only when
+        // the subscriber asks for more, so a slow client holds back the query instead of
+        // buffering the table in memory. Cancelling the subscription closes the portal.
+        return databaseClient.sql(sql)
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .all();
+    }
+
+    @Override
+    public Mono<Customer> selectCustomerById(Long id) {
+        var sql = """
+                    SELECT id, name, email, password, age, gender
+                    FROM customer
+                    WHERE id = :id
+                    """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .one();
+    }
+
+    @Override
+    public Mono<Boolean> existsCustomerWithId(Long id) {
+        var sql = """
+                    SELECT EXISTS (
+                        SELECT 1
+                        FROM customer
+                        WHERE id = :id
+                    ) AS present
+                    """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(row -> row.get("present", Boolean.class))
+                .one();
+    }
+
+    @Override
+    public Mono<Long> insertCustomerIfEmailAvailable(Customer customer) {
+        var sql = """
+                INSERT INTO customer(name, email, password, age, gender)
+                VALUES (:name, :email, :password, :age, :gender)
+                ON CONFLICT DO NOTHING
+                RETURNING id
+                """;
+        return databaseClient.sql(sql)
+                .bind("name", customer.getName())
+                .bind("email", customer.getEmail())
+                .bind("password", customer.getPassword())
+                .bind("age", customer.getAge())
+                .bind("gender", customer.getGender().name())
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .doOnNext(customer::setId);
+    }
+
+    @Override
+    public Mono<Customer> updateChangedFields(Customer update) {
+        Map<String, Object> columns = columnsToUpdate(update);
+        if (columns.isEmpty()) {
+            return Mono.empty();
+        }
+        // Same single statement as the JDBC DAO: only writes when a value differs and returns
+        // the row. Column names are fixed here, only values are bound.
+        String sql = "UPDATE customer SET "
+                + columns.keySet().stream()
+                        .map(column -> column + " = :" + column)
+                        .collect(Collectors.joining(", "))
+                + " WHERE id = :id AND ("
+                + columns.keySet().stream()
+                        .map(column -> column + " IS DISTINCT FROM :" + column)
+                        .collect(Collectors.joining(" OR "))
+                + ") RETURNING id, name, email, password, age, gender";
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql).bind("id", update.getId());
+        for (Map.Entry<String, Object> column : columns.entrySet()) {
+            spec = spec.bind(column.getKey(), column.getValue());
+        }
+        return spec.map(CustomerR2dbcDataAccessService::mapRow).one();
+    }
+
+    @Override
+    public Mono<Long> deleteCustomerById(Long customerId) {
+        var sql = """
+                DELETE
+                FROM customer
+                WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", customerId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static Map<String, Object> columnsToUpdate(Customer update) {
+        Map<String, Object> columns = new LinkedHashMap<>();
+        if (update.getName() != null) {
+            columns.put("name", update.getName());
+        }
+        if (update.getEmail() != null) {
+            columns.put("email", update.getEmail());
+        }
+        if (update.getAge() != null) {
+            columns.put("age", update.getAge());
+        }
+        return columns;
+    }
+
+    private static Customer mapRow(Readable row) {
+        return new Customer(
+                row.get("id", Long.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("password", String.class),
+                row.get("age", Integer.class),
+                Gender.valueOf(row.get("gender", String.class)));
+    }
+}
@@ -0,0 +1,141 @@
+package com.lavong55.customer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/*
+Binary framing shared by the customer mutation log and snapshots:
+
+  int bodyLength | int crc32c(body) | body
+
+where body is either UPSERT (type, id, name, email, password, age, gender), the customer's full
+row after the change, or DELETE (type, id). Full rows make replay idempotent: applying the
+same mutation twice, or on top of a newer snapshot, lands on the same state.
+*/
+final class CustomerRecords {
+
+    static final byte UPSERT = 1;
+    static final byte DELETE = 2;
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+    static final int MAX_STRING_BYTES = 0xFFFF;
+    static final int MAX_BODY_BYTES = 1 + Long.BYTES + 3 * (Integer.BYTES + MAX_STRING_BYTES) + Integer.BYTES + 1;
+    static final int MAX_RECORD_BYTES = HEADER_BYTES + MAX_BODY_BYTES;
+
+    private static final Gender[] GENDERS = Gender.values();
+
+    record Mutation(byte type, long id, Customer customer) {
+    }
+
+    private CustomerRecords() {
+    }
+
+    static byte[] upsert(Customer customer) {
+        byte[] name = utf8(customer.getName());
+        byte[] email = utf8(customer.getEmail());
+        byte[] password = utf8(customer.getPassword());
+        int bodyLength = 1 + Long.BYTES
+                + Integer.BYTES + name.length
+                + Integer.BYTES + email.length
+                + Integer.BYTES + password.length
+                + Integer.BYTES + 1;
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + bodyLength)
+                .putInt(bodyLength)
+                .putInt(0)
+                .put(UPSERT)
+                .putLong(customer.getId())
+                .putInt(name.length).put(name)
+                .putInt(email.length).put(email)
+                .putInt(password.length).put(password)
+                .putInt(customer.getAge())
+                .put((byte) customer.getGender().ordinal());
+        return seal(frame);
+    }
+
+    static byte[] delete(long id) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + 1 + Long.BYTES)
+                .putInt(1 + Long.BYTES)
+                .putInt(0)
+                .put(DELETE)
+                .putLong(id);
+        return seal(frame);
+    }
+
+    // True at the end of written data: too few bytes left for a header, or a zero length.
+    static boolean isEnd(ByteBuffer buffer) {
+        return buffer.remaining() < HEADER_BYTES || buffer.getInt(buffer.position()) == 0;
+    }
+
+    /*
+    Reads the record at the buffer's position and moves past it. Returns null, leaving the
+    position unchanged, if the record is truncated or its checksum doesn't match: a torn write.
+    */
+    static Mutation read(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int bodyLength = buffer.getInt(start);
+        int checksum = buffer.getInt(start + Integer.BYTES);
+        if (bodyLength <= 0 || bodyLength > MAX_BODY_BYTES || buffer.remaining() < HEADER_BYTES + bodyLength) {
+            return null;
+        }
+        ByteBuffer body = buffer.slice(start + HEADER_BYTES, bodyLength);
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        Mutation mutation;
+        try {
+            mutation = decode(body);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        buffer.position(start + HEADER_BYTES + bodyLength);
+        return mutation;
+    }
+
+    private static Mutation decode(ByteBuffer body) {
+        byte type = body.get();
+        long id = body.getLong();
+        if (type == DELETE) {
+            return new Mutation(DELETE, id, null);
+        }
+        if (type != UPSERT) {
+            throw new IllegalArgumentException("unknown record type " + type);
+        }
+        String name = string(body);
+        String email = string(body);
+        String password = string(body);
+        int age = body.getInt();
+        Gender gender = GENDERS[body.get()];
+        return new Mutation(UPSERT, id, new Customer(id, name, email, password, age, gender));
+    }
+
+    private static byte[] seal(ByteBuffer frame) {
+        CRC32C crc = new CRC32C();
+        crc.update(frame.array(), HEADER_BYTES, frame.capacity() - HEADER_BYTES);
+        frame.putInt(Integer.BYTES, (int) crc.getValue());
+        return frame.array();
+    }
+
+    private static byte[] utf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException(
+                    "value of %d UTF-8 bytes exceeds %d".formatted(bytes.length, MAX_STRING_BYTES));
+        }
+        return bytes;
+    }
+
+    private static String string(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0 || length > body.remaining()) {
+            throw new IllegalArgumentException("bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
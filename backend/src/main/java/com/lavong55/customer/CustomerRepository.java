@@ -1,8 +1,17 @@
 package com.lavong55.customer;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 //Annotation not needed.
 @Repository
@@ -12,9 +21,22 @@ public interface CustomerRepository
     //auto generates query.
     //Don't really have to test. but we did anyway. For more complex/custom queries, yes.
     //For below, you can auto generate SQL, and it's guaranteed to work.
-    boolean existsCustomerByEmail(String email);
+    //Emails are unique case-insensitively (index on lower(email)), so compare the same way.
+    @Query("SELECT count(c) > 0 FROM Customer c WHERE lower(c.email) = lower(:email)")
+    boolean existsCustomerByEmail(@Param("email") String email);
     boolean existsCustomerById(Long id);
-    Optional<Customer> findCustomerByEmail(String email);
+    @Query("SELECT c FROM Customer c WHERE lower(c.email) = lower(:email)")
+    Optional<Customer> findCustomerByEmail(@Param("email") String email);
+    // Returning a List (not a Page) skips the extra count(*) query.
+    List<Customer> findByIdGreaterThan(Long id, Pageable pageable);
+    //Expects lower-cased emails and returns them lower-cased.
+    @Query("SELECT lower(c.email) FROM Customer c WHERE lower(c.email) IN :emails")
+    Set<String> findEmailsIn(@Param("emails") Collection<String> emails);
+    //Bulk update: writes only the password column, without loading the entity first.
+    @Transactional
+    @Modifying
+    @Query("UPDATE Customer c SET c.password = :password WHERE lower(c.email) = lower(:email)")
+    int updatePassword(@Param("email") String email, @Param("password") String password);
 }
 
 /*
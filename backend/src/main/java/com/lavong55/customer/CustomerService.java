@@ -3,25 +3,38 @@ package com.lavong55.customer;
 import com.lavong55.exception.DuplicateResourceException;
 import com.lavong55.exception.RequestValidationException;
 import com.lavong55.exception.ResourceNotFoundException;
+import com.lavong55.jwt.RefreshTokenService;
+import com.lavong55.jwt.TokenEpochStore;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 //Contains "business" logic, i.e application logic.
 @Service
 public class CustomerService {
 
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 1000;
+
     private final CustomerDao customerDao;
     private final PasswordEncoder passwordEncoder;
     private final CustomerDTOMapper customerDTOMapper;
+    private final CustomerPrincipalStore customerPrincipalStore;
+    private final TokenEpochStore tokenEpochStore;
+    private final RefreshTokenService refreshTokenService;
 
-    public CustomerService(@Qualifier("jdbc") CustomerDao customerDao, PasswordEncoder passwordEncoder, CustomerDTOMapper customerDTOMapper) {
+    public CustomerService(@Qualifier("cache") CustomerDao customerDao, PasswordEncoder passwordEncoder, CustomerDTOMapper customerDTOMapper, CustomerPrincipalStore customerPrincipalStore, TokenEpochStore tokenEpochStore, RefreshTokenService refreshTokenService) {
         this.customerDao = customerDao;
         this.passwordEncoder = passwordEncoder;
         this.customerDTOMapper = customerDTOMapper;
+        this.customerPrincipalStore = customerPrincipalStore;
+        this.tokenEpochStore = tokenEpochStore;
+        this.refreshTokenService = refreshTokenService;
     }
 
     public List<CustomerDTO> getAllCustomers() {
@@ -31,6 +44,29 @@ public class CustomerService {
                 .collect(Collectors.toList());
     }
 
+    public CustomerPage getCustomers(Long after, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new RequestValidationException(
+                    "limit must be between 1 and %s".formatted(MAX_PAGE_SIZE)
+            );
+        }
+
+        // Fetch one extra row to find out whether there is a next page without a count query.
+        List<Customer> customers = customerDao.selectCustomers(after, pageSize + 1);
+        boolean hasNext = customers.size() > pageSize;
+        List<CustomerDTO> page = customers.stream()
+                .limit(pageSize)
+                .map(customerDTOMapper)
+                .collect(Collectors.toList());
+        Long nextCursor = hasNext ? page.get(page.size() - 1).id() : null;
+        return new CustomerPage(page, nextCursor);
+    }
+
+    public void exportCustomers(Consumer<CustomerDTO> sink) {
+        customerDao.forEachCustomer(customer -> sink.accept(customerDTOMapper.apply(customer)));
+    }
+
     public CustomerDTO getCustomer(Long id) {
         return customerDao.selectCustomerById(id)
                 .map(customerDTOMapper)
@@ -39,16 +75,7 @@ public class CustomerService {
                 ));
     }
 
-    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
-        // check if email exists
-        String email = customerRegistrationRequest.email();
-        if (customerDao.existsCustomerWithEmail(email)) {
-            throw new DuplicateResourceException(
-                    "email already taken"
-            );
-        }
-
-        // add
+    public Long addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
         Customer customer = new Customer(
                 customerRegistrationRequest.name(),
                 customerRegistrationRequest.email(),
@@ -57,7 +84,13 @@ public class CustomerService {
                 customerRegistrationRequest.gender()
         );
 
-        customerDao.insertCustomer(customer);
+        // add, letting the unique email index reject duplicates in the same round trip
+        if (!customerDao.insertCustomerIfEmailAvailable(customer)) {
+            throw new DuplicateResourceException(
+                    "email already taken"
+            );
+        }
+        return customer.getId();
     }
 
     public void deleteCustomerById(Long customerId) {
@@ -67,44 +100,60 @@ public class CustomerService {
             );
         }
 
+        // End every session first; the customer's refresh tokens are deleted with the row.
+        refreshTokenService.revokeAll(customerId);
         customerDao.deleteCustomerById(customerId);
+        customerPrincipalStore.evict(customerId);
     }
 
-    public void updateCustomer(Long customerId,
-                               CustomerUpdateRequest updateRequest) {
-        // TODO: for JPA use .getReferenceById(customerId) as it does does not bring object into memory and instead a reference
-        Customer customer = customerDao.selectCustomerById(customerId)
-                .orElseThrow(() -> new ResourceNotFoundException(
-                        "customer with id [%s] not found".formatted(customerId)
-                ));
-
-        boolean changes = false;
-
-        if (updateRequest.name() != null && !updateRequest.name().equals(customer.getName())) {
-            customer.setName(updateRequest.name());
-            changes = true;
+    // Forced logout: every refresh and access token of the customer stops working.
+    public void revokeSessions(Long customerId) {
+        if (!customerDao.existsCustomerWithId(customerId)) {
+            throw new ResourceNotFoundException(
+                    "customer with id [%s] not found".formatted(customerId)
+            );
         }
+        refreshTokenService.revokeAll(customerId);
+    }
 
-        if (updateRequest.age() != null && !updateRequest.age().equals(customer.getAge())) {
-            customer.setAge(updateRequest.age());
-            changes = true;
+    public void updateCustomer(Long customerId,
+                               CustomerUpdateRequest updateRequest) {
+        if (updateRequest.name() == null
+                && updateRequest.email() == null
+                && updateRequest.age() == null) {
+            throw new RequestValidationException("no data changes found");
         }
 
-        if (updateRequest.email() != null && !updateRequest.email().equals(customer.getEmail())) {
-            if (customerDao.existsCustomerWithEmail(updateRequest.email())) {
-                throw new DuplicateResourceException(
-                        "email already taken"
-                );
+        Customer update = new Customer();
+        update.setId(customerId);
+        update.setName(updateRequest.name());
+        update.setEmail(updateRequest.email());
+        update.setAge(updateRequest.age());
+
+        // Happy path is a single statement; the DAO only writes when something changed.
+        try {
+            if (customerDao.updateChangedFields(update).isPresent()) {
+                customerPrincipalStore.evict(customerId);
+                if (updateRequest.email() != null) {
+                    // Outstanding tokens name the old email as their subject.
+                    tokenEpochStore.revoke(customerId);
+                }
+                return;
             }
-            customer.setEmail(updateRequest.email());
-            changes = true;
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateResourceException(
+                    "email already taken"
+            );
         }
 
-        if (!changes) {
-            throw new RequestValidationException("no data changes found");
+        // Nothing was written, so work out why. Only failed updates pay for this read.
+        if (!customerDao.existsCustomerWithId(customerId)) {
+            throw new ResourceNotFoundException(
+                    "customer with id [%s] not found".formatted(customerId)
+            );
         }
 
-        customerDao.updateCustomer(customer);
+        throw new RequestValidationException("no data changes found");
     }
 }
 
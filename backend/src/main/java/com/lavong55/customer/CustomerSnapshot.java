@@ -0,0 +1,149 @@
+package com.lavong55.customer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/*
+Compacted snapshot of the customer store: one UPSERT record per live customer, in the log's
+framing, after a header holding the log position that replay resumes from and the id sequence.
+
+Snapshots are fuzzy: rows are copied while writes continue. That's safe because the log
+position is taken first and replaying full rows from it is idempotent, so whatever changed
+during the copy is simply applied again.
+
+A snapshot is written to a temporary file, forced, and renamed into place, so a crash leaves
+either the old snapshot or the new one. Reading maps the file in windows rather than streaming
+it, which keeps recovery of a multi-gigabyte snapshot down to page-cache reads and decoding.
+*/
+final class CustomerSnapshot {
+
+    record Header(long logPosition, long lastId, long count) {
+    }
+
+    private static final int MAGIC = 0x43534E50;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES + 3 * Long.BYTES;
+    private static final long WINDOW_BYTES = 256L << 20;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+    private static final String TEMPORARY = ".tmp";
+
+    private CustomerSnapshot() {
+    }
+
+    static Header write(Path directory, long logPosition, long lastId, Consumer<Consumer<Customer>> rows) {
+        Path file = directory.resolve("%s%016x%s".formatted(PREFIX, logPosition, SUFFIX));
+        Path temporary = directory.resolve(file.getFileName() + TEMPORARY);
+        long[] count = {0};
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_BYTES);
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            rows.accept(customer -> {
+                try {
+                    out.write(CustomerRecords.upsert(customer));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+            out.flush();
+            Header header = new Header(logPosition, lastId, count[0]);
+            channel.write(ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(header.logPosition())
+                    .putLong(header.lastId())
+                    .putLong(header.count())
+                    .flip(), 0);
+            channel.force(true);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(directory);
+            for (Path older : snapshots(directory)) {
+                if (older.getFileName().toString().compareTo(file.getFileName().toString()) < 0) {
+                    Files.delete(older);
+                }
+            }
+            return header;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Feeds the latest snapshot's customers to the sink. Empty if there is no snapshot yet.
+    static Optional<Header> read(Path directory, Consumer<Customer> sink) {
+        List<Path> snapshots = snapshots(directory);
+        if (snapshots.isEmpty()) {
+            return Optional.empty();
+        }
+        Path file = snapshots.get(snapshots.size() - 1);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw corrupt(file);
+            }
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, WINDOW_BYTES));
+            if (window.getInt() != MAGIC || window.getInt() != VERSION) {
+                throw corrupt(file);
+            }
+            Header header = new Header(window.getLong(), window.getLong(), window.getLong());
+            long windowStart = 0;
+            for (long i = 0; i < header.count(); i++) {
+                long position = windowStart + window.position();
+                // Remap when the next record could run past the window.
+                if (window.remaining() < CustomerRecords.MAX_RECORD_BYTES && windowStart + window.limit() < size) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, WINDOW_BYTES));
+                }
+                CustomerRecords.Mutation mutation = CustomerRecords.read(window);
+                if (mutation == null || mutation.type() != CustomerRecords.UPSERT) {
+                    throw corrupt(file);
+                }
+                sink.accept(mutation.customer());
+            }
+            return Optional.of(header);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static IllegalStateException corrupt(Path file) {
+        return new IllegalStateException("customer snapshot [%s] is corrupt".formatted(file));
+    }
+
+    private static List<Path> snapshots(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Makes the rename itself durable.
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory; the rename is still atomic there.
+        }
+    }
+}
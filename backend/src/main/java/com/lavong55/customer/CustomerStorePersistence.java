@@ -0,0 +1,135 @@
+package com.lavong55.customer;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+Makes the list DAO survive restarts: every write is appended to a CustomerMutationLog and a
+compacted CustomerSnapshot is taken every snapshot interval (if anything changed) and on
+shutdown. Recovery reads the latest snapshot, replays the log from the position it recorded and
+hands the result to the store in one go.
+
+customer.persistence.durability trades latency for safety: "sync" acknowledges a write only once
+it is on disk (group-committed across concurrent writers), "periodic" acknowledges at once and
+forces every flush interval.
+*/
+@Component
+@ConditionalOnProperty(name = "customer.persistence.enabled", havingValue = "true")
+public class CustomerStorePersistence {
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CustomerMutationLog.Durability durability;
+    private final Duration flushInterval;
+    private final Duration snapshotInterval;
+    private final ScheduledExecutorService scheduler;
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+
+    private CustomerMutationLog log;
+    private CustomerListDataAccessService store;
+    // Log position when the latest snapshot started; no new snapshot until the log moves past it.
+    private volatile long snapshotPosition = -1;
+
+    public CustomerStorePersistence(
+            @Value("${customer.persistence.directory:./data/customers}") Path directory,
+            @Value("${customer.persistence.segment-size:67108864}") int segmentSize,
+            @Value("${customer.persistence.durability:sync}") String durability,
+            @Value("${customer.persistence.flush-interval:10ms}") Duration flushInterval,
+            @Value("${customer.persistence.snapshot-interval:PT5M}") Duration snapshotInterval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.durability = CustomerMutationLog.Durability.valueOf(durability.toUpperCase(Locale.ROOT));
+        this.flushInterval = flushInterval;
+        this.snapshotInterval = snapshotInterval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Loads the persisted state into the store, then starts logging its writes.
+    void recover(CustomerListDataAccessService store) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Keeps the snapshot's id order, so restoring sorts an almost sorted list.
+        Map<Long, Customer> customers = new LinkedHashMap<>();
+        CustomerSnapshot.Header snapshot = CustomerSnapshot.read(directory, customer -> customers.put(customer.getId(), customer))
+                .orElse(new CustomerSnapshot.Header(0, 0, 0));
+        long[] lastId = {snapshot.lastId()};
+        long end = CustomerMutationLog.replay(directory, snapshot.logPosition(), mutation -> {
+            if (mutation.type() == CustomerRecords.UPSERT) {
+                customers.put(mutation.id(), mutation.customer());
+            } else {
+                customers.remove(mutation.id());
+            }
+            lastId[0] = Math.max(lastId[0], mutation.id());
+        });
+        store.restore(customers.values(), lastId[0]);
+        this.store = store;
+        this.snapshotPosition = end;
+        this.log = new CustomerMutationLog(directory, segmentSize, durability, flushInterval, end);
+        long period = snapshotInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::snapshot, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    long logUpsert(Customer customer) {
+        return log.append(CustomerRecords.upsert(customer));
+    }
+
+    long logDelete(long id) {
+        return log.append(CustomerRecords.delete(id));
+    }
+
+    void awaitDurable(long position) {
+        log.awaitDurable(position);
+    }
+
+    // Writes a snapshot if the log has grown since the last one, then drops the covered segments.
+    public void snapshot() {
+        snapshotLock.lock();
+        try {
+            long written = log.writtenPosition();
+            if (written == snapshotPosition) {
+                return;
+            }
+            long position = log.startNewSegment();
+            CustomerSnapshot.write(directory, position, store.lastId(), store::forEachCustomer);
+            log.deleteSegmentsBefore(position);
+            snapshotPosition = written;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        snapshot();
+        close();
+    }
+
+    // Stops logging without a final snapshot, leaving recovery to replay the log.
+    void close() {
+        scheduler.shutdownNow();
+        log.close();
+    }
+}
@@ -1,18 +1,44 @@
 package com.lavong55.customer;
 
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 @Service
-public class CustomerUserDetailsService implements UserDetailsService {
+public class CustomerUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerUserDetailsService.class);
 
     private final CustomerDao customerDao;
+    // Upgrades go through the cache so its copy of the customer doesn't keep the old hash.
+    private final CustomerDao passwordStore;
+    // Re-hashed passwords are written here, off the login request thread.
+    private final ThreadPoolExecutor passwordWriter;
 
-    public CustomerUserDetailsService (@Qualifier("jpa") CustomerDao customerDao) {
+    public CustomerUserDetailsService (@Qualifier("jpa") CustomerDao customerDao,
+                                       @Qualifier("cache") CustomerDao passwordStore,
+                                       @Value("${password-hashing.upgrade-queue-capacity:1000}") int upgradeQueueCapacity) {
         this.customerDao = customerDao;
+        this.passwordStore = passwordStore;
+        // One writer and a bounded queue: in a login storm after a cost or algorithm change the
+        // upgrades that don't fit are dropped and retried on the customer's next login.
+        this.passwordWriter = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(upgradeQueueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-upgrade");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
     }
 
     @Override
@@ -22,4 +48,33 @@ public class CustomerUserDetailsService implements UserDetailsService {
                 .orElseThrow(() -> new UsernameNotFoundException(
                         "Username" + username + " not found"));
     }
+
+    // Called by DaoAuthenticationProvider after a successful login whose stored hash is outdated
+    // (other algorithm or lower cost). Losing the write only means upgrading on a later login.
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        String email = user.getUsername();
+        passwordWriter.execute(() -> {
+            try {
+                passwordStore.updatePassword(email, newPassword);
+            } catch (RuntimeException e) {
+                log.warn("Could not store upgraded password hash for {}", email, e);
+            }
+        });
+        if (user instanceof Customer customer) {
+            return new Customer(
+                    customer.getId(),
+                    customer.getName(),
+                    customer.getEmail(),
+                    newPassword,
+                    customer.getAge(),
+                    customer.getGender());
+        }
+        return user;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        passwordWriter.shutdown();
+    }
 }
@@ -0,0 +1,29 @@
+package com.lavong55.customer;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+// GET /actuator/emailfilter reports the email Bloom filter's size and hit rates;
+// POST forces a rebuild.
+@Component
+@Endpoint(id = "emailfilter")
+public class EmailFilterEndpoint {
+
+    private final BloomFilterCustomerDataAccessService emailFilter;
+
+    public EmailFilterEndpoint(BloomFilterCustomerDataAccessService emailFilter) {
+        this.emailFilter = emailFilter;
+    }
+
+    @ReadOperation
+    public BloomFilterCustomerDataAccessService.Stats stats() {
+        return emailFilter.stats();
+    }
+
+    @WriteOperation
+    public void rebuild() {
+        emailFilter.requestRebuild();
+    }
+}
@@ -0,0 +1,25 @@
+package com.lavong55.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+Non-blocking counterpart of CustomerDao for the reactive endpoints. Nothing happens until the
+returned publisher is subscribed, and Flux results are produced as the subscriber requests them.
+*/
+public interface ReactiveCustomerDao {
+    // Every customer ordered by id, fetched from the database in demand-sized chunks.
+    Flux<Customer> selectAllCustomers();
+    Mono<Customer> selectCustomerById(Long id);
+    Mono<Boolean> existsCustomerWithId(Long id);
+
+    // Emits the generated id, or completes empty when the email is already registered.
+    Mono<Long> insertCustomerIfEmailAvailable(Customer customer);
+
+    // Same contract as CustomerDao.updateChangedFields: emits the updated row, or completes empty
+    // when the customer is missing or nothing differs. A taken email errors with DuplicateKeyException.
+    Mono<Customer> updateChangedFields(Customer update);
+
+    // Emits the number of rows deleted.
+    Mono<Long> deleteCustomerById(Long customerId);
+}
@@ -0,0 +1,171 @@
+package com.lavong55.customer;
+
+import com.lavong55.exception.DuplicateResourceException;
+import com.lavong55.exception.RequestValidationException;
+import com.lavong55.exception.ResourceNotFoundException;
+import com.lavong55.jwt.RefreshTokenService;
+import com.lavong55.jwt.TokenEpochStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+/*
+Reactive counterpart of CustomerController + CustomerService, with the same validation, errors
+and cache/token invalidation. Only BCrypt and refresh token issuance and revocation still block;
+they run on the bounded elastic scheduler so the event loop never waits on them.
+*/
+@Component
+@ConditionalOnProperty(name = "reactive.enabled", havingValue = "true")
+public class ReactiveCustomerHandler {
+
+    private final ReactiveCustomerDao customerDao;
+    private final PasswordEncoder passwordEncoder;
+    private final CustomerDTOMapper customerDTOMapper;
+    private final CachingCustomerDataAccessService customerCache;
+    private final BloomFilterCustomerDataAccessService emailFilter;
+    private final CustomerPrincipalStore customerPrincipalStore;
+    private final TokenEpochStore tokenEpochStore;
+    private final RefreshTokenService refreshTokenService;
+
+    public ReactiveCustomerHandler(@Qualifier("r2dbc") ReactiveCustomerDao customerDao,
+                                   PasswordEncoder passwordEncoder,
+                                   CustomerDTOMapper customerDTOMapper,
+                                   CachingCustomerDataAccessService customerCache,
+                                   BloomFilterCustomerDataAccessService emailFilter,
+                                   CustomerPrincipalStore customerPrincipalStore,
+                                   TokenEpochStore tokenEpochStore,
+                                   RefreshTokenService refreshTokenService) {
+        this.customerDao = customerDao;
+        this.passwordEncoder = passwordEncoder;
+        this.customerDTOMapper = customerDTOMapper;
+        this.customerCache = customerCache;
+        this.emailFilter = emailFilter;
+        this.customerPrincipalStore = customerPrincipalStore;
+        this.tokenEpochStore = tokenEpochStore;
+        this.refreshTokenService = refreshTokenService;
+    }
+
+    // NDJSON writes each customer as it arrives; either way rows are only read as fast as the
+    // response is written.
+    public Mono<ServerResponse> getAllCustomers(ServerRequest request) {
+        MediaType contentType = request.headers().accept().stream()
+                .anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype)
+                ? MediaType.APPLICATION_NDJSON
+                : MediaType.APPLICATION_JSON;
+        return ServerResponse.ok()
+                .contentType(contentType)
+                .body(customerDao.selectAllCustomers().map(customerDTOMapper), CustomerDTO.class);
+    }
+
+    public Mono<ServerResponse> getCustomer(ServerRequest request) {
+        Long id = customerId(request);
+        return customerDao.selectCustomerById(id)
+                .map(customerDTOMapper)
+                .switchIfEmpty(Mono.error(() -> notFound(id)))
+                .flatMap(customer -> ServerResponse.ok().bodyValue(customer));
+    }
+
+    public Mono<ServerResponse> registerCustomer(ServerRequest request) {
+        return request.bodyToMono(CustomerRegistrationRequest.class)
+                .flatMap(registration -> Mono
+                        .fromCallable(() -> passwordEncoder.encode(registration.password()))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .map(encodedPassword -> new Customer(
+                                registration.name(),
+                                registration.email(),
+                                encodedPassword,
+                                registration.age(),
+                                registration.gender()))
+                        .flatMap(customerDao::insertCustomerIfEmailAvailable)
+                        .switchIfEmpty(Mono.error(() -> new DuplicateResourceException(
+                                "email already taken"
+                        )))
+                        .doOnNext(customerId -> emailFilter.remember(registration.email()))
+                        .flatMap(customerId -> Mono
+                                .fromCallable(() -> refreshTokenService.issue(
+                                        customerId, registration.email(), List.of("ROLE_USER")))
+                                .subscribeOn(Schedulers.boundedElastic())))
+                .flatMap(tokens -> ServerResponse.ok()
+                        .header(HttpHeaders.AUTHORIZATION, tokens.accessToken())
+                        .bodyValue(tokens));
+    }
+
+    public Mono<ServerResponse> updateCustomer(ServerRequest request) {
+        Long customerId = customerId(request);
+        return request.bodyToMono(CustomerUpdateRequest.class)
+                .flatMap(updateRequest -> {
+                    if (updateRequest.name() == null
+                            && updateRequest.email() == null
+                            && updateRequest.age() == null) {
+                        return Mono.error(new RequestValidationException("no data changes found"));
+                    }
+
+                    Customer update = new Customer();
+                    update.setId(customerId);
+                    update.setName(updateRequest.name());
+                    update.setEmail(updateRequest.email());
+                    update.setAge(updateRequest.age());
+
+                    return customerDao.updateChangedFields(update)
+                            .onErrorMap(DuplicateKeyException.class,
+                                    e -> new DuplicateResourceException("email already taken"))
+                            .doOnNext(updated -> {
+                                invalidate(customerId);
+                                if (updateRequest.email() != null) {
+                                    emailFilter.remember(updateRequest.email());
+                                    // Outstanding tokens name the old email as their subject.
+                                    tokenEpochStore.revoke(customerId);
+                                }
+                            })
+                            // Nothing was written, so work out why.
+                            .switchIfEmpty(Mono.defer(() -> customerDao.existsCustomerWithId(customerId)
+                                    .flatMap(exists -> Mono.<Customer>error(exists
+                                            ? new RequestValidationException("no data changes found")
+                                            : notFound(customerId)))));
+                })
+                .then(ServerResponse.ok().build());
+    }
+
+    public Mono<ServerResponse> deleteCustomer(ServerRequest request) {
+        Long customerId = customerId(request);
+        return customerDao.existsCustomerWithId(customerId)
+                .flatMap(exists -> exists
+                        ? Mono.fromRunnable(() -> refreshTokenService.revokeAll(customerId))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .then(customerDao.deleteCustomerById(customerId))
+                        : Mono.<Long>error(notFound(customerId)))
+                .doOnNext(deleted -> invalidate(customerId))
+                .then(ServerResponse.ok().build());
+    }
+
+    private void invalidate(Long customerId) {
+        customerCache.invalidate(customerId);
+        customerPrincipalStore.evict(customerId);
+    }
+
+    private static Long customerId(ServerRequest request) {
+        String customerId = request.pathVariable("customerId");
+        try {
+            return Long.valueOf(customerId);
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException("invalid customer id [%s]".formatted(customerId));
+        }
+    }
+
+    private static ResourceNotFoundException notFound(Long customerId) {
+        return new ResourceNotFoundException(
+                "customer with id [%s] not found".formatted(customerId)
+        );
+    }
+}
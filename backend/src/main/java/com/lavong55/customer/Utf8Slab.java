@@ -0,0 +1,143 @@
+package com.lavong55.customer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Append-only pool of UTF-8 strings, stored back to back in fixed-size chunks on or off heap.
+A string is addressed by a long reference packing its offset (high 48 bits) and byte length
+(low 16 bits), so a column of strings is just a long[]. Strings never straddle chunks.
+
+Nothing is reclaimed in place: replaced or deleted strings are only counted as garbage.
+Not thread-safe; CustomerColumnarDataAccessService guards it with its lock.
+*/
+final class Utf8Slab {
+
+    static final int MAX_LENGTH = 0xFFFF;
+
+    private final int chunkSize;
+    private final boolean offHeap;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private int position;
+    private long usedBytes;
+    private long garbageBytes;
+
+    Utf8Slab(int chunkSize, boolean offHeap) {
+        if (chunkSize < MAX_LENGTH) {
+            throw new IllegalArgumentException("chunk size must be at least " + MAX_LENGTH + " bytes");
+        }
+        this.chunkSize = chunkSize;
+        this.offHeap = offHeap;
+    }
+
+    long append(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_LENGTH) {
+            throw new IllegalArgumentException(
+                    "value of %d UTF-8 bytes exceeds %d".formatted(bytes.length, MAX_LENGTH));
+        }
+        if (chunks.isEmpty() || position + bytes.length > chunkSize) {
+            chunks.add(offHeap ? ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize));
+            position = 0;
+        }
+        long offset = (long) (chunks.size() - 1) * chunkSize + position;
+        chunks.get(chunks.size() - 1).put(position, bytes);
+        position += bytes.length;
+        usedBytes += bytes.length;
+        return offset << 16 | bytes.length;
+    }
+
+    String get(long ref) {
+        ByteBuffer chunk = chunk(ref);
+        int index = index(ref);
+        int length = length(ref);
+        if (chunk.hasArray()) {
+            return new String(chunk.array(), chunk.arrayOffset() + index, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        chunk.get(index, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Compares the stored string with UTF-8 bytes, ignoring ASCII case (what lower() does for ASCII emails).
+    boolean equalsIgnoreAsciiCase(long ref, byte[] other) {
+        int length = length(ref);
+        if (length != other.length) {
+            return false;
+        }
+        ByteBuffer chunk = chunk(ref);
+        int index = index(ref);
+        for (int i = 0; i < length; i++) {
+            if (fold(chunk.get(index + i)) != fold(other[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int hashIgnoreAsciiCase(long ref) {
+        ByteBuffer chunk = chunk(ref);
+        int index = index(ref);
+        int hash = 0;
+        for (int i = 0, length = length(ref); i < length; i++) {
+            hash = 31 * hash + fold(chunk.get(index + i));
+        }
+        return mix(hash);
+    }
+
+    static int hashIgnoreAsciiCase(byte[] bytes) {
+        int hash = 0;
+        for (byte b : bytes) {
+            hash = 31 * hash + fold(b);
+        }
+        return mix(hash);
+    }
+
+    void release(long ref) {
+        garbageBytes += length(ref);
+    }
+
+    long allocatedBytes() {
+        return (long) chunks.size() * chunkSize;
+    }
+
+    long usedBytes() {
+        return usedBytes;
+    }
+
+    long garbageBytes() {
+        return garbageBytes;
+    }
+
+    boolean isOffHeap() {
+        return offHeap;
+    }
+
+    private ByteBuffer chunk(long ref) {
+        return chunks.get((int) ((ref >>> 16) / chunkSize));
+    }
+
+    private int index(long ref) {
+        return (int) ((ref >>> 16) % chunkSize);
+    }
+
+    private static int length(long ref) {
+        return (int) (ref & MAX_LENGTH);
+    }
+
+    private static int fold(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+
+    // murmur3 finalizer, so linear probing doesn't cluster on similar emails
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,462 @@
+package com.lavong55.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/*
+Write-behind decorator between the cache and the bloom -> jdbc chain, for bursty profile edits.
+
+Name and age changes are applied to an in-memory map of pending rows and acknowledged at once.
+Repeated updates to the same id coalesce into one pending row, and a flusher writes all of them
+every flush interval (sooner once batch-size rows are waiting) in one JDBC batch. Reads by id,
+by email and pages overlay the pending rows, so callers see their own writes.
+
+Everything that must be checked by the database stays synchronous: inserts, deletes, password
+changes and email changes (the unique index has to be able to reject them). An email change
+takes the id's pending row with it and waits for any in-flight batch, so an older batch can't
+land on top of it.
+
+Backpressure: at most max-pending distinct ids wait, counting the batch being written; a writer
+for a new id blocks until a flush makes room. A failed batch is put back, behind any newer
+version of the same rows and minus rows deleted meanwhile, and retried. Pending rows are
+flushed on shutdown.
+
+Meters: customer.write.behind.queue.depth, customer.write.behind.flush (timer),
+customer.write.behind.batch.size, customer.write.behind.coalesced and
+customer.write.behind.flush.failures.
+*/
+@Repository("writeBehind")
+@ConditionalOnProperty(name = "customer.write-behind.enabled", havingValue = "true")
+public class WriteBehindCustomerDataAccessService implements CustomerDao {
+
+    private final CustomerDao delegate;
+    private final int maxPending;
+    private final int batchSize;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    // Guarded by lock. Rows waiting for the next batch, and the batch being written.
+    private Map<Long, Customer> pending = new LinkedHashMap<>();
+    private Map<Long, Customer> flushing = Map.of();
+    // Bumped whenever the database changes under a pending-free id, so a row read before that
+    // is known to be stale.
+    private long writeEpoch;
+    // pending + flushing, readable without the lock.
+    private volatile int pendingCount;
+
+    // Held while a batch or a synchronous email change is being written.
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter coalesced;
+    private final Counter flushFailures;
+
+    public WriteBehindCustomerDataAccessService(
+            @Qualifier("bloom") CustomerDao delegate,
+            MeterRegistry meterRegistry,
+            @Value("${customer.write-behind.max-pending:10000}") int maxPending,
+            @Value("${customer.write-behind.batch-size:500}") int batchSize,
+            @Value("${customer.write-behind.flush-interval:200ms}") Duration flushInterval) {
+        this.delegate = delegate;
+        this.maxPending = maxPending;
+        this.batchSize = batchSize;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flushTimer = Timer.builder("customer.write.behind.flush")
+                .description("Time to write one batch of pending customer updates")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("customer.write.behind.batch.size")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("customer.write.behind.coalesced")
+                .description("Updates folded into a row that was already pending")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("customer.write.behind.flush.failures")
+                .register(meterRegistry);
+        Gauge.builder("customer.write.behind.queue.depth", this, dao -> dao.pendingCount)
+                .register(meterRegistry);
+        long period = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Optional<Customer> updateChangedFields(Customer update) {
+        Long id = update.getId();
+        while (true) {
+            long epoch;
+            Customer base;
+            lock.lock();
+            try {
+                epoch = writeEpoch;
+                base = pendingRow(id);
+            } finally {
+                lock.unlock();
+            }
+            // Read outside the lock; a write landing meanwhile shows up as a new epoch.
+            Customer loaded = base != null ? null : delegate.selectCustomerById(id).orElse(null);
+            lock.lock();
+            try {
+                base = pendingRow(id);
+                if (base == null && writeEpoch != epoch) {
+                    continue;
+                }
+                if (base == null) {
+                    base = loaded;
+                }
+                if (base == null) {
+                    return Optional.empty();
+                }
+                if (update.getEmail() != null && !update.getEmail().equals(base.getEmail())) {
+                    break;
+                }
+                // Backpressure: a new id waits for room, then starts over from fresh state.
+                if (!pending.containsKey(id) && pending.size() + flushing.size() >= maxPending) {
+                    requestFlush();
+                    notFull.awaitUninterruptibly();
+                    continue;
+                }
+                Customer updated = copy(base);
+                boolean changes = false;
+                if (update.getName() != null && !update.getName().equals(base.getName())) {
+                    updated.setName(update.getName());
+                    changes = true;
+                }
+                if (update.getAge() != null && !update.getAge().equals(base.getAge())) {
+                    updated.setAge(update.getAge());
+                    changes = true;
+                }
+                if (!changes) {
+                    return Optional.empty();
+                }
+                enqueue(updated);
+                return Optional.of(copy(updated));
+            } finally {
+                lock.unlock();
+            }
+        }
+        return updateEmail(update);
+    }
+
+    @Override
+    public void updateCustomer(Customer update) {
+        updateChangedFields(update);
+    }
+
+    @Override
+    public void updatePassword(String email, String encodedPassword) {
+        delegate.updatePassword(email, encodedPassword);
+        lock.lock();
+        try {
+            // Batches never write passwords, so only the overlay needs the new hash.
+            for (Map<Long, Customer> rows : List.of(pending, flushing)) {
+                rows.values().stream()
+                        .filter(row -> row.getEmail().equalsIgnoreCase(email))
+                        .forEach(row -> row.setPassword(encodedPassword));
+            }
+            writeEpoch++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteCustomerById(Long customerId) {
+        delegate.deleteCustomerById(customerId);
+        lock.lock();
+        try {
+            // A batch still holding the row updates nothing once the row is gone, but it must
+            // not be put back if that batch fails.
+            boolean dropped = pending.remove(customerId) != null;
+            if (flushing.containsKey(customerId)) {
+                flushing.remove(customerId);
+                dropped = true;
+            }
+            if (dropped) {
+                countPending();
+                notFull.signalAll();
+            }
+            writeEpoch++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long id) {
+        lock.lock();
+        try {
+            Customer row = pendingRow(id);
+            if (row != null) {
+                return Optional.of(copy(row));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return delegate.selectCustomerById(id);
+    }
+
+    @Override
+    public Optional<Customer> selectUserByEmail(String email) {
+        return delegate.selectUserByEmail(email).map(this::overlay);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers().stream().map(this::overlay).toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(Long afterId, int limit) {
+        return delegate.selectCustomers(afterId, limit).stream().map(this::overlay).toList();
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        delegate.forEachCustomer(customer -> action.accept(overlay(customer)));
+    }
+
+    // Pending rows never change email, so everything keyed by email or id existence passes through.
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return delegate.existsCustomerWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Long id) {
+        return delegate.existsCustomerWithId(id);
+    }
+
+    @Override
+    public void forEachEmail(Consumer<String> action) {
+        delegate.forEachEmail(action);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+    }
+
+    @Override
+    public boolean insertCustomerIfEmailAvailable(Customer customer) {
+        return delegate.insertCustomerIfEmailAvailable(customer);
+    }
+
+    @Override
+    public Set<String> insertCustomers(List<Customer> customers, int batchSize) {
+        return delegate.insertCustomers(customers, batchSize);
+    }
+
+    // Writes everything pending as one batch. Throws if the batch fails; its rows are kept.
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<Customer> batch;
+            lock.lock();
+            try {
+                flushRequested.set(false);
+                if (pending.isEmpty()) {
+                    return;
+                }
+                flushing = pending;
+                pending = new LinkedHashMap<>();
+                batch = new ArrayList<>(flushing.values());
+            } finally {
+                lock.unlock();
+            }
+            boolean written = false;
+            long start = System.nanoTime();
+            try {
+                delegate.updateNamesAndAges(batch, batchSize);
+                written = true;
+            } finally {
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                lock.lock();
+                try {
+                    if (written) {
+                        batchSizes.record(batch.size());
+                    } else {
+                        flushFailures.increment();
+                        // Newer pending versions were built on these rows, so they win.
+                        flushing.forEach(pending::putIfAbsent);
+                        countPending();
+                    }
+                    flushing = Map.of();
+                    countPending();
+                    writeEpoch++;
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    int pendingCount() {
+        return pendingCount;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Counted in flush failures; the rows stay pending for the next attempt.
+        }
+    }
+
+    // Caller holds lock and has made sure there is room.
+    private void enqueue(Customer row) {
+        if (pending.containsKey(row.getId())) {
+            coalesced.increment();
+        }
+        pending.put(row.getId(), row);
+        countPending();
+        if (pending.size() >= batchSize) {
+            requestFlush();
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /*
+    Synchronous path. Waits out any in-flight batch, takes the id's pending row along (the caller's
+    own fields win) and lets the database check the new email. On failure the pending row is put
+    back untouched.
+    */
+    private Optional<Customer> updateEmail(Customer update) {
+        flushLock.lock();
+        try {
+            Customer taken;
+            lock.lock();
+            try {
+                taken = pending.remove(update.getId());
+                countPending();
+            } finally {
+                lock.unlock();
+            }
+            Customer merged = copy(update);
+            if (taken != null) {
+                if (merged.getName() == null) {
+                    merged.setName(taken.getName());
+                }
+                if (merged.getAge() == null) {
+                    merged.setAge(taken.getAge());
+                }
+            }
+            Optional<Customer> updated;
+            try {
+                updated = delegate.updateChangedFields(merged);
+            } catch (RuntimeException e) {
+                restore(taken);
+                throw e;
+            }
+            lock.lock();
+            try {
+                writeEpoch++;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            return updated;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void restore(Customer taken) {
+        if (taken == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            pending.putIfAbsent(taken.getId(), taken);
+            countPending();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds lock.
+    private void countPending() {
+        pendingCount = pending.size() + flushing.size();
+    }
+
+    // Caller holds lock.
+    private Customer pendingRow(Long id) {
+        Customer row = pending.get(id);
+        return row != null ? row : flushing.get(id);
+    }
+
+    private Customer overlay(Customer customer) {
+        if (pendingCount == 0) {
+            return customer;
+        }
+        lock.lock();
+        try {
+            Customer row = pendingRow(customer.getId());
+            return row != null ? copy(row) : customer;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Customer copy(Customer customer) {
+        return new Customer(
+                customer.getId(),
+                customer.getName(),
+                customer.getEmail(),
+                customer.getPassword(),
+                customer.getAge(),
+                customer.getGender());
+    }
+}
@@ -0,0 +1,100 @@
+package com.lavong55.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/*
+Marks JDBC work on the current thread as safe for a read replica. ReplicaRoutingDataSource reads
+the mark when a connection is fetched; outside a read() everything goes to the primary, except
+read-only transactions.
+
+Read-your-writes: DAOs report the keys they write (customer ids, lower-cased emails), and a read
+naming a key written within the window stays on the primary, so a replica that hasn't caught up
+can't hand back the row as it was before. The window should exceed the replica lag you
+tolerate (datasource.routing.max-lag). It is per instance; a read served by another instance
+relies on the lag bound alone.
+
+With datasource.routing.enabled=false nothing is recorded and read() just runs the work.
+*/
+@Component
+public class ReadRouting {
+
+    public enum Route { PRIMARY, REPLICA }
+
+    private static final ThreadLocal<Route> ROUTE = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final Cache<Object, Boolean> recentWrites;
+
+    public ReadRouting(@Value("${datasource.routing.enabled:false}") boolean enabled,
+                       @Value("${datasource.routing.read-your-writes-window:5s}") Duration window,
+                       @Value("${datasource.routing.read-your-writes-maximum-size:100000}") long maximumSize) {
+        this.enabled = enabled;
+        this.recentWrites = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    public static ReadRouting disabled() {
+        return new ReadRouting(false, Duration.ZERO, 0);
+    }
+
+    // Runs a read on a replica, unless one of the keys was written recently or an enclosing
+    // call already pinned the primary.
+    public <T> T read(Supplier<T> read, Object... keys) {
+        if (!enabled) {
+            return read.get();
+        }
+        Route previous = ROUTE.get();
+        Route route = previous == Route.PRIMARY || recentlyWritten(keys) ? Route.PRIMARY : Route.REPLICA;
+        ROUTE.set(route);
+        try {
+            return read.get();
+        } finally {
+            if (previous == null) {
+                ROUTE.remove();
+            } else {
+                ROUTE.set(previous);
+            }
+        }
+    }
+
+    // For streaming reads that hand rows to a callback.
+    public void scan(Runnable scan) {
+        read(() -> {
+            scan.run();
+            return null;
+        });
+    }
+
+    public void written(Object... keys) {
+        if (!enabled) {
+            return;
+        }
+        for (Object key : keys) {
+            if (key != null) {
+                recentWrites.put(key, Boolean.TRUE);
+            }
+        }
+    }
+
+    // null when the thread hasn't asked for anything: the caller decides.
+    static Route current() {
+        return ROUTE.get();
+    }
+
+    private boolean recentlyWritten(Object[] keys) {
+        for (Object key : keys) {
+            if (key != null && recentWrites.getIfPresent(key) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,56 @@
+package com.lavong55.datasource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/*
+Hands out a replica connection for work marked by ReadRouting or running in a read-only
+transaction, and a primary connection for everything else. Meant to sit behind a
+LazyConnectionDataSourceProxy: a transaction manager asks for its connection before the
+transaction's read-only flag is set, and the proxy delays the real fetch until the first
+statement, when the flag is visible here.
+
+A replica that refuses a connection is taken out of rotation and the work goes to the primary.
+*/
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private final ReplicaSet replicaSet;
+
+    public ReplicaRoutingDataSource(ReplicaSet replicaSet) {
+        this.replicaSet = replicaSet;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!replicaEligible()) {
+            return replicaSet.primary().getConnection();
+        }
+        DataSource replica = replicaSet.forRead();
+        try {
+            return replica.getConnection();
+        } catch (SQLException e) {
+            if (replica == replicaSet.primary()) {
+                throw e;
+            }
+            replicaSet.failed(replica);
+            return replicaSet.primary().getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return replicaSet.primary().getConnection(username, password);
+    }
+
+    private static boolean replicaEligible() {
+        ReadRouting.Route route = ReadRouting.current();
+        if (route != null) {
+            return route == ReadRouting.Route.REPLICA;
+        }
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}
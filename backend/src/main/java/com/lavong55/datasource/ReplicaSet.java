@@ -0,0 +1,190 @@
+package com.lavong55.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+The primary pool plus the replica pools that reads may use.
+
+A read picks among the available replicas, round-robin or by fewest busy connections (active
+plus waiting, from the Hikari pool). A replica is unavailable while its last lag probe failed
+or measured more than max-lag, and for one lag-check-interval after a connection to it failed;
+reads fall back to the primary when none is available. The probe runs every lag-check-interval
+and a max-lag of zero turns it off, so a failed replica is put back by that back-off rather
+than by the probe: the next read after it tries the replica again.
+
+Meters: datasource.replica.lag (seconds) and datasource.replica.available per replica,
+datasource.routing.fallbacks for reads sent to the primary.
+*/
+public class ReplicaSet implements Closeable {
+
+    public enum Strategy { ROUND_ROBIN, LEAST_LOADED }
+
+    // 0 on a primary or a caught-up standby; an idle standby has nothing left to replay.
+    private static final String LAG_SQL = """
+            SELECT CASE
+                     WHEN NOT pg_is_in_recovery() THEN 0
+                     WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                     ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+                   END
+            """;
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile double lagSeconds;
+        // Set by the lag probe.
+        private volatile boolean available = true;
+        // System.nanoTime() before which reads skip the replica after a failed connection.
+        private volatile long failedUntil = System.nanoTime();
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Strategy strategy;
+    private final Duration maxLag;
+    private final long retryAfterNanos;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService lagChecker;
+    private final Counter fallbacks;
+
+    public ReplicaSet(DataSource primary,
+                      List<? extends DataSource> replicas,
+                      Strategy strategy,
+                      Duration maxLag,
+                      Duration lagCheckInterval,
+                      MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.strategy = strategy;
+        this.maxLag = maxLag;
+        this.retryAfterNanos = lagCheckInterval.toNanos();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = new Replica("replica-" + i, replicas.get(i));
+            this.replicas.add(replica);
+            Gauge.builder("datasource.replica.lag", replica, r -> r.lagSeconds)
+                    .tag("replica", replica.name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+            Gauge.builder("datasource.replica.available", replica, r -> usable(r, System.nanoTime()) ? 1 : 0)
+                    .tag("replica", replica.name)
+                    .register(meterRegistry);
+        }
+        this.fallbacks = Counter.builder("datasource.routing.fallbacks")
+                .description("Replica-eligible reads sent to the primary because no replica was available")
+                .register(meterRegistry);
+        this.lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!maxLag.isZero()) {
+            long period = lagCheckInterval.toMillis();
+            lagChecker.scheduleWithFixedDelay(this::checkLag, 0, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static Strategy strategy(String name) {
+        return Strategy.valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+
+    public DataSource primary() {
+        return primary;
+    }
+
+    // The data source a replica-eligible read should use.
+    public DataSource forRead() {
+        long now = System.nanoTime();
+        List<Replica> candidates = replicas.stream()
+                .filter(replica -> usable(replica, now))
+                .toList();
+        if (candidates.isEmpty()) {
+            fallbacks.increment();
+            return primary;
+        }
+        Replica chosen = switch (strategy) {
+            case ROUND_ROBIN -> candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+            case LEAST_LOADED -> candidates.stream()
+                    .min(Comparator.comparingInt(replica -> load(replica.dataSource)))
+                    .orElseThrow();
+        };
+        return chosen.dataSource;
+    }
+
+    // A connection to this replica failed: skip it for one lag-check-interval, or until the
+    // next probe succeeds.
+    void failed(DataSource dataSource) {
+        long until = System.nanoTime() + retryAfterNanos;
+        replicas.stream()
+                .filter(replica -> replica.dataSource == dataSource)
+                .forEach(replica -> replica.failedUntil = until);
+    }
+
+    void checkLag() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(LAG_SQL)) {
+                resultSet.next();
+                replica.lagSeconds = resultSet.getDouble(1);
+                replica.available = maxLag.isZero() || replica.lagSeconds * 1000 <= maxLag.toMillis();
+                replica.failedUntil = System.nanoTime();
+            } catch (SQLException | RuntimeException e) {
+                replica.available = false;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        lagChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            closePool(replica.dataSource);
+        }
+        closePool(primary);
+    }
+
+    private static boolean usable(Replica replica, long now) {
+        return replica.available && now - replica.failedUntil >= 0;
+    }
+
+    // Busy connections for Hikari pools; other data sources count as idle.
+    private static int load(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource hikari) {
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            if (pool != null) {
+                return pool.getActiveConnections() + pool.getThreadsAwaitingConnection();
+            }
+        }
+        return 0;
+    }
+
+    private static void closePool(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource hikari) {
+            hikari.close();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.lavong55.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Times every statement executed through the wrapped data source (JdbcTemplate, Hibernate, Flyway)
+and reports it to SlowQueryLog. Connections and statements are JDK proxies: a statement
+remembers its SQL and the values bound to it, and each execute* call is timed around the
+driver call. The values are only handed to the log for plan capture, which runs on the target
+data source so its own statements are not timed.
+*/
+public class SlowQueryDataSource extends DelegatingDataSource {
+
+    private final SlowQueryLog slowQueryLog;
+
+    public SlowQueryDataSource(DataSource target, SlowQueryLog slowQueryLog) {
+        super(target);
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                SlowQueryDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // equals and hashCode answer for the proxy itself: Spring and Hibernate compare the
+    // connections they hand around.
+    private static boolean isIdentityMethod(Method method) {
+        return method.getDeclaringClass() == Object.class && !method.getName().equals("toString");
+    }
+
+    private static Object identity(Object proxy, Method method, Object[] args) {
+        return method.getName().equals("equals") ? proxy == args[0] : System.identityHashCode(proxy);
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        private ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isIdentityMethod(method)) {
+                return identity(proxy, method, args);
+            }
+            Object result = SlowQueryDataSource.invoke(connection, method, args);
+            if (result instanceof Statement statement) {
+                // prepareStatement / prepareCall carry the SQL up front; createStatement doesn't.
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                return Proxy.newProxyInstance(
+                        SlowQueryDataSource.class.getClassLoader(),
+                        new Class<?>[]{method.getReturnType()},
+                        new StatementHandler(statement, sql));
+            }
+            return result;
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+        private final String preparedSql;
+        private final List<Object> parameters = new ArrayList<>();
+        private String batchSql;
+        private boolean batch;
+
+        private StatementHandler(Statement statement, String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isIdentityMethod(method)) {
+                return identity(proxy, method, args);
+            }
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return timed(method, args);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index
+                    && method.getDeclaringClass() != Statement.class) {
+                bind(index, name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.equals("addBatch")) {
+                batch = true;
+                if (batchSql == null && args != null && args.length == 1 && args[0] instanceof String text) {
+                    batchSql = text;
+                }
+            } else if (name.equals("clearBatch")) {
+                batch = false;
+                batchSql = null;
+            }
+            return SlowQueryDataSource.invoke(statement, method, args);
+        }
+
+        private Object timed(Method method, Object[] args) throws Throwable {
+            boolean batchCall = method.getName().contains("Batch");
+            String sql = args != null && args.length > 0 && args[0] instanceof String text
+                    ? text
+                    : preparedSql != null ? preparedSql : batchSql;
+            // Plans are only captured for a single prepared execution, where the values line up.
+            boolean prepared = statement instanceof PreparedStatement && (args == null || args.length == 0);
+            List<Object> bound = prepared && !batchCall && !batch ? new ArrayList<>(parameters) : null;
+            long start = System.nanoTime();
+            try {
+                return SlowQueryDataSource.invoke(statement, method, args);
+            } finally {
+                slowQueryLog.record(sql, System.nanoTime() - start, bound, obtainTargetDataSource());
+                if (batchCall) {
+                    batch = false;
+                    batchSql = null;
+                }
+            }
+        }
+
+        private void bind(int index, Object value) {
+            while (parameters.size() < index) {
+                parameters.add(null);
+            }
+            parameters.set(index - 1, value);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.lavong55.datasource;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/*
+Per-statement timings fed by SlowQueryDataSource, in the spirit of pg_stat_statements: calls,
+total, mean and max time per normalized SQL text (whitespace collapsed, IN lists of
+placeholders folded to one). At most max-statements distinct texts are tracked; the rest
+are counted under "<other>".
+
+A statement slower than threshold is logged with its parameter shapes (types, never values).
+A sample of those (explain-sample-rate, at most one per statement per explain-interval) gets a
+plan captured on a separate connection in a rolled-back transaction, with statement_timeout set
+to explain-timeout: EXPLAIN (ANALYZE, BUFFERS) for queries, plain EXPLAIN for writes so the
+capture never re-runs them. The plan is logged and kept as the statement's lastPlan.
+*/
+@Component
+@ConditionalOnProperty(name = "datasource.slow-query.enabled", havingValue = "true")
+public class SlowQueryLog {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    static final String OTHER = "<other>";
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+    private static final Pattern WRITES_OR_LOCKS =
+            Pattern.compile("\\b(insert|update|delete|merge)\\b|\\bfor (no key )?(share|key share)\\b");
+
+    public record StatementStats(String sql,
+                                 long calls,
+                                 double totalMillis,
+                                 double meanMillis,
+                                 double maxMillis,
+                                 long slowCalls,
+                                 String lastPlan) {
+    }
+
+    private static final class Entry {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder slowCalls = new LongAdder();
+        private final AtomicLong lastExplainAt = new AtomicLong(Long.MIN_VALUE);
+        private volatile String lastPlan;
+    }
+
+    private final long thresholdNanos;
+    private final double explainSampleRate;
+    private final long explainIntervalNanos;
+    private final Duration explainTimeout;
+    private final int maxStatements;
+    private final Map<String, Entry> statements = new ConcurrentHashMap<>();
+    private final Map<String, String> normalized = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor explainer;
+
+    public SlowQueryLog(@Value("${datasource.slow-query.threshold:200ms}") Duration threshold,
+                        @Value("${datasource.slow-query.explain-sample-rate:0.1}") double explainSampleRate,
+                        @Value("${datasource.slow-query.explain-interval:1m}") Duration explainInterval,
+                        @Value("${datasource.slow-query.explain-timeout:10s}") Duration explainTimeout,
+                        @Value("${datasource.slow-query.max-statements:1000}") int maxStatements) {
+        this.thresholdNanos = threshold.toNanos();
+        this.explainSampleRate = explainSampleRate;
+        this.explainIntervalNanos = explainInterval.toNanos();
+        this.explainTimeout = explainTimeout;
+        this.maxStatements = maxStatements;
+        // One capture at a time and a short queue: plans are a diagnostic, dropping them is fine.
+        this.explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(16), runnable -> {
+                    Thread thread = new Thread(runnable, "slow-query-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /*
+    Records one execution. parameters are the bound values by position (null for a batch or a
+    plain statement); explainTarget is the unwrapped data source plans are captured on.
+    */
+    void record(String sql, long elapsedNanos, List<Object> parameters, DataSource explainTarget) {
+        if (sql == null) {
+            return;
+        }
+        String key = normalize(sql);
+        Entry entry = entry(key);
+        entry.calls.increment();
+        entry.totalNanos.add(elapsedNanos);
+        entry.maxNanos.accumulate(elapsedNanos);
+        if (elapsedNanos < thresholdNanos) {
+            return;
+        }
+        entry.slowCalls.increment();
+        log.warn("Slow statement ({} ms): {} parameters {}",
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), key, shapes(parameters));
+        if (parameters != null && explainTarget != null && sampled(entry)) {
+            explainer.execute(() -> explain(entry, key, sql, parameters, explainTarget));
+        }
+    }
+
+    public List<StatementStats> top(int limit) {
+        return statements.entrySet()
+                .stream()
+                .map(e -> stats(e.getKey(), e.getValue()))
+                .sorted(Comparator.comparingDouble(StatementStats::totalMillis).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    public void reset() {
+        statements.clear();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        explainer.shutdownNow();
+    }
+
+    String normalize(String sql) {
+        String key = normalized.get(sql);
+        if (key == null) {
+            key = PLACEHOLDER_LIST.matcher(WHITESPACE.matcher(sql.strip()).replaceAll(" ")).replaceAll("?, ...");
+            if (normalized.size() < maxStatements * 4) {
+                normalized.put(sql, key);
+            }
+        }
+        return key;
+    }
+
+    private Entry entry(String key) {
+        Entry entry = statements.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        if (statements.size() >= maxStatements) {
+            return statements.computeIfAbsent(OTHER, k -> new Entry());
+        }
+        return statements.computeIfAbsent(key, k -> new Entry());
+    }
+
+    private boolean sampled(Entry entry) {
+        if (ThreadLocalRandom.current().nextDouble() >= explainSampleRate) {
+            return false;
+        }
+        long now = System.nanoTime();
+        long last = entry.lastExplainAt.get();
+        return (last == Long.MIN_VALUE || now - last >= explainIntervalNanos)
+                && entry.lastExplainAt.compareAndSet(last, now);
+    }
+
+    private void explain(Entry entry, String key, String sql, List<Object> parameters, DataSource target) {
+        boolean query = isQuery(sql);
+        try (Connection connection = target.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SET LOCAL statement_timeout = " + explainTimeout.toMillis());
+                }
+                String plan;
+                try (PreparedStatement statement = connection.prepareStatement(
+                        (query ? "EXPLAIN (ANALYZE, BUFFERS) " : "EXPLAIN ") + sql)) {
+                    for (int i = 0; i < parameters.size(); i++) {
+                        statement.setObject(i + 1, parameters.get(i));
+                    }
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        StringBuilder lines = new StringBuilder();
+                        while (resultSet.next()) {
+                            lines.append(resultSet.getString(1)).append('\n');
+                        }
+                        plan = lines.toString();
+                    }
+                }
+                entry.lastPlan = plan;
+                log.info("Plan for slow statement {}\n{}", key, plan);
+            } finally {
+                connection.rollback();
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.debug("Could not capture a plan for {}", key, e);
+        }
+    }
+
+    // Only plain reads are re-run under ANALYZE; anything that writes or locks rows is not.
+    private static boolean isQuery(String sql) {
+        String lower = sql.stripLeading().toLowerCase(Locale.ROOT);
+        return (lower.startsWith("select") || lower.startsWith("with") || lower.startsWith("values"))
+                && !WRITES_OR_LOCKS.matcher(lower).find();
+    }
+
+    private static String shapes(List<Object> parameters) {
+        if (parameters == null) {
+            return "[]";
+        }
+        return parameters.stream()
+                .map(value -> value == null ? "null" : value.getClass().getSimpleName())
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    private static StatementStats stats(String sql, Entry entry) {
+        long calls = entry.calls.sum();
+        long total = entry.totalNanos.sum();
+        return new StatementStats(
+                sql,
+                calls,
+                total / 1e6,
+                calls == 0 ? 0 : total / 1e6 / calls,
+                entry.maxNanos.get() / 1e6,
+                entry.slowCalls.sum(),
+                entry.lastPlan);
+    }
+}
@@ -0,0 +1,34 @@
+package com.lavong55.datasource;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// GET /actuator/statements?limit=N lists the statements with the most total time;
+// DELETE /actuator/statements starts the counts over.
+@Component
+@Endpoint(id = "statements")
+@ConditionalOnProperty(name = "datasource.slow-query.enabled", havingValue = "true")
+public class StatementsEndpoint {
+
+    private final SlowQueryLog slowQueryLog;
+
+    public StatementsEndpoint(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @ReadOperation
+    public List<SlowQueryLog.StatementStats> top(@Nullable Integer limit) {
+        return slowQueryLog.top(limit == null ? 20 : limit);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        slowQueryLog.reset();
+    }
+}
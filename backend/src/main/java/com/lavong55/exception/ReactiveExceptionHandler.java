@@ -0,0 +1,56 @@
+package com.lavong55.exception;
+
+import io.jsonwebtoken.JwtException;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// The functional WebFlux routes' counterpart of DefaultExceptionHandler: same statuses, same ApiError body.
+public final class ReactiveExceptionHandler {
+
+    private ReactiveExceptionHandler() {
+    }
+
+    public static Mono<ServerResponse> handle(Throwable e, ServerRequest request) {
+        HttpStatusCode status = status(e);
+        ApiError apiError = new ApiError(
+                request.path(),
+                e.getMessage(),
+                status.value(),
+                LocalDateTime.now()
+        );
+        ServerResponse.BodyBuilder response = ServerResponse.status(status);
+        Duration retryAfter = e instanceof ServiceOverloadedException overloaded ? overloaded.getRetryAfter()
+                : e instanceof TooManyRequestsException throttled ? throttled.getRetryAfter()
+                : null;
+        if (retryAfter != null) {
+            response.header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())));
+        }
+        return response.bodyValue(apiError);
+    }
+
+    private static HttpStatusCode status(Throwable e) {
+        if (e instanceof ResponseStatusException statusException) {
+            return statusException.getStatusCode();
+        }
+        if (e instanceof InsufficientAuthenticationException) {
+            return HttpStatus.FORBIDDEN;
+        }
+        if (e instanceof BadCredentialsException || e instanceof JwtException) {
+            return HttpStatus.UNAUTHORIZED;
+        }
+        ResponseStatus responseStatus = AnnotatedElementUtils.findMergedAnnotation(e.getClass(), ResponseStatus.class);
+        return responseStatus != null ? responseStatus.code() : HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+}
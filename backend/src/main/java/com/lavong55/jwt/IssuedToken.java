@@ -0,0 +1,10 @@
+package com.lavong55.jwt;
+
+import java.time.Instant;
+
+public record IssuedToken(
+        String token,
+        String jti,
+        Instant expiresAt
+) {
+}
@@ -1,33 +1,52 @@
 package com.lavong55.jwt;
 
-import com.lavong55.customer.CustomerUserDetailsService;
+import com.lavong55.customer.CustomerPrincipal;
+import com.lavong55.customer.CustomerPrincipalStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 // Annotate this class with @Component to mark it as a Spring Bean component
 @Component
 public class JWTAuthenticationFilter extends OncePerRequestFilter {
 
-    // Declare private fields for JWTUtil and UserDetailsService
+    // Declare private fields for JWTUtil and CustomerPrincipalStore
     private final JWTUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
-
-    // Create a constructor that injects JWTUtil and CustomerUserDetailsService instances
+    private final CustomerPrincipalStore customerPrincipalStore;
+    // When true, tokens that carry a customer id authenticate from their signed claims alone
+    private final boolean claimsOnly;
+    // jwt.filter: time spent authenticating a bearer token (not the rest of the chain), tagged
+    // outcome=authenticated|rejected|error
+    private final Timer authenticatedTimer;
+    private final Timer rejectedTimer;
+    private final Timer errorTimer;
+
+    // Create a constructor that injects JWTUtil and CustomerPrincipalStore instances
     public JWTAuthenticationFilter(JWTUtil jwtUtil,
-                                   CustomerUserDetailsService userDetailsService) {
+                                   CustomerPrincipalStore customerPrincipalStore,
+                                   @Value("${jwt.claims-only:false}") boolean claimsOnly,
+                                   MeterRegistry meterRegistry) {
         this.jwtUtil = jwtUtil;
-        this.userDetailsService = userDetailsService;
+        this.customerPrincipalStore = customerPrincipalStore;
+        this.claimsOnly = claimsOnly;
+        this.authenticatedTimer = filterTimer("authenticated", meterRegistry);
+        this.rejectedTimer = filterTimer("rejected", meterRegistry);
+        this.errorTimer = filterTimer("error", meterRegistry);
     }
 
     // Override the doFilterInternal method from OncePerRequestFilter
@@ -53,23 +72,43 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
         // Extract the JWT (token) from the Authorization header (remove "Bearer ")
         String jwt = authHeader.substring(7);
 
-        // Extract the subject (typically, the username) from the JWT
-        String subject = jwtUtil.getSubject(jwt);
+        long start = System.nanoTime();
+        Timer timer = errorTimer;
+        try {
+            timer = authenticate(request, jwt) ? authenticatedTimer : rejectedTimer;
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        // Continue with the filter chain
+        filterChain.doFilter(request, response);
+    }
+
+    // Returns whether the request ended up authenticated.
+    private boolean authenticate(HttpServletRequest request, String jwt) {
+        // Verify the JWT once and extract the subject (typically, the username) from it
+        VerifiedToken token = jwtUtil.verify(jwt);
+        String subject = token.subject();
 
         // Check if there is no authentication in the current security context
         if (subject != null &&
                 SecurityContextHolder.getContext().getAuthentication() == null) {
 
-            // Load user details by the subject (username) extracted from the JWT
-            UserDetails userDetails = userDetailsService.loadUserByUsername(subject);
+            // In claims-only mode build the principal straight from the verified token: no lookup,
+            // revocation is handled by the token epoch check in isTokenValid. Otherwise load the
+            // cached principal (id, email, authorities) for the subject extracted from the JWT.
+            // The full Customer entity, password hash included, is only needed at login.
+            CustomerPrincipal principal = claimsOnly && token.customerId() != null
+                    ? new CustomerPrincipal(token.customerId(), subject, authorities(token))
+                    : customerPrincipalStore.loadPrincipal(subject);
 
             // Check if the JWT is valid for the user
-            if (jwtUtil.isTokenValid(jwt, userDetails.getUsername())) {
+            if (jwtUtil.isTokenValid(token, principal.email())) {
 
-                // Create an authentication token using the user details and no credentials
+                // Create an authentication token using the principal and no credentials
                 UsernamePasswordAuthenticationToken authenticationToken =
                         new UsernamePasswordAuthenticationToken(
-                                userDetails, null, userDetails.getAuthorities()
+                                principal, null, principal.authorities()
                         );
 
                 // Set authentication token details using the request details
@@ -81,8 +120,20 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
                 SecurityContextHolder.getContext().setAuthentication(authenticationToken);
             }
         }
+        return SecurityContextHolder.getContext().getAuthentication() != null;
+    }
 
-        // Continue with the filter chain
-        filterChain.doFilter(request, response);
+    private static Timer filterTimer(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("jwt.filter")
+                .description("Time spent authenticating a bearer token")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static List<GrantedAuthority> authorities(VerifiedToken token) {
+        return token.scopes()
+                .stream()
+                .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                .toList();
     }
 }
@@ -1,17 +1,29 @@
 package com.lavong55.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
-
-import static java.time.temporal.ChronoUnit.DAYS;
+import java.util.UUID;
 
 @Service
 public class JWTUtil {
@@ -20,6 +32,58 @@ public class JWTUtil {
     private static final String SECRET_KEY =
             "foobar_123456789_foobar_123456789_foobar_123456789_foobar_123456789";
 
+    // Derived once; the key and the parser built from it are immutable and thread-safe.
+    private static final Key SIGNING_KEY = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private static final JwtParser PARSER = Jwts
+            .parserBuilder()
+            .setSigningKey(SIGNING_KEY)
+            .build();
+
+    // Recently verified tokens keyed by SHA-256 digest, so the bearer token itself is never
+    // retained. An entry never outlives its token's expiry nor the configured maximum TTL.
+    private final Cache<String, VerifiedToken> verifiedTokens;
+    private final TokenEpochStore tokenEpochStore;
+    private final RevokedTokenIndex revokedTokenIndex;
+    private final Duration accessTokenTtl;
+
+    public JWTUtil(MeterRegistry meterRegistry,
+                   TokenEpochStore tokenEpochStore,
+                   RevokedTokenIndex revokedTokenIndex,
+                   @Value("${jwt.access-token-ttl:PT15M}") Duration accessTokenTtl,
+                   @Value("${jwt.verified-cache.maximum-size:10000}") long maximumSize,
+                   @Value("${jwt.verified-cache.max-ttl:PT5M}") Duration maxTtl) {
+        this.tokenEpochStore = tokenEpochStore;
+        this.revokedTokenIndex = revokedTokenIndex;
+        this.accessTokenTtl = accessTokenTtl;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String digest, VerifiedToken token, long currentTime) {
+                        Duration remaining = Duration.between(Instant.now(), token.expiresAt());
+                        if (remaining.isNegative()) {
+                            return 0;
+                        }
+                        return (remaining.compareTo(maxTtl) < 0 ? remaining : maxTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String digest, VerifiedToken token,
+                                                  long currentTime, long currentDuration) {
+                        return expireAfterCreate(digest, token, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String digest, VerifiedToken token,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "verifiedTokens");
+    }
+
     // Method to issue a JWT token with default claims
     public String issueToken(String subject){
         return issueToken(subject, Map.of());
@@ -34,65 +98,108 @@ public class JWTUtil {
         return issueToken(subject, Map.of("scopes", scopes));
     }
 
+    // Method to issue a JWT token that carries the customer id and current token epoch, so it
+    // can authenticate from its claims alone and still be revoked
+    public String issueToken(String subject, Long customerId, List<String> scopes) {
+        return issueAccessToken(subject, customerId, scopes).token();
+    }
+
+    // Same as above, but also returns the token's id (jti) and expiry so it can be revoked later
+    public IssuedToken issueAccessToken(String subject, Long customerId, List<String> scopes) {
+        return issue(subject, Map.of(
+                "scopes", scopes,
+                "cid", customerId,
+                "epoch", tokenEpochStore.currentEpoch(customerId)));
+    }
+
     // Method to issue a JWT token with custom claims
     public String issueToken(
             String subject,
             Map<String, Object> claims) {
+        return issue(subject, claims).token();
+    }
+
+    private IssuedToken issue(String subject, Map<String, Object> claims) {
+        String jti = UUID.randomUUID().toString();
+        Instant issuedAt = Instant.now();
+        Instant expiresAt = issuedAt.plus(accessTokenTtl);
 
         // Create a JWT token using the builder pattern
         String token = Jwts
                 .builder()
                 .setClaims(claims) // Set custom claims
+                .setId(jti) // Set a unique token id, used to revoke this token on logout
                 .setSubject(subject) // Set the subject of the token
                 .setIssuer("http://lavong55-api.com") // Set the issuer of the token
-                .setIssuedAt(Date.from(Instant.now())) // Set the token's issuance date
-                .setExpiration(
-                        Date.from(
-                                Instant.now().plus(1, DAYS) // Set the token's expiration date (15 days from now)
-                        )
-                )
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256) // Sign the token with the HMAC-SHA256 algorithm
+                .setIssuedAt(Date.from(issuedAt)) // Set the token's issuance date
+                .setExpiration(Date.from(expiresAt)) // Short-lived; clients renew through /api/v1/auth/refresh
+                .signWith(SIGNING_KEY, SignatureAlgorithm.HS256) // Sign the token with the HMAC-SHA256 algorithm
                 .compact(); // Compact the token into a string format
 
         // Return the generated JWT token
-        return token;
+        return new IssuedToken(token, jti, expiresAt);
     }
 
-    // Method to get the subject (typically, the username) from a JWT token
-    public String getSubject(String token) {
-        return getClaims(token).getSubject();
+    // Verifies the signature and expiry once and returns the token's claims.
+    // Throws a JwtException if the token is malformed, forged or expired; failures are never cached.
+    public VerifiedToken verify(String token) {
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            return cached;
+        }
+        VerifiedToken verified = parse(token);
+        verifiedTokens.put(digest, verified);
+        return verified;
     }
 
-    // Private method to parse and retrieve claims from a JWT token
-    private Claims getClaims(String token) {
-        // Use the JWT parser to build a Claims object from the provided token
-        Claims claims = Jwts
-                .parserBuilder()
-                .setSigningKey(getSigningKey()) // Set the signing key for token verification
-                .build()
-                .parseClaimsJws(token) // Parse the token to extract its claims
-                .getBody(); // Retrieve the claims (payload) from the parsed token
-
-        // Return the extracted claims from the JWT token
-        return claims;
+    // One uncached parse: PARSER checks the signature and rejects expired tokens.
+    VerifiedToken parse(String token) {
+        Claims claims = PARSER.parseClaimsJws(token).getBody();
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.getId(),
+                claims.get("cid") instanceof Number cid ? cid.longValue() : null,
+                claims.get("epoch") instanceof Number epoch ? epoch.longValue() : 0,
+                scopes(claims.get("scopes")),
+                claims.getExpiration().toInstant()
+        );
     }
 
-    // Helper method to get the signing key based on the secret key
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    // Method to get the subject (typically, the username) from a JWT token
+    public String getSubject(String token) {
+        return verify(token).subject();
     }
 
     // Method to check if a JWT token is valid for a given username and not expired
     public boolean isTokenValid(String jwt, String username) {
-        String subject = getSubject(jwt);
-        return subject.equals(username) && !isTokenExpired(jwt);
+        return isTokenValid(verify(jwt), username);
     }
 
-    // Private method to check if a JWT token is expired
-    private boolean isTokenExpired(String jwt) {
-        Date today = Date.from(Instant.now());
-        return getClaims(jwt).getExpiration().before(today);
+    // Also rejects tokens revoked by logout or issued before the customer's tokens were last revoked
+    public boolean isTokenValid(VerifiedToken token, String username) {
+        return token.subject().equals(username)
+                && !token.isExpired(Instant.now())
+                && !revokedTokenIndex.isRevoked(token.jti())
+                && (token.customerId() == null
+                        || tokenEpochStore.isCurrent(token.customerId(), token.epoch()));
     }
-}
 
+    private static List<String> scopes(Object claim) {
+        if (claim instanceof Collection<?> values) {
+            return values.stream().map(String::valueOf).toList();
+        }
+        return List.of();
+    }
 
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE is required to provide SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+}
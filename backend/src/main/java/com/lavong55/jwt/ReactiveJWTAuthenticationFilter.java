@@ -0,0 +1,55 @@
+package com.lavong55.jwt;
+
+import com.lavong55.customer.CustomerPrincipal;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+/*
+Bearer token check for the reactive routes. It always works from the token's claims: the signature,
+expiry, revoked jti and token epoch checks are all in memory, so nothing here blocks the event loop.
+The resulting principal is exposed as the PRINCIPAL_ATTRIBUTE request attribute.
+*/
+public class ReactiveJWTAuthenticationFilter implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+
+    public static final String PRINCIPAL_ATTRIBUTE = CustomerPrincipal.class.getName();
+
+    private final JWTUtil jwtUtil;
+
+    public ReactiveJWTAuthenticationFilter(JWTUtil jwtUtil) {
+        this.jwtUtil = jwtUtil;
+    }
+
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+        String authHeader = request.headers().firstHeader(HttpHeaders.AUTHORIZATION);
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return Mono.error(new InsufficientAuthenticationException(
+                    "Full authentication is required to access this resource"));
+        }
+        VerifiedToken token;
+        try {
+            token = jwtUtil.verify(authHeader.substring(7));
+        } catch (RuntimeException e) {
+            return Mono.error(new BadCredentialsException("invalid token", e));
+        }
+        if (token.subject() == null || !jwtUtil.isTokenValid(token, token.subject())) {
+            return Mono.error(new BadCredentialsException("invalid token"));
+        }
+        request.attributes().put(PRINCIPAL_ATTRIBUTE, new CustomerPrincipal(
+                token.customerId(),
+                token.subject(),
+                token.scopes()
+                        .stream()
+                        .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                        .toList()));
+        return next.handle(request);
+    }
+}
@@ -0,0 +1,199 @@
+package com.lavong55.jwt;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+Refresh-token flow. Access tokens are short-lived JWTs checked purely in memory; refresh tokens
+are opaque, long-lived, stored hashed in refresh_token and rotated on every use (the old row is
+deleted, so a replayed refresh token is rejected). Logout and forced revocation mark rows
+revoked and put the latest access token's jti into RevokedTokenIndex, which the request path
+consults. Earlier access tokens of a rotated refresh token are covered by bumping the
+customer's token epoch on forced revocation and otherwise simply expire within one access
+token lifetime.
+*/
+@Service
+public class RefreshTokenService {
+
+    // Customer.getAuthorities(); refresh tokens carry no roles of their own.
+    private static final List<String> SCOPES = List.of("ROLE_USER");
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JWTUtil jwtUtil;
+    private final RevokedTokenIndex revokedTokenIndex;
+    private final TokenEpochStore tokenEpochStore;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration refreshTokenTtl;
+    private final Duration cleanupInterval;
+    private final ScheduledExecutorService scheduler;
+
+    public RefreshTokenService(JdbcTemplate jdbcTemplate,
+                               JWTUtil jwtUtil,
+                               RevokedTokenIndex revokedTokenIndex,
+                               TokenEpochStore tokenEpochStore,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${jwt.refresh-token.ttl:P14D}") Duration refreshTokenTtl,
+                               @Value("${jwt.refresh-token.cleanup-interval:PT5M}") Duration cleanupInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jwtUtil = jwtUtil;
+        this.revokedTokenIndex = revokedTokenIndex;
+        this.tokenEpochStore = tokenEpochStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.refreshTokenTtl = refreshTokenTtl;
+        this.cleanupInterval = cleanupInterval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "refresh-token-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Rebuilds the revocation index, then prunes the index and the table periodically.
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        var sql = """
+                SELECT access_jti, access_expires_at
+                FROM refresh_token
+                WHERE revoked_at IS NOT NULL
+                  AND access_expires_at > now()
+                """;
+        jdbcTemplate.query(sql, revokeAccessToken());
+        scheduler.scheduleWithFixedDelay(this::cleanUp,
+                cleanupInterval.toMillis(), cleanupInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public TokenPair issue(Long customerId, String email, List<String> scopes) {
+        IssuedToken accessToken = jwtUtil.issueAccessToken(email, customerId, scopes);
+        String refreshToken = newRefreshToken();
+        var sql = """
+                INSERT INTO refresh_token(token_hash, customer_id, access_jti, access_expires_at, expires_at)
+                VALUES (?, ?, ?, ?, ?)
+                """;
+        jdbcTemplate.update(sql,
+                digest(refreshToken),
+                customerId,
+                accessToken.jti(),
+                Timestamp.from(accessToken.expiresAt()),
+                Timestamp.from(Instant.now().plus(refreshTokenTtl)));
+        return new TokenPair(accessToken.token(), refreshToken);
+    }
+
+    // Exchanges a live refresh token for a new access token and a new refresh token.
+    public TokenPair refresh(String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            throw new BadCredentialsException("invalid refresh token");
+        }
+        return transactionTemplate.execute(status -> {
+            var sql = """
+                    DELETE FROM refresh_token r
+                    USING customer c
+                    WHERE c.id = r.customer_id
+                      AND r.token_hash = ?
+                      AND r.revoked_at IS NULL
+                      AND r.expires_at > now()
+                    RETURNING c.id, c.email
+                    """;
+            List<Owner> owners = jdbcTemplate.query(sql,
+                    (rs, rowNum) -> new Owner(rs.getLong("id"), rs.getString("email")),
+                    digest(refreshToken));
+            if (owners.isEmpty()) {
+                throw new BadCredentialsException("invalid refresh token");
+            }
+            Owner owner = owners.get(0);
+            return issue(owner.customerId(), owner.email(), SCOPES);
+        });
+    }
+
+    // Logout: revokes the refresh token and the access token last issued with it.
+    public void revoke(String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            return;
+        }
+        var sql = """
+                UPDATE refresh_token
+                SET revoked_at = now()
+                WHERE token_hash = ?
+                  AND revoked_at IS NULL
+                RETURNING access_jti, access_expires_at
+                """;
+        jdbcTemplate.query(sql, revokeAccessToken(), digest(refreshToken));
+    }
+
+    // Forced revocation: ends every session of the customer. Used by logout-all, the operators'
+    // DELETE /customers/{id}/sessions and customer deletion.
+    public void revokeAll(Long customerId) {
+        var sql = """
+                UPDATE refresh_token
+                SET revoked_at = now()
+                WHERE customer_id = ?
+                  AND revoked_at IS NULL
+                RETURNING access_jti, access_expires_at
+                """;
+        jdbcTemplate.query(sql, revokeAccessToken(), customerId);
+        tokenEpochStore.revoke(customerId);
+    }
+
+    void cleanUp() {
+        revokedTokenIndex.prune(Instant.now());
+        var sql = """
+                DELETE FROM refresh_token
+                WHERE expires_at < now()
+                   OR (revoked_at IS NOT NULL AND access_expires_at < now())
+                """;
+        jdbcTemplate.update(sql);
+    }
+
+    private RowCallbackHandler revokeAccessToken() {
+        return rs -> revokedTokenIndex.revoke(
+                rs.getString("access_jti"),
+                rs.getTimestamp("access_expires_at").toInstant());
+    }
+
+    private static String newRefreshToken() {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE is required to provide SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Owner(long customerId, String email) {
+    }
+}
@@ -0,0 +1,39 @@
+package com.lavong55.jwt;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Ids (jti) of access tokens revoked before they expired, e.g. by logout. This is the only
+revocation state the request path consults, so checks stay in memory. An entry is only needed
+until its token expires; prune() drops it after that, so the index never holds more than one
+access-token lifetime's worth of revocations. RefreshTokenService rebuilds it from the
+refresh_token table at startup.
+*/
+@Component
+public class RevokedTokenIndex {
+
+    // jti -> token expiry (epoch seconds)
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+
+    public void revoke(String jti, Instant expiresAt) {
+        if (jti != null && expiresAt.isAfter(Instant.now())) {
+            revoked.put(jti, expiresAt.getEpochSecond());
+        }
+    }
+
+    public boolean isRevoked(String jti) {
+        return jti != null && revoked.containsKey(jti);
+    }
+
+    public void prune(Instant now) {
+        long nowSeconds = now.getEpochSecond();
+        revoked.values().removeIf(expiresAt -> expiresAt < nowSeconds);
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+}
@@ -0,0 +1,112 @@
+package com.lavong55.jwt;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+Per-customer token epochs. Tokens carry the epoch that was current when they were issued;
+revoke() bumps it so every older token for that customer stops validating. Only customers
+that have been revoked are stored, so the table stays small.
+
+Epochs are persisted in token_epoch and checked from memory on the request path. They are loaded
+at startup and reloaded every reload-interval, so a revocation made on another instance takes
+effect here within that interval; access tokens live for jwt.access-token-ttl at most anyway. A
+token carrying a newer epoch than this instance knows was issued after a revocation it has not
+loaded yet, and is accepted.
+*/
+@Component
+public class TokenEpochStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenEpochStore.class);
+
+    private final ConcurrentHashMap<Long, Long> epochs = new ConcurrentHashMap<>();
+    // null: memory only, for tests and benchmarks.
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration reloadInterval;
+    private final ScheduledExecutorService scheduler;
+
+    @Autowired
+    public TokenEpochStore(JdbcTemplate jdbcTemplate,
+                           @Value("${jwt.token-epoch.reload-interval:PT30S}") Duration reloadInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.reloadInterval = reloadInterval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-epoch-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    TokenEpochStore() {
+        this(null, Duration.ZERO);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (jdbcTemplate == null) {
+            return;
+        }
+        load();
+        if (!reloadInterval.isZero() && !reloadInterval.isNegative()) {
+            scheduler.scheduleWithFixedDelay(this::reload,
+                    reloadInterval.toMillis(), reloadInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public long currentEpoch(Long customerId) {
+        return epochs.getOrDefault(customerId, 0L);
+    }
+
+    public boolean isCurrent(Long customerId, long epoch) {
+        return epoch >= currentEpoch(customerId);
+    }
+
+    public void revoke(Long customerId) {
+        if (jdbcTemplate == null) {
+            epochs.merge(customerId, 1L, Long::sum);
+            return;
+        }
+        var sql = """
+                INSERT INTO token_epoch(customer_id, epoch)
+                VALUES (?, 1)
+                ON CONFLICT (customer_id) DO UPDATE SET epoch = token_epoch.epoch + 1
+                RETURNING epoch
+                """;
+        Long epoch = jdbcTemplate.queryForObject(sql, Long.class, customerId);
+        epochs.merge(customerId, epoch, Math::max);
+    }
+
+    void load() {
+        jdbcTemplate.query("SELECT customer_id, epoch FROM token_epoch", rs -> {
+            epochs.merge(rs.getLong("customer_id"), rs.getLong("epoch"), Math::max);
+        });
+    }
+
+    // A failed reload keeps the epochs already known and is retried on the next run.
+    private void reload() {
+        try {
+            load();
+        } catch (DataAccessException e) {
+            log.warn("Could not reload token epochs", e);
+        }
+    }
+}
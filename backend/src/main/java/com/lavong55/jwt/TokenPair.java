@@ -0,0 +1,7 @@
+package com.lavong55.jwt;
+
+public record TokenPair(
+        String accessToken,
+        String refreshToken
+) {
+}
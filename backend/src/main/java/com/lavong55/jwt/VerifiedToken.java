@@ -0,0 +1,24 @@
+package com.lavong55.jwt;
+
+import java.time.Instant;
+import java.util.List;
+
+// Result of a single signature-checked parse of a JWT; safe to share between requests.
+// customerId is null for tokens issued without the cid/epoch claims.
+public record VerifiedToken(
+        String subject,
+        String jti,
+        Long customerId,
+        long epoch,
+        List<String> scopes,
+        Instant expiresAt
+) {
+
+    public VerifiedToken {
+        scopes = List.copyOf(scopes);
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt.isBefore(now);
+    }
+}
@@ -0,0 +1,57 @@
+package com.lavong55.security;
+
+import com.lavong55.customer.CustomerPrincipal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/*
+Who counts as an operator: a caller with ROLE_ADMIN, or a customer whose email is listed in
+auth.admin-emails. Guards the actuator endpoints (statements, emailfilter, columnarstore,
+metrics ...) as an AuthorizationManager and the raw CSV export through isAdmin. The list is
+empty by default, and self-registered customers only ever get ROLE_USER, so out of the box
+nobody reaches either through the API.
+*/
+@Component
+public class AdminAccess implements AuthorizationManager<RequestAuthorizationContext> {
+
+    static final String ADMIN = "ROLE_ADMIN";
+
+    private final Set<String> adminEmails;
+
+    public AdminAccess(@Value("${auth.admin-emails:}") List<String> adminEmails) {
+        this.adminEmails = adminEmails.stream()
+                .map(String::trim)
+                .filter(email -> !email.isEmpty())
+                .map(email -> email.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication,
+                                       RequestAuthorizationContext context) {
+        return new AuthorizationDecision(isAdmin(authentication.get()));
+    }
+
+    public boolean isAdmin(Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return false;
+        }
+        boolean admin = authentication.getAuthorities()
+                .stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch(ADMIN::equals);
+        return admin || authentication.getPrincipal() instanceof CustomerPrincipal principal
+                && adminEmails.contains(principal.email().toLowerCase(Locale.ROOT));
+    }
+}
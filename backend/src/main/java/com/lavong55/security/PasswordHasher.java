@@ -0,0 +1,173 @@
+package com.lavong55.security;
+
+import com.lavong55.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/*
+Runs password hashing and verification on a fixed pool sized to the CPU count, so BCrypt never
+burns request threads' CPU time and a login storm cannot crowd out cheap requests.
+
+Interactive callers (the PasswordEncoder returned by boundedEncoder(), used at login and
+registration) may have threads + queue-capacity hashes outstanding and are rejected immediately
+with ServiceOverloadedException -> 503 + Retry-After beyond that. Bulk callers (encodeAsync, used
+by batch registration and import) have their own, smaller allowance (bulk-permits, the thread
+count by default) and wait for a slot instead, so they apply backpressure to themselves rather
+than failing half-way. Bulk work never takes interactive permits: while an import runs, a login
+waits behind at most bulk-permits hashes instead of being refused.
+
+Meters: password.hashing.queue.depth / .active (gauges), password.hashing.wait (time queued),
+password.hashing.time tagged operation=encode|matches, password.hashing.rejected.
+*/
+public class PasswordHasher {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore admission;
+    private final Semaphore bulkAdmission;
+    private final Duration retryAfter;
+    private final Timer waitTimer;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public PasswordHasher(PasswordEncoder passwordEncoder,
+                          int threads,
+                          int queueCapacity,
+                          Duration retryAfter,
+                          MeterRegistry meterRegistry) {
+        this(passwordEncoder, threads, queueCapacity, 0, retryAfter, meterRegistry);
+    }
+
+    public PasswordHasher(PasswordEncoder passwordEncoder,
+                          int threads,
+                          int queueCapacity,
+                          int bulkPermits,
+                          Duration retryAfter,
+                          MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        // Unbounded queue on purpose: the semaphore is what bounds outstanding work.
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new HashingThreadFactory());
+        this.admission = new Semaphore(poolSize + Math.max(0, queueCapacity));
+        this.bulkAdmission = new Semaphore(bulkPermits > 0 ? bulkPermits : poolSize);
+        this.retryAfter = retryAfter;
+        this.waitTimer = Timer.builder("password.hashing.wait")
+                .description("Time a hashing task spent queued before a worker picked it up")
+                .register(meterRegistry);
+        this.encodeTimer = Timer.builder("password.hashing.time")
+                .tag("operation", "encode")
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hashing.time")
+                .tag("operation", "matches")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("password.hashing.rejected")
+                .description("Interactive hashing requests refused because the pool was saturated")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.queue.depth", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    // Bulk path: waits for capacity rather than failing.
+    public CompletableFuture<String> encodeAsync(CharSequence rawPassword) {
+        try {
+            bulkAdmission.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        return submit(bulkAdmission, encodeTimer, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    // Interactive path: PasswordEncoder whose work runs on the pool, failing fast when it is full.
+    public PasswordEncoder boundedEncoder() {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return await(tryAdmit(encodeTimer, () -> passwordEncoder.encode(rawPassword)));
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return await(tryAdmit(matchesTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword)));
+            }
+
+            @Override
+            public boolean upgradeEncoding(String encodedPassword) {
+                return passwordEncoder.upgradeEncoding(encodedPassword);
+            }
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> CompletableFuture<T> tryAdmit(Timer timer, Supplier<T> work) {
+        if (!admission.tryAcquire()) {
+            rejected.increment();
+            throw new ServiceOverloadedException(
+                    "password hashing capacity exceeded, retry later", retryAfter);
+        }
+        return submit(admission, timer, work);
+    }
+
+    // Caller must already hold a permit of permits; it is released when the task finishes.
+    private <T> CompletableFuture<T> submit(Semaphore permits, Timer timer, Supplier<T> work) {
+        long queuedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                    return timer.record(work);
+                } finally {
+                    permits.release();
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class HashingThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "password-hashing-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,22 +1,60 @@
 package com.lavong55.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Map;
 
 @Configuration
 public class SecurityConfig {
 
-    // Define a Spring Bean for password encoding
+    // Define a Spring Bean for the bounded pool that all password hashing runs on
+    @Bean
+    public PasswordHasher passwordHasher(
+            MeterRegistry meterRegistry,
+            @Value("${password-hashing.threads:0}") int threads,
+            @Value("${password-hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${password-hashing.bulk-permits:0}") int bulkPermits,
+            @Value("${password-hashing.retry-after:PT1S}") Duration retryAfter,
+            @Value("${password-hashing.algorithm:bcrypt}") String algorithm,
+            @Value("${password-hashing.bcrypt-strength:10}") int bcryptStrength
+    ) {
+        return new PasswordHasher(
+                delegatingPasswordEncoder(algorithm, bcryptStrength),
+                threads, queueCapacity, bulkPermits, retryAfter, meterRegistry);
+    }
+
+    // New hashes are stored as "{id}hash" using the configured algorithm. Hashes from other
+    // algorithms, a lower BCrypt strength, or without a prefix (stored before prefixes were
+    // introduced, all BCrypt) still match, and report upgradeEncoding() so they are re-hashed.
+    static PasswordEncoder delegatingPasswordEncoder(String algorithm, int bcryptStrength) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        Map<String, PasswordEncoder> encoders = Map.of(
+                "bcrypt", bcrypt,
+                "pbkdf2", Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8()
+        );
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(algorithm, encoders);
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+        return delegating;
+    }
+
+    // Define a Spring Bean for password encoding; hashing runs on the pool, never on request threads
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(); // Use BCryptPasswordEncoder for password hashing
+    public PasswordEncoder passwordEncoder(PasswordHasher passwordHasher) {
+        return passwordHasher.boundedEncoder();
     }
 
     // Define a Spring Bean for the AuthenticationManager
@@ -31,6 +69,7 @@ public class SecurityConfig {
     @Bean
     public AuthenticationProvider authenticationProvider(
             UserDetailsService userDetailsService,
+            UserDetailsPasswordService userDetailsPasswordService,
             PasswordEncoder passwordEncoder
     ) {
         // Create a DaoAuthenticationProvider, which uses UserDetailsService and PasswordEncoder
@@ -38,6 +77,8 @@ public class SecurityConfig {
                 new DaoAuthenticationProvider();
         daoAuthenticationProvider.setPasswordEncoder(passwordEncoder);
         daoAuthenticationProvider.setUserDetailsService(userDetailsService);
+        // Re-hash outdated passwords after a successful login
+        daoAuthenticationProvider.setUserDetailsPasswordService(userDetailsPasswordService);
         return daoAuthenticationProvider; // Return the configured AuthenticationProvider
     }
 }
@@ -1,6 +1,8 @@
 package com.lavong55.security;
 
+import com.lavong55.auth.LoginThrottleFilter;
 import com.lavong55.jwt.JWTAuthenticationFilter;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -19,15 +21,21 @@ public class SecurityFilterChainConfig {
 
     private final AuthenticationProvider authenticationProvider;
     private final JWTAuthenticationFilter jwtAuthenticationFilter;
+    private final LoginThrottleFilter loginThrottleFilter;
     private final AuthenticationEntryPoint authenticationEntryPoint;
+    private final AdminAccess adminAccess;
 
     public SecurityFilterChainConfig(
             AuthenticationProvider authenticationProvider,
             JWTAuthenticationFilter jwtAuthenticationFilter,
-            AuthenticationEntryPoint authenticationEntryPoint) {
+            LoginThrottleFilter loginThrottleFilter,
+            AuthenticationEntryPoint authenticationEntryPoint,
+            AdminAccess adminAccess) {
         this.authenticationProvider = authenticationProvider;
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
+        this.loginThrottleFilter = loginThrottleFilter;
         this.authenticationEntryPoint = authenticationEntryPoint;
+        this.adminAccess = adminAccess;
     }
 
     @Bean
@@ -38,13 +46,24 @@ public class SecurityFilterChainConfig {
                 .authorizeHttpRequests() // Authorize HTTP requests (matchers).
 
                 // Allow unrestricted access (permit all) for HTTP POST requests to "/api/v1/customers".
+                // Refresh and logout are authenticated by the refresh token in the body instead.
                 .requestMatchers(
                         HttpMethod.POST,
                         "/api/v1/customers",
-                        "/api/v1/auth/login"
+                        "/api/v1/auth/login",
+                        "/api/v1/auth/refresh",
+                        "/api/v1/auth/logout"
                 )
                 .permitAll()
 
+                // Prometheus scrapes without a token; restrict this path at the ingress instead.
+                .requestMatchers(HttpMethod.GET, "/actuator/prometheus")
+                .permitAll()
+
+                // Every other actuator endpoint but health is for operators only.
+                .requestMatchers(EndpointRequest.toAnyEndpoint().excluding("health", "prometheus"))
+                .access(adminAccess)
+
                 // For all other requests (anyRequest), require authentication (authenticated user).
                 .anyRequest()
                 .authenticated()
@@ -53,6 +72,11 @@ public class SecurityFilterChainConfig {
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 .and()
                 .authenticationProvider(authenticationProvider)
+                // Throttle login attempts before any authentication work is done.
+                .addFilterBefore(
+                        loginThrottleFilter,
+                        UsernamePasswordAuthenticationFilter.class
+                )
                 .addFilterBefore(
                         jwtAuthenticationFilter,
                         UsernamePasswordAuthenticationFilter.class
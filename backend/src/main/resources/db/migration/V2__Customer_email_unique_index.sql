@@ -0,0 +1,4 @@
+-- Case-insensitive uniqueness for customer emails. Backs the email lookups (lower(email) = lower(?))
+-- and lets registration use INSERT ... ON CONFLICT instead of a separate existence check.
+-- CONCURRENTLY avoids blocking writes while the index is built; Flyway runs it outside a transaction.
+CREATE UNIQUE INDEX CONCURRENTLY customer_email_unique ON customer (lower(email));
@@ -0,0 +1,15 @@
+-- Refresh tokens are opaque random strings; only their SHA-256 digest is stored.
+-- access_jti / access_expires_at track the latest access token minted with each refresh token, so
+-- revoking the refresh token can revoke that access token too, and the in-memory revocation index
+-- can be rebuilt from revoked rows at startup.
+CREATE TABLE refresh_token(
+    token_hash TEXT PRIMARY KEY,
+    customer_id BIGINT NOT NULL REFERENCES customer(id) ON DELETE CASCADE,
+    access_jti TEXT NOT NULL,
+    access_expires_at TIMESTAMPTZ NOT NULL,
+    expires_at TIMESTAMPTZ NOT NULL,
+    revoked_at TIMESTAMPTZ
+);
+
+CREATE INDEX refresh_token_customer_id ON refresh_token (customer_id);
+CREATE INDEX refresh_token_revoked ON refresh_token (access_expires_at) WHERE revoked_at IS NOT NULL;
@@ -0,0 +1,9 @@
+-- Per-customer access-token epochs. Tokens carry the epoch current when they were issued, and
+-- bumping it revokes every older token. Only customers whose tokens have been revoked have a row.
+-- No foreign key to customer: deleting a customer bumps its epoch first, and the row has to
+-- outlive the customer so other instances and restarts still see that revocation. Customer ids
+-- are never reused.
+CREATE TABLE token_epoch(
+    customer_id BIGINT PRIMARY KEY,
+    epoch BIGINT NOT NULL
+);
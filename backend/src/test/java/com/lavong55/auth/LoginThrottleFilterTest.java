@@ -0,0 +1,181 @@
+package com.lavong55.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lavong55.exception.PayloadTooLargeException;
+import com.lavong55.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.filters.RemoteIpFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class LoginThrottleFilterTest {
+
+    private final HandlerExceptionResolver handlerExceptionResolver = mock(HandlerExceptionResolver.class);
+    private final List<String> loginBodies = new ArrayList<>();
+    private LoginThrottleFilter underTest;
+    private RemoteIpFilter remoteIpFilter;
+
+    @BeforeEach
+    void setUp() throws ServletException {
+        LoginThrottle loginThrottle = new LoginThrottle(new SimpleMeterRegistry(),
+                2, Duration.ofMinutes(1),
+                100, Duration.ofMinutes(1),
+                1_000, Duration.ofMinutes(10));
+        underTest = new LoginThrottleFilter(loginThrottle, new ObjectMapper(), handlerExceptionResolver);
+        // Same defaults as the Tomcat valve behind server.forward-headers-strategy=native.
+        remoteIpFilter = new RemoteIpFilter();
+        remoteIpFilter.init(new MockFilterConfig());
+    }
+
+    @Test
+    void forwardedClientsBehindTheLoadBalancerGetTheirOwnBuckets() throws Exception {
+        // Given the first client uses up its budget
+        for (int i = 0; i < 2; i++) {
+            login("10.0.0.5", "203.0.113.7", "user" + i + "@gmail.com");
+        }
+
+        // When
+        login("10.0.0.5", "203.0.113.7", "other@gmail.com");
+        login("10.0.0.5", "198.51.100.2", "other@gmail.com");
+
+        // Then only the first client is throttled
+        verify(handlerExceptionResolver, times(1))
+                .resolveException(any(), any(), isNull(), isA(TooManyRequestsException.class));
+        assertThat(loginBodies).hasSize(3);
+    }
+
+    @Test
+    void forwardedForFromAnUntrustedPeerIsIgnored() throws Exception {
+        // Given a public peer claiming to forward for different clients
+        login("198.51.100.9", "203.0.113.1", "a@gmail.com");
+        login("198.51.100.9", "203.0.113.2", "b@gmail.com");
+
+        // When
+        login("198.51.100.9", "203.0.113.3", "c@gmail.com");
+
+        // Then all three are charged to the peer
+        verify(handlerExceptionResolver)
+                .resolveException(any(), any(), isNull(), isA(TooManyRequestsException.class));
+    }
+
+    @Test
+    void oversizedContentLengthIsRejectedUnread() throws Exception {
+        // Given
+        MockHttpServletRequest request = loginRequest("10.0.0.5", "x@gmail.com");
+        request.setContent(new byte[LoginThrottleFilter.MAX_BODY_BYTES + 1]);
+
+        // When
+        underTest.doFilter(request, new MockHttpServletResponse(), new MockFilterChain(new LoginServlet()));
+
+        // Then
+        verify(handlerExceptionResolver)
+                .resolveException(any(), any(), isNull(), isA(PayloadTooLargeException.class));
+        assertThat(loginBodies).isEmpty();
+    }
+
+    @Test
+    void oversizedBodyWithoutContentLengthIsRejected() throws Exception {
+        // Given a chunked body: no Content-Length to check up front
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/auth/login") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        request.setContent(new byte[LoginThrottleFilter.MAX_BODY_BYTES * 4]);
+
+        // When
+        underTest.doFilter(request, new MockHttpServletResponse(), new MockFilterChain(new LoginServlet()));
+
+        // Then
+        verify(handlerExceptionResolver)
+                .resolveException(any(), any(), isNull(), isA(PayloadTooLargeException.class));
+        assertThat(loginBodies).isEmpty();
+    }
+
+    @Test
+    void replayedBodySupportsReadListener() throws Exception {
+        // Given
+        AtomicBoolean allRead = new AtomicBoolean();
+        HttpServlet asyncReader = new HttpServlet() {
+            @Override
+            protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                ServletInputStream input = request.getInputStream();
+                input.setReadListener(new ReadListener() {
+                    @Override
+                    public void onDataAvailable() throws IOException {
+                        loginBodies.add(new String(input.readAllBytes(), StandardCharsets.UTF_8));
+                    }
+
+                    @Override
+                    public void onAllDataRead() {
+                        allRead.set(true);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+                });
+            }
+        };
+
+        // When
+        underTest.doFilter(loginRequest("10.0.0.5", "x@gmail.com"), new MockHttpServletResponse(),
+                new MockFilterChain(asyncReader));
+
+        // Then
+        assertThat(loginBodies).singleElement().asString().contains("x@gmail.com");
+        assertThat(allRead).isTrue();
+        verify(handlerExceptionResolver, never()).resolveException(any(), any(), any(), any());
+    }
+
+    private void login(String peer, String forwardedFor, String username) throws Exception {
+        MockHttpServletRequest request = loginRequest(peer, username);
+        request.addHeader("X-Forwarded-For", forwardedFor);
+        new MockFilterChain(new LoginServlet(), remoteIpFilter, underTest)
+                .doFilter(request, new MockHttpServletResponse());
+    }
+
+    private static MockHttpServletRequest loginRequest(String peer, String username) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/auth/login");
+        request.setRemoteAddr(peer);
+        request.setContentType("application/json");
+        request.setContent(("{\"username\":\"" + username + "\",\"password\":\"password\"}")
+                .getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private final class LoginServlet extends HttpServlet {
+        @Override
+        protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            loginBodies.add(new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+}
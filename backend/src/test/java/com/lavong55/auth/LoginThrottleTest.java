@@ -0,0 +1,67 @@
+package com.lavong55.auth;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoginThrottleTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private LoginThrottle underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new LoginThrottle(meterRegistry,
+                10, Duration.ofMinutes(1),
+                3, Duration.ofMinutes(1),
+                1_000, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void tokenBucketAllowsBurstThenRefills() {
+        // Given a bucket of 2 tokens refilling one per second
+        TokenBucket bucket = new TokenBucket(2, TimeUnit.SECONDS.toNanos(2));
+        long now = 0;
+
+        // When
+        // Then
+        assertThat(bucket.tryAcquire(now)).isZero();
+        assertThat(bucket.tryAcquire(now)).isZero();
+        assertThat(bucket.tryAcquire(now)).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+        assertThat(bucket.tryAcquire(now + TimeUnit.SECONDS.toNanos(1))).isZero();
+    }
+
+    @Test
+    void throttlesUsernameAcrossAddresses() {
+        // Given the username budget is used up from different addresses
+        for (int i = 0; i < 3; i++) {
+            assertThat(underTest.tryAcquire("10.0.0." + i, "alex@gmail.com")).isEmpty();
+        }
+
+        // When
+        // Then usernames compare case-insensitively
+        assertThat(underTest.tryAcquire("10.0.0.9", "ALEX@gmail.com")).isPresent();
+        assertThat(underTest.tryAcquire("10.0.0.9", "jamila@gmail.com")).isEmpty();
+        assertThat(meterRegistry.get("auth.login.throttle").tag("key", "username").tag("result", "throttled")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void throttlesAddressAcrossUsernames() {
+        // Given
+        for (int i = 0; i < 10; i++) {
+            assertThat(underTest.tryAcquire("10.0.0.1", "user" + i + "@gmail.com")).isEmpty();
+        }
+
+        // When
+        // Then
+        assertThat(underTest.tryAcquire("10.0.0.1", "another@gmail.com")).isPresent();
+        assertThat(underTest.tryAcquire("10.0.0.2", "another@gmail.com")).isEmpty();
+    }
+}
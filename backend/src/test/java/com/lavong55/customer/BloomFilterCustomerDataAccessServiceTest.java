@@ -0,0 +1,115 @@
+package com.lavong55.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BloomFilterCustomerDataAccessServiceTest {
+
+    @Mock
+    private CustomerDao delegate;
+    private BloomFilterCustomerDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new BloomFilterCustomerDataAccessService(delegate, 1_000, 0.01, Duration.ofHours(1));
+        doAnswer(invocation -> {
+            Consumer<String> action = invocation.getArgument(0);
+            action.accept("alex@gmail.com");
+            return null;
+        }).when(delegate).forEachEmail(any());
+        underTest.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.shutdown();
+    }
+
+    @Test
+    void unknownEmailSkipsDatabase() {
+        assertThat(underTest.existsCustomerWithEmail("new-customer@gmail.com")).isFalse();
+
+        verify(delegate, never()).existsCustomerWithEmail(any());
+        assertThat(underTest.stats().definitelyAbsent()).isEqualTo(1);
+    }
+
+    @Test
+    void knownEmailFallsThroughToDatabase() {
+        when(delegate.existsCustomerWithEmail("alex@gmail.com")).thenReturn(true);
+
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isTrue();
+        assertThat(underTest.stats().maybePresent()).isEqualTo(1);
+    }
+
+    @Test
+    void insertedEmailIsRemembered() {
+        Customer customer = new Customer("Jamila", "jamila@gmail.com", "password", 21, Gender.FEMALE);
+        when(delegate.insertCustomerIfEmailAvailable(customer)).thenReturn(true);
+        when(delegate.existsCustomerWithEmail("jamila@gmail.com")).thenReturn(true);
+
+        underTest.insertCustomerIfEmailAvailable(customer);
+
+        assertThat(underTest.existsCustomerWithEmail("jamila@gmail.com")).isTrue();
+    }
+
+    @Test
+    void insertDuringRebuildSurvivesThePublish() {
+        Customer customer = new Customer("Jamila", "jamila@gmail.com", "password", 21, Gender.FEMALE);
+        when(delegate.insertCustomerIfEmailAvailable(customer)).thenReturn(true);
+        when(delegate.existsCustomerWithEmail("jamila@gmail.com")).thenReturn(true);
+        // The stream has already passed the new row when the insert lands.
+        doAnswer(invocation -> {
+            Consumer<String> action = invocation.getArgument(0);
+            action.accept("alex@gmail.com");
+            underTest.insertCustomerIfEmailAvailable(customer);
+            return null;
+        }).when(delegate).forEachEmail(any());
+
+        underTest.rebuild();
+
+        assertThat(underTest.existsCustomerWithEmail("jamila@gmail.com")).isTrue();
+        assertThat(underTest.stats().definitelyAbsent()).isZero();
+    }
+
+    @Test
+    void failedScheduledRebuildKeepsTheCurrentFilter() {
+        // Given
+        doAnswer(invocation -> {
+            throw new IllegalStateException("connection reset");
+        }).when(delegate).forEachEmail(any());
+
+        // When
+        underTest.scheduledRebuild();
+
+        // Then
+        assertThat(underTest.existsCustomerWithEmail("new-customer@gmail.com")).isFalse();
+        when(delegate.existsCustomerWithEmail("alex@gmail.com")).thenReturn(true);
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isTrue();
+    }
+
+    @Test
+    void selectExistingEmailsOnlyQueriesMaybePresentEmails() {
+        when(delegate.selectExistingEmails(List.of("alex@gmail.com"))).thenReturn(Set.of("alex@gmail.com"));
+
+        Set<String> actual = underTest.selectExistingEmails(List.of("alex@gmail.com", "new-customer@gmail.com"));
+
+        assertThat(actual).containsExactly("alex@gmail.com");
+    }
+}
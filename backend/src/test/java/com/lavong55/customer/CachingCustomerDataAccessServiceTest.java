@@ -0,0 +1,152 @@
+package com.lavong55.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CachingCustomerDataAccessServiceTest {
+
+    @Mock
+    private CustomerDao delegate;
+    private SimpleMeterRegistry meterRegistry;
+    private CachingCustomerDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new CachingCustomerDataAccessService(delegate, meterRegistry, 100, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void selectCustomerByIdIsReadThrough() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(customer));
+
+        // When
+        underTest.selectCustomerById(1L);
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+
+        // Then
+        assertThat(actual).hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("alex@gmail.com"));
+        verify(delegate, times(1)).selectCustomerById(1L);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "customersById").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void selectUserByEmailSharesEntriesWithId() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(1L);
+
+        // When
+        Optional<Customer> actual = underTest.selectUserByEmail("ALEX@gmail.com");
+
+        // Then
+        assertThat(actual).isPresent();
+        verify(delegate, never()).selectUserByEmail(any());
+    }
+
+    @Test
+    void updateInvalidatesCachedCustomer() {
+        // Given
+        Customer before = new Customer(1L, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        Customer after = new Customer(1L, "Alex", "alex@yahoo.com", "password", 19, Gender.MALE);
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(before))
+                .thenReturn(Optional.of(after));
+        underTest.selectCustomerById(1L);
+
+        // When
+        underTest.updateCustomer(after);
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+
+        // Then
+        assertThat(actual).hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("alex@yahoo.com"));
+        verify(delegate, times(2)).selectCustomerById(1L);
+    }
+
+    @Test
+    void deleteInvalidatesCachedCustomer() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(customer))
+                .thenReturn(Optional.empty());
+        underTest.selectCustomerById(1L);
+
+        // When
+        underTest.deleteCustomerById(1L);
+
+        // Then
+        assertThat(underTest.selectCustomerById(1L)).isEmpty();
+    }
+
+    @Test
+    void cachedCustomerCannotBeMutatedByCallers() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(1L).get().setName("Changed");
+
+        // When
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+
+        // Then
+        assertThat(actual).hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alex"));
+    }
+
+    @Test
+    void updateDuringLoadKeepsStaleRowOutOfCache() {
+        // Given a read that returns the row as it was before a concurrent update
+        Customer before = new Customer(1L, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        Customer after = new Customer(1L, "Alexander", "alex@gmail.com", "password", 19, Gender.MALE);
+        when(delegate.selectCustomerById(1L))
+                .thenAnswer(invocation -> {
+                    underTest.updateCustomer(after);
+                    return Optional.of(before);
+                })
+                .thenReturn(Optional.of(after));
+
+        // When
+        underTest.selectCustomerById(1L);
+        Optional<Customer> actual = underTest.selectCustomerById(1L);
+
+        // Then
+        assertThat(actual).map(Customer::getName).contains("Alexander");
+        verify(delegate, times(2)).selectCustomerById(1L);
+    }
+
+    @Test
+    void deleteDuringEmailLoadKeepsDeletedRowOutOfCache() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        when(delegate.selectUserByEmail("alex@gmail.com"))
+                .thenAnswer(invocation -> {
+                    underTest.deleteCustomerById(1L);
+                    return Optional.of(customer);
+                })
+                .thenReturn(Optional.empty());
+
+        // When
+        underTest.selectUserByEmail("alex@gmail.com");
+        Optional<Customer> actual = underTest.selectUserByEmail("alex@gmail.com");
+
+        // Then
+        assertThat(actual).isEmpty();
+    }
+}
@@ -0,0 +1,121 @@
+package com.lavong55.customer;
+
+import com.lavong55.exception.RequestValidationException;
+import com.lavong55.security.PasswordHasher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerBatchServiceTest {
+
+    @Mock
+    private CustomerDao customerDao;
+    @Mock
+    private PasswordHasher passwordHasher;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    private CustomerBatchService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerBatchService(customerDao, passwordHasher, transactionManager, 3, 2);
+    }
+
+    @Test
+    void addCustomersReportsResultPerItem() {
+        // Given one new customer, one already registered and one repeated inside the batch
+        CustomerRegistrationRequest alex = new CustomerRegistrationRequest(
+                "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        CustomerRegistrationRequest jamila = new CustomerRegistrationRequest(
+                "Jamila", "jamila@gmail.com", "password", 21, Gender.FEMALE);
+        when(customerDao.selectExistingEmails(Set.of("alex@gmail.com", "jamila@gmail.com")))
+                .thenReturn(Set.of("jamila@gmail.com"));
+        when(passwordHasher.encodeAsync("password"))
+                .thenReturn(CompletableFuture.completedFuture("hash"));
+
+        // When
+        List<CustomerBatchResult> actual = underTest.addCustomers(List.of(alex, jamila, alex));
+
+        // Then
+        assertThat(actual).extracting(CustomerBatchResult::status).containsExactly(
+                CustomerBatchResult.Status.CREATED,
+                CustomerBatchResult.Status.DUPLICATE,
+                CustomerBatchResult.Status.DUPLICATE);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Customer>> captor = ArgumentCaptor.forClass(List.class);
+        verify(customerDao).insertCustomers(captor.capture(), eq(2));
+        assertThat(captor.getValue()).singleElement().satisfies(c -> {
+            assertThat(c.getEmail()).isEqualTo("alex@gmail.com");
+            assertThat(c.getPassword()).isEqualTo("hash");
+        });
+    }
+
+    @Test
+    void emailTakenAfterTheCheckIsReportedAsDuplicate() {
+        // Given a registration that lands between the duplicate check and the insert
+        CustomerRegistrationRequest alex = new CustomerRegistrationRequest(
+                "Alex", "Alex@gmail.com", "password", 19, Gender.MALE);
+        CustomerRegistrationRequest jamila = new CustomerRegistrationRequest(
+                "Jamila", "jamila@gmail.com", "password", 21, Gender.FEMALE);
+        when(customerDao.selectExistingEmails(any())).thenReturn(Set.of());
+        when(passwordHasher.encodeAsync("password"))
+                .thenReturn(CompletableFuture.completedFuture("hash"));
+        when(customerDao.insertCustomers(any(), eq(2))).thenReturn(Set.of("alex@gmail.com"));
+
+        // When
+        List<CustomerBatchResult> actual = underTest.addCustomers(List.of(alex, jamila));
+
+        // Then
+        assertThat(actual).extracting(CustomerBatchResult::status).containsExactly(
+                CustomerBatchResult.Status.DUPLICATE,
+                CustomerBatchResult.Status.CREATED);
+        assertThat(actual.get(0).message()).isEqualTo("email already taken");
+    }
+
+    @Test
+    void addCustomersMarksInvalidItemsWithoutHashing() {
+        // Given
+        CustomerRegistrationRequest noName = new CustomerRegistrationRequest(
+                null, "alex@gmail.com", "password", 19, Gender.MALE);
+
+        // When
+        List<CustomerBatchResult> actual = underTest.addCustomers(List.of(noName));
+
+        // Then
+        assertThat(actual).singleElement().satisfies(r -> {
+            assertThat(r.status()).isEqualTo(CustomerBatchResult.Status.INVALID);
+            assertThat(r.message()).isEqualTo("name is required");
+        });
+        verify(passwordHasher, never()).encodeAsync(any());
+        verify(customerDao, never()).insertCustomers(any(), anyInt());
+    }
+
+    @Test
+    void willThrowWhenBatchIsTooLarge() {
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+
+        assertThatThrownBy(() -> underTest.addCustomers(List.of(request, request, request, request)))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("batch size must not exceed 3");
+    }
+}
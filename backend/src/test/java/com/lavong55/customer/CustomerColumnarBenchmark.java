@@ -0,0 +1,151 @@
+package com.lavong55.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+First prints a memory-per-record report: the columnar store's own accounting next to the heap
+retained by the same records as Customer objects in the list DAO. Then runs JMH lookups by id and
+by email against both stores. Records look like real rows: a full name, a unique email and a
+60-byte BCrypt hash.
+
+Run with:
+  mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+      -Dexec.args="-Xmx8g -cp %classpath com.lavong55.customer.CustomerColumnarBenchmark 10000000"
+where the argument is the record count for the memory report.
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class CustomerColumnarBenchmark {
+
+    private static final String BCRYPT_HASH = "$2a$10$N9qo8uLOickgx2ZMRZoMyeIjZAgcfl7p92ldGxad68LJZdL17lhWy";
+
+    @Param({"1000000"})
+    public int records;
+
+    private CustomerColumnarDataAccessService columnar;
+    private CustomerListDataAccessService list;
+    private String[] emails;
+
+    @Setup
+    public void setUp() {
+        columnar = new CustomerColumnarDataAccessService(records, 16 * 1024 * 1024, false);
+        list = new CustomerListDataAccessService();
+        emails = new String[records];
+        for (int i = 0; i < records; i++) {
+            Customer customer = customer(i);
+            emails[i] = customer.getEmail();
+            columnar.load(new Customer(i + 1L, customer.getName(), customer.getEmail(),
+                    customer.getPassword(), customer.getAge(), customer.getGender()));
+            list.insertCustomer(customer);
+        }
+    }
+
+    @Benchmark
+    public Optional<Customer> columnarById() {
+        return columnar.selectCustomerById(1L + ThreadLocalRandom.current().nextInt(records));
+    }
+
+    @Benchmark
+    public Optional<CustomerDTO> columnarDtoById() {
+        return columnar.selectCustomerDTOById(1L + ThreadLocalRandom.current().nextInt(records));
+    }
+
+    @Benchmark
+    public Optional<Customer> columnarByEmail() {
+        return columnar.selectUserByEmail(emails[ThreadLocalRandom.current().nextInt(records)]);
+    }
+
+    @Benchmark
+    public Optional<Customer> listById() {
+        // The list store keeps its two seed customers first.
+        return list.selectCustomerById(3L + ThreadLocalRandom.current().nextInt(records));
+    }
+
+    @Benchmark
+    public Optional<Customer> listByEmail() {
+        return list.selectUserByEmail(emails[ThreadLocalRandom.current().nextInt(records)]);
+    }
+
+    private static Customer customer(int i) {
+        return new Customer(
+                "Customer Number " + i,
+                "customer." + i + "@example.com",
+                BCRYPT_HASH,
+                18 + i % 80,
+                i % 2 == 0 ? Gender.MALE : Gender.FEMALE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        memoryReport(records);
+        new Runner(new OptionsBuilder()
+                .include(CustomerColumnarBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    private static void memoryReport(int records) {
+        long before = usedHeap();
+        CustomerColumnarDataAccessService columnar =
+                new CustomerColumnarDataAccessService(records, 16 * 1024 * 1024, false);
+        for (int i = 0; i < records; i++) {
+            Customer customer = customer(i);
+            columnar.load(new Customer(i + 1L, customer.getName(), customer.getEmail(),
+                    customer.getPassword(), customer.getAge(), customer.getGender()));
+        }
+        long columnarHeap = usedHeap() - before;
+        CustomerColumnarDataAccessService.MemoryStats stats = columnar.memoryStats();
+
+        before = usedHeap();
+        List<Customer> objects = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            Customer customer = customer(i);
+            // Distinct hash strings, as they would be when read from the database.
+            customer.setPassword(new String(BCRYPT_HASH.toCharArray()));
+            objects.add(customer);
+        }
+        long objectHeap = usedHeap() - before;
+
+        System.out.printf("records:                        %,d%n", records);
+        System.out.printf("columnar (store accounting):   %,.1f bytes/record%n", stats.bytesPerRecord());
+        System.out.printf("  columns %,d  indexes %,d  strings %,d (%,d used)%n",
+                stats.columnBytes(), stats.indexBytes(), stats.stringBytes(), stats.stringBytesUsed());
+        System.out.printf("columnar (retained heap):      %,.1f bytes/record%n", (double) columnarHeap / records);
+        System.out.printf("Customer objects (no indexes): %,.1f bytes/record%n", (double) objectHeap / records);
+        // Keep both alive until measured.
+        if (columnar.memoryStats().records() + objects.size() < 0) {
+            System.out.println();
+        }
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,287 @@
+package com.lavong55.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CustomerColumnarDataAccessServiceTest {
+
+    private CustomerColumnarDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        // Tiny capacity so the tests also exercise column and index growth.
+        underTest = new CustomerColumnarDataAccessService(16, Utf8Slab.MAX_LENGTH, false);
+    }
+
+    @Test
+    void insertAndSelectByIdAndEmail() {
+        // Given
+        Customer customer = new Customer("Ana", "Ana@gmail.com", "hash", 20, Gender.FEMALE);
+
+        // When
+        underTest.insertCustomer(customer);
+
+        // Then
+        Customer actual = underTest.selectCustomerById(customer.getId()).orElseThrow();
+        assertThat(actual.getName()).isEqualTo("Ana");
+        assertThat(actual.getEmail()).isEqualTo("Ana@gmail.com");
+        assertThat(actual.getPassword()).isEqualTo("hash");
+        assertThat(actual.getAge()).isEqualTo(20);
+        assertThat(actual.getGender()).isEqualTo(Gender.FEMALE);
+        assertThat(underTest.selectUserByEmail("ana@GMAIL.com"))
+                .map(Customer::getId)
+                .contains(customer.getId());
+    }
+
+    @Test
+    void selectCustomerDTOByIdBuildsTheDtoDirectly() {
+        // Given
+        Customer customer = new Customer("Ana", "ana@gmail.com", "hash", 20, Gender.FEMALE);
+        underTest.insertCustomer(customer);
+
+        // When
+        Optional<CustomerDTO> actual = underTest.selectCustomerDTOById(customer.getId());
+
+        // Then
+        assertThat(actual).contains(new CustomerDTOMapper().apply(customer));
+    }
+
+    @Test
+    void insertRejectsTakenEmailIgnoringCase() {
+        // Given
+        underTest.insertCustomer(new Customer("Ana", "ana@gmail.com", "hash", 20, Gender.FEMALE));
+
+        // When / Then
+        assertThat(underTest.insertCustomerIfEmailAvailable(
+                new Customer("Other", "ANA@gmail.com", "hash", 20, Gender.FEMALE))).isFalse();
+        assertThatThrownBy(() -> underTest.insertCustomer(
+                new Customer("Other", "ana@gmail.com", "hash", 20, Gender.FEMALE)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void growsPastInitialCapacity() {
+        // Given
+        int count = 5_000;
+
+        // When
+        for (int i = 0; i < count; i++) {
+            underTest.insertCustomer(new Customer("C" + i, "c" + i + "@gmail.com", "hash", i % 100, Gender.MALE));
+        }
+
+        // Then
+        assertThat(underTest.selectAllCustomers()).hasSize(count);
+        for (int i = 0; i < count; i += 97) {
+            assertThat(underTest.selectUserByEmail("C" + i + "@gmail.com"))
+                    .map(Customer::getName)
+                    .contains("C" + i);
+        }
+        assertThat(underTest.memoryStats().records()).isEqualTo(count);
+    }
+
+    @Test
+    void deleteRemovesRowFromIndexesAndPages() {
+        // Given
+        Customer first = new Customer("A", "a@gmail.com", "hash", 20, Gender.MALE);
+        Customer second = new Customer("B", "b@gmail.com", "hash", 20, Gender.MALE);
+        Customer third = new Customer("C", "c@gmail.com", "hash", 20, Gender.MALE);
+        underTest.insertCustomer(first);
+        underTest.insertCustomer(second);
+        underTest.insertCustomer(third);
+
+        // When
+        underTest.deleteCustomerById(second.getId());
+
+        // Then
+        assertThat(underTest.existsCustomerWithId(second.getId())).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("b@gmail.com")).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("c@gmail.com")).isTrue();
+        assertThat(underTest.selectCustomers(first.getId(), 10))
+                .extracting(Customer::getId)
+                .containsExactly(third.getId());
+        assertThat(underTest.memoryStats().deletedRecords()).isEqualTo(1);
+    }
+
+    @Test
+    void updateChangedFieldsMovesEmailInIndex() {
+        // Given
+        Customer customer = new Customer("Ana", "ana@gmail.com", "hash", 20, Gender.FEMALE);
+        underTest.insertCustomer(customer);
+        Customer update = new Customer();
+        update.setId(customer.getId());
+        update.setEmail("ana.maria@gmail.com");
+        update.setAge(21);
+
+        // When
+        Optional<Customer> actual = underTest.updateChangedFields(update);
+
+        // Then
+        assertThat(actual).map(Customer::getAge).contains(21);
+        assertThat(underTest.existsCustomerWithEmail("ana@gmail.com")).isFalse();
+        assertThat(underTest.selectUserByEmail("ana.maria@gmail.com")).isPresent();
+        assertThat(underTest.updateChangedFields(update)).isEmpty();
+        assertThat(underTest.memoryStats().stringBytesGarbage()).isEqualTo("ana@gmail.com".length());
+    }
+
+    @Test
+    void updateToTakenEmailThrowsAndLeavesRowUntouched() {
+        // Given
+        underTest.insertCustomer(new Customer("Ana", "ana@gmail.com", "hash", 20, Gender.FEMALE));
+        Customer ben = new Customer("Ben", "ben@gmail.com", "hash", 30, Gender.MALE);
+        underTest.insertCustomer(ben);
+        Customer update = new Customer();
+        update.setId(ben.getId());
+        update.setEmail("ANA@gmail.com");
+
+        // When / Then
+        assertThatThrownBy(() -> underTest.updateChangedFields(update))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectUserByEmail("ben@gmail.com")).isPresent();
+    }
+
+    @Test
+    void updatePasswordReplacesHash() {
+        // Given
+        underTest.insertCustomer(new Customer("Ana", "ana@gmail.com", "old", 20, Gender.FEMALE));
+
+        // When
+        underTest.updatePassword("ANA@gmail.com", "new");
+
+        // Then
+        assertThat(underTest.selectUserByEmail("ana@gmail.com"))
+                .map(Customer::getPassword)
+                .contains("new");
+    }
+
+    @Test
+    void offHeapStoreRoundTripsUtf8() {
+        // Given
+        CustomerColumnarDataAccessService offHeap =
+                new CustomerColumnarDataAccessService(16, Utf8Slab.MAX_LENGTH, true);
+        Customer customer = new Customer("Zoë Ångström", "zoe@gmail.com", "hash", 33, Gender.FEMALE);
+
+        // When
+        offHeap.insertCustomer(customer);
+
+        // Then
+        assertThat(offHeap.selectCustomerById(customer.getId()))
+                .map(Customer::getName)
+                .contains("Zoë Ångström");
+        assertThat(offHeap.memoryStats().offHeap()).isTrue();
+    }
+
+    @Test
+    void loadKeepsIdsAndRequiresAscendingOrder() {
+        // Given
+        underTest.load(new Customer(10L, "Ana", "ana@gmail.com", "hash", 20, Gender.FEMALE));
+
+        // When
+        Customer inserted = new Customer("Ben", "ben@gmail.com", "hash", 30, Gender.MALE);
+        underTest.insertCustomer(inserted);
+
+        // Then
+        assertThat(inserted.getId()).isEqualTo(11L);
+        assertThatThrownBy(() -> underTest.load(
+                new Customer(5L, "Cy", "cy@gmail.com", "hash", 40, Gender.MALE)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(underTest.selectCustomers(null, 10))
+                .extracting(Customer::getId)
+                .containsExactly(10L, 11L);
+    }
+
+    @Test
+    void replicaWritesGoToTheDatabaseAndKeepItsIds() {
+        // Given
+        CustomerDao source = mock(CustomerDao.class);
+        CustomerColumnarDataAccessService replica =
+                new CustomerColumnarDataAccessService(source, 16, Utf8Slab.MAX_LENGTH, false);
+        when(source.insertCustomerIfEmailAvailable(any())).thenAnswer(invocation -> {
+            Customer customer = invocation.getArgument(0);
+            customer.setId(42L);
+            return true;
+        });
+        Customer customer = new Customer("Ana", "ana@gmail.com", "hash", 20, Gender.FEMALE);
+
+        // When
+        replica.insertCustomer(customer);
+
+        // Then
+        assertThat(customer.getId()).isEqualTo(42L);
+        assertThat(replica.selectUserByEmail("ana@gmail.com")).map(Customer::getId).contains(42L);
+    }
+
+    @Test
+    void replicaOnlyMirrorsWritesTheDatabaseAccepted() {
+        // Given
+        CustomerDao source = mock(CustomerDao.class);
+        CustomerColumnarDataAccessService replica =
+                new CustomerColumnarDataAccessService(source, 16, Utf8Slab.MAX_LENGTH, false);
+        replica.load(new Customer(1L, "Ana", "ana@gmail.com", "hash", 20, Gender.FEMALE));
+        Customer update = new Customer();
+        update.setId(1L);
+        update.setName("Ana Maria");
+        when(source.insertCustomerIfEmailAvailable(any())).thenReturn(false);
+        when(source.updateChangedFields(update)).thenReturn(Optional.empty());
+
+        // When
+        boolean inserted = replica.insertCustomerIfEmailAvailable(
+                new Customer("Ben", "ben@gmail.com", "hash", 30, Gender.MALE));
+        Optional<Customer> updated = replica.updateChangedFields(update);
+
+        // Then
+        assertThat(inserted).isFalse();
+        assertThat(updated).isEmpty();
+        assertThat(replica.existsCustomerWithEmail("ben@gmail.com")).isFalse();
+        assertThat(replica.selectCustomerById(1L)).map(Customer::getName).contains("Ana");
+    }
+
+    @Test
+    void replicaDropsLocalRowThatStillHoldsAnAcceptedEmail() {
+        // Given
+        CustomerDao source = mock(CustomerDao.class);
+        CustomerColumnarDataAccessService replica =
+                new CustomerColumnarDataAccessService(source, 16, Utf8Slab.MAX_LENGTH, false);
+        replica.load(new Customer(1L, "Ana", "ana@gmail.com", "hash", 20, Gender.FEMALE));
+        replica.load(new Customer(2L, "Ben", "ben@gmail.com", "hash", 30, Gender.MALE));
+        Customer update = new Customer();
+        update.setId(2L);
+        update.setEmail("ana@gmail.com");
+        // Ana was deleted on another instance, so the database lets Ben take the email.
+        when(source.updateChangedFields(update)).thenReturn(Optional.of(
+                new Customer(2L, "Ben", "ana@gmail.com", "hash", 30, Gender.MALE)));
+
+        // When
+        replica.updateChangedFields(update);
+
+        // Then
+        assertThat(replica.selectUserByEmail("ana@gmail.com")).map(Customer::getId).contains(2L);
+        assertThat(replica.existsCustomerWithId(1L)).isFalse();
+    }
+
+    @Test
+    void forEachEmailVisitsLiveRows() {
+        // Given
+        Customer ana = new Customer("Ana", "ana@gmail.com", "hash", 20, Gender.FEMALE);
+        underTest.insertCustomer(ana);
+        underTest.insertCustomer(new Customer("Ben", "ben@gmail.com", "hash", 30, Gender.MALE));
+        underTest.deleteCustomerById(ana.getId());
+
+        // When
+        List<String> actual = new ArrayList<>();
+        underTest.forEachEmail(actual::add);
+
+        // Then
+        assertThat(actual).containsExactly("ben@gmail.com");
+    }
+}
@@ -0,0 +1,127 @@
+package com.lavong55.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lavong55.jwt.RefreshTokenService;
+import com.lavong55.jwt.TokenPair;
+import com.lavong55.security.AdminAccess;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerControllerTest {
+
+    @Mock
+    private CustomerService customerService;
+    @Mock
+    private CustomerBatchService customerBatchService;
+    @Mock
+    private CustomerImportService customerImportService;
+    @Mock
+    private CustomerCsvExportService customerCsvExportService;
+    @Mock
+    private RefreshTokenService refreshTokenService;
+    private CustomerController underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerController(customerService, customerBatchService, customerImportService,
+                customerCsvExportService, new AdminAccess(List.of("ops@gmail.com")), refreshTokenService,
+                new ObjectMapper());
+    }
+
+    @Test
+    void registrationReturnsAnAccessAndRefreshToken() {
+        // Given
+        CustomerRegistrationRequest request =
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        TokenPair tokens = new TokenPair("access", "refresh");
+        when(customerService.addCustomer(request)).thenReturn(5L);
+        when(refreshTokenService.issue(5L, "alex@gmail.com", List.of("ROLE_USER"))).thenReturn(tokens);
+
+        // When
+        ResponseEntity<TokenPair> response = underTest.registerCustomer(request);
+
+        // Then
+        assertThat(response.getHeaders().getFirst(HttpHeaders.AUTHORIZATION)).isEqualTo("access");
+        assertThat(response.getBody()).isEqualTo(tokens);
+    }
+
+    @Test
+    void csvExportIsForbiddenToRegularCustomers() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.exportCustomersAsCsv(
+                "gzip", customer("alex@gmail.com"), new MockHttpServletResponse()))
+                .isInstanceOf(AccessDeniedException.class);
+        verifyNoInteractions(customerCsvExportService);
+    }
+
+    @Test
+    void csvExportHonoursARefusedGzip() throws Exception {
+        // Given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        underTest.exportCustomersAsCsv("gzip;q=0, identity", customer("ops@gmail.com"), response);
+
+        // Then
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        verify(customerCsvExportService).exportCsv(any());
+    }
+
+    @Test
+    void revokingSessionsIsForbiddenToRegularCustomers() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.revokeSessions(2L, customer("alex@gmail.com")))
+                .isInstanceOf(AccessDeniedException.class);
+        verifyNoInteractions(customerService);
+    }
+
+    @Test
+    void operatorCanRevokeSessions() {
+        // When
+        underTest.revokeSessions(2L, customer("ops@gmail.com"));
+
+        // Then
+        verify(customerService).revokeSessions(2L);
+    }
+
+    @Test
+    void acceptsGzipParsesQValues() {
+        assertThat(CustomerController.acceptsGzip("gzip, deflate")).isTrue();
+        assertThat(CustomerController.acceptsGzip("deflate, GZIP;q=0.5")).isTrue();
+        assertThat(CustomerController.acceptsGzip("*")).isTrue();
+        assertThat(CustomerController.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(CustomerController.acceptsGzip("gzip; q=0.0")).isFalse();
+        assertThat(CustomerController.acceptsGzip("*, gzip;q=0")).isFalse();
+        assertThat(CustomerController.acceptsGzip("*;q=0")).isFalse();
+        assertThat(CustomerController.acceptsGzip("identity")).isFalse();
+        assertThat(CustomerController.acceptsGzip(null)).isFalse();
+    }
+
+    private static UsernamePasswordAuthenticationToken customer(String email) {
+        List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+        return new UsernamePasswordAuthenticationToken(
+                new CustomerPrincipal(1L, email, authorities), null, authorities);
+    }
+}
@@ -0,0 +1,42 @@
+package com.lavong55.customer;
+
+import com.lavong55.AbstractTestContainers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerCsvExportServiceTest extends AbstractTestContainers {
+
+    private CustomerCsvExportService underTest;
+    private CustomerJDBCDataAccessService customerDao;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerCsvExportService(getJdbcTemplate());
+        customerDao = new CustomerJDBCDataAccessService(getJdbcTemplate(), new CustomerRowMapper());
+    }
+
+    @Test
+    void exportCsvWritesEveryRowWithoutPasswords() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        customerDao.insertCustomer(new Customer(
+                "Alex", email, "secret-hash", 20, Gender.MALE));
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = underTest.exportCsv(out);
+
+        // Then
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertThat(rows).isEqualTo(customerDao.selectAllCustomers().size());
+        assertThat(csv).startsWith("id,name,email,age,gender\n");
+        assertThat(csv).contains(",Alex," + email + ",20,MALE");
+        assertThat(csv).doesNotContain("secret-hash");
+    }
+}
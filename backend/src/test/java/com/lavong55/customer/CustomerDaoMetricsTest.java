@@ -0,0 +1,66 @@
+package com.lavong55.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.dao.DuplicateKeyException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerDaoMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Object proxy;
+
+    @BeforeEach
+    void setUp() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("meterRegistry", meterRegistry);
+        CustomerDaoMetrics underTest = new CustomerDaoMetrics(beanFactory.getBeanProvider(MeterRegistry.class));
+        underTest.setBeanFactory(beanFactory);
+        proxy = underTest.postProcessAfterInitialization(new CustomerListDataAccessService(), "list");
+    }
+
+    @Test
+    void proxyKeepsConcreteType() {
+        assertThat(proxy).isInstanceOf(CustomerListDataAccessService.class);
+    }
+
+    @Test
+    void successfulCallsAreTimedPerDaoAndMethod() {
+        // Given
+        CustomerDao dao = (CustomerDao) proxy;
+
+        // When
+        dao.selectCustomerById(1L);
+        dao.selectCustomerById(2L);
+
+        // Then
+        assertThat(meterRegistry.get("customer.dao")
+                .tags("dao", "list", "method", "selectCustomerById", "outcome", "success", "exception", "none")
+                .timer()
+                .count()).isEqualTo(2);
+    }
+
+    @Test
+    void failedCallsAreTaggedWithException() {
+        // Given
+        CustomerDao dao = (CustomerDao) proxy;
+        dao.insertCustomer(new Customer("Ana", "ana@gmail.com", "password", 20, Gender.FEMALE));
+
+        // When
+        assertThatThrownBy(() -> dao.insertCustomer(
+                new Customer("Ana", "ANA@gmail.com", "password", 20, Gender.FEMALE)))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        // Then
+        assertThat(meterRegistry.get("customer.dao")
+                .tags("dao", "list", "method", "insertCustomer", "outcome", "error",
+                        "exception", "DuplicateKeyException")
+                .timer()
+                .count()).isEqualTo(1);
+    }
+}
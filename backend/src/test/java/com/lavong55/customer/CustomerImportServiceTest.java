@@ -0,0 +1,104 @@
+package com.lavong55.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lavong55.AbstractTestContainers;
+import com.lavong55.security.PasswordHasher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerImportServiceTest extends AbstractTestContainers {
+
+    private CustomerImportService underTest;
+    private PasswordHasher passwordHasher;
+    private CustomerJDBCDataAccessService customerDao;
+    private BloomFilterCustomerDataAccessService emailFilter;
+
+    @BeforeEach
+    void setUp() {
+        passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(4), 2, 64, Duration.ofSeconds(1), new SimpleMeterRegistry());
+        customerDao = new CustomerJDBCDataAccessService(getJdbcTemplate(), new CustomerRowMapper());
+        emailFilter = new BloomFilterCustomerDataAccessService(customerDao, 1_000, 0.01, Duration.ofHours(1));
+        emailFilter.rebuild();
+        // Small chunk size so the test crosses chunk boundaries.
+        underTest = new CustomerImportService(getJdbcTemplate(), passwordHasher, new ObjectMapper(), emailFilter, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHasher.shutdown();
+        emailFilter.shutdown();
+    }
+
+    @Test
+    void importCsvReportsInvalidAndDuplicateRows() {
+        // Given one already registered email, one repeated row and one invalid row
+        String existing = "existing-" + UUID.randomUUID() + "@gmail.com";
+        customerDao.insertCustomer(new Customer("Existing", existing, "password", 30, Gender.MALE));
+        String alex = "alex-" + UUID.randomUUID() + "@gmail.com";
+        String jamila = "jamila-" + UUID.randomUUID() + "@gmail.com";
+        String csv = """
+                name,email,password,age,gender
+                "Alex, Jr",%s,password,19,MALE
+                Jamila,%s,password,21,female
+                Again,%s,password,22,MALE
+                Existing,%s,password,30,MALE
+                NoAge,nobody@gmail.com,password,,MALE
+                """.formatted(alex, jamila, alex, existing);
+
+        // When
+        CustomerImportResult actual = underTest.importCustomers(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                CustomerImportService.Format.CSV);
+
+        // Then
+        assertThat(actual.rowsRead()).isEqualTo(5);
+        assertThat(actual.imported()).isEqualTo(2);
+        assertThat(actual.invalid()).isEqualTo(1);
+        assertThat(actual.duplicates()).isEqualTo(2);
+        assertThat(actual.errors()).hasSize(3);
+        assertThat(customerDao.selectUserByEmail(alex)).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("Alex, Jr");
+            assertThat(c.getPassword()).startsWith("$2a$");
+        });
+        assertThat(customerDao.selectUserByEmail(jamila))
+                .hasValueSatisfying(c -> assertThat(c.getGender()).isEqualTo(Gender.FEMALE));
+    }
+
+    @Test
+    void importNdjson() {
+        // Given
+        String email = "ndjson-" + UUID.randomUUID() + "@gmail.com";
+        String ndjson = """
+                {"name":"Alex","email":"%s","password":"password","age":19,"gender":"MALE"}
+                not json
+                """.formatted(email);
+
+        // When
+        CustomerImportResult actual = underTest.importCustomers(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)),
+                CustomerImportService.Format.NDJSON);
+
+        // Then
+        assertThat(actual.imported()).isEqualTo(1);
+        assertThat(actual.invalid()).isEqualTo(1);
+        assertThat(customerDao.existsCustomerWithEmail(email)).isTrue();
+        assertThat(emailFilter.existsCustomerWithEmail(email)).isTrue();
+        assertThat(emailFilter.stats().definitelyAbsent()).isZero();
+    }
+
+    @Test
+    void parseCsvLineHandlesQuotedFields() {
+        assertThat(CustomerImportService.parseCsvLine("\"a, \"\"b\"\"\",c,,d"))
+                .containsExactly("a, \"b\"", "c", "", "d");
+    }
+}
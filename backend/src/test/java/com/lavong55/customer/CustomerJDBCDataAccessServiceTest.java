@@ -3,12 +3,16 @@ package com.lavong55.customer;
 import com.lavong55.AbstractTestContainers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
 
@@ -40,6 +44,49 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
         assertThat(actual).isNotEmpty();
     }
 
+    @Test
+    void selectCustomersAfterCursor() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    "password", 20,
+                    Gender.MALE));
+        }
+        List<Customer> firstPage = underTest.selectCustomers(null, 2);
+        long cursor = firstPage.get(firstPage.size() - 1).getId();
+
+        // When
+        List<Customer> actual = underTest.selectCustomers(cursor, 2);
+
+        // Then
+        assertThat(firstPage).hasSize(2);
+        assertThat(actual).isNotEmpty().hasSizeLessThanOrEqualTo(2)
+                .allSatisfy(c -> assertThat(c.getId()).isGreaterThan(cursor));
+        assertThat(actual).extracting(Customer::getId).isSorted();
+    }
+
+    @Test
+    void forEachCustomerStreamsAllRows() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                email,
+                "password", 20,
+                Gender.MALE));
+
+        // When
+        List<Customer> streamed = new ArrayList<>();
+        underTest.forEachCustomer(streamed::add);
+
+        // Then
+        assertThat(streamed).hasSize(underTest.selectAllCustomers().size());
+        assertThat(streamed).extracting(Customer::getId).isSorted();
+        assertThat(streamed).anyMatch(c -> c.getEmail().equals(email));
+    }
+
     @Test
     void selectCustomerById() {
         // Given
@@ -376,4 +423,181 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainers {
             assertThat(c.getEmail()).isEqualTo(customer.getEmail());
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateChangedFieldsReturnsUpdatedRow() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                "password", 20,
+                Gender.MALE);
+
+        underTest.insertCustomer(customer);
+
+        long id = underTest.selectUserByEmail(email)
+                .map(Customer::getId)
+                .orElseThrow();
+
+        // When
+        Customer update = new Customer();
+        update.setId(id);
+        update.setName("foo");
+        update.setAge(customer.getAge());
+
+        Optional<Customer> actual = underTest.updateChangedFields(update);
+
+        // Then
+        assertThat(actual).isPresent().hasValueSatisfying(c -> {
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getName()).isEqualTo("foo");
+            assertThat(c.getEmail()).isEqualTo(email);
+            assertThat(c.getAge()).isEqualTo(customer.getAge());
+        });
+    }
+
+    @Test
+    void updateChangedFieldsWritesNothingWhenValuesAreUnchanged() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                "password", 20,
+                Gender.MALE);
+
+        underTest.insertCustomer(customer);
+
+        long id = underTest.selectUserByEmail(email)
+                .map(Customer::getId)
+                .orElseThrow();
+
+        // When
+        Customer update = new Customer();
+        update.setId(id);
+        update.setName(customer.getName());
+        update.setEmail(email);
+
+        // Then
+        assertThat(underTest.updateChangedFields(update)).isEmpty();
+    }
+
+    @Test
+    void updateChangedFieldsThrowsWhenEmailIsTaken() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String otherEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(), email, "password", 20, Gender.MALE));
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(), otherEmail, "password", 20, Gender.MALE));
+
+        long id = underTest.selectUserByEmail(email)
+                .map(Customer::getId)
+                .orElseThrow();
+
+        // When
+        Customer update = new Customer();
+        update.setId(id);
+        update.setEmail(otherEmail);
+
+        // Then
+        assertThatThrownBy(() -> underTest.updateChangedFields(update))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectCustomerById(id))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo(email));
+    }
+
+    @Test
+    void insertCustomersInBatchesAndSelectExistingEmails() {
+        // Given
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            customers.add(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    "password", 20,
+                    Gender.FEMALE));
+        }
+        String unknownEmail = "unknown-" + UUID.randomUUID();
+
+        // When
+        Set<String> skipped = underTest.insertCustomers(customers, 2);
+
+        // Then
+        assertThat(skipped).isEmpty();
+        List<String> emails = new ArrayList<>(customers.stream().map(Customer::getEmail).toList());
+        emails.add(unknownEmail);
+        assertThat(underTest.selectExistingEmails(emails))
+                .containsExactlyInAnyOrderElementsOf(emails.subList(0, 5));
+    }
+
+    @Test
+    void insertCustomersSkipsTakenEmailsAndReturnsThem() {
+        // Given
+        String taken = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer("Taken", taken, "password", 20, Gender.MALE));
+        String available = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        List<Customer> customers = List.of(
+                new Customer("Again", taken.toUpperCase(), "password", 21, Gender.MALE),
+                new Customer("New", available, "password", 22, Gender.FEMALE));
+
+        // When
+        Set<String> skipped = underTest.insertCustomers(customers, 2);
+
+        // Then
+        assertThat(skipped).containsExactly(taken.toLowerCase());
+        assertThat(underTest.selectUserByEmail(available)).isPresent();
+        assertThat(underTest.selectUserByEmail(taken))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Taken"));
+    }
+
+    @Test
+    void updateNamesAndAgesWritesBatchAndSkipsMissingIds() {
+        // Given
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+            underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(), email, "password", 20, Gender.FEMALE));
+            Customer stored = underTest.selectUserByEmail(email).orElseThrow();
+            stored.setName("Renamed " + i);
+            stored.setAge(30 + i);
+            customers.add(stored);
+        }
+        customers.add(new Customer(-1L, "Nobody", "nobody@example.com", "password", 40, Gender.MALE));
+
+        // When
+        underTest.updateNamesAndAges(customers, 2);
+
+        // Then
+        for (int i = 0; i < 3; i++) {
+            Customer expected = customers.get(i);
+            assertThat(underTest.selectCustomerById(expected.getId())).hasValueSatisfying(c -> {
+                assertThat(c.getName()).isEqualTo(expected.getName());
+                assertThat(c.getAge()).isEqualTo(expected.getAge());
+                assertThat(c.getEmail()).isEqualTo(expected.getEmail());
+            });
+        }
+    }
+
+    @Test
+    void insertCustomerIfEmailAvailableRejectsSameEmailInAnyCase() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(), email, "password", 20, Gender.MALE);
+
+        // When
+        boolean first = underTest.insertCustomerIfEmailAvailable(customer);
+        boolean second = underTest.insertCustomerIfEmailAvailable(new Customer(
+                FAKER.name().fullName(), email.toUpperCase(), "password", 20, Gender.MALE));
+
+        // Then
+        assertThat(first).isTrue();
+        assertThat(customer.getId()).isNotNull();
+        assertThat(second).isFalse();
+        assertThat(underTest.existsCustomerWithEmail(email.toUpperCase())).isTrue();
+    }
+}
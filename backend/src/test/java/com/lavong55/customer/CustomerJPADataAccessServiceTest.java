@@ -5,6 +5,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
 import static org.mockito.Mockito.verify;
 
@@ -37,6 +39,20 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).findAll();
     }
 
+    @Test
+    void selectCustomers() {
+        // Given
+        long after = 5;
+        int limit = 10;
+
+        // When
+        underTest.selectCustomers(after, limit);
+
+        // Then
+        verify(customerRepository).findByIdGreaterThan(
+                after, PageRequest.of(0, limit, Sort.by("id")));
+    }
+
     @Test
     void selectCustomerById() {
         // Given
@@ -112,4 +128,16 @@ class CustomerJPADataAccessServiceTest {
         // Then
         verify(customerRepository).save(customer);
     }
-}
\ No newline at end of file
+
+    @Test
+    void updatePassword() {
+        // Given
+        String email = "j@gmail.com";
+
+        // When
+        underTest.updatePassword(email, "{bcrypt}hash");
+
+        // Then
+        verify(customerRepository).updatePassword(email, "{bcrypt}hash");
+    }
+}
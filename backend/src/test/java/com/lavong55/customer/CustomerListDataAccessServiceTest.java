@@ -0,0 +1,273 @@
+package com.lavong55.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerListDataAccessServiceTest {
+
+    private CustomerListDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerListDataAccessService();
+    }
+
+    @Test
+    void insertAssignsIncreasingIds() {
+        // Given
+        Customer first = new Customer("Ana", "ana@gmail.com", "password", 20, Gender.FEMALE);
+        Customer second = new Customer("Ben", "ben@gmail.com", "password", 30, Gender.MALE);
+
+        // When
+        underTest.insertCustomer(first);
+        underTest.insertCustomer(second);
+
+        // Then
+        assertThat(first.getId()).isNotNull();
+        assertThat(second.getId()).isGreaterThan(first.getId());
+        assertThat(underTest.selectCustomerById(second.getId()))
+                .map(Customer::getEmail)
+                .contains("ben@gmail.com");
+    }
+
+    @Test
+    void insertRejectsEmailTakenIgnoringCase() {
+        // Given
+        underTest.insertCustomer(new Customer("Ana", "ana@gmail.com", "password", 20, Gender.FEMALE));
+
+        // When
+        boolean inserted = underTest.insertCustomerIfEmailAvailable(
+                new Customer("Other", "ANA@gmail.com", "password", 40, Gender.FEMALE));
+
+        // Then
+        assertThat(inserted).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("Ana@Gmail.com")).isTrue();
+        assertThatThrownBy(() -> underTest.insertCustomer(
+                new Customer("Other", "ana@gmail.com", "password", 40, Gender.FEMALE)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void updateCustomerReplacesInsteadOfAppending() {
+        // Given
+        Customer customer = new Customer("Ana", "ana@gmail.com", "password", 20, Gender.FEMALE);
+        underTest.insertCustomer(customer);
+        int count = underTest.selectAllCustomers().size();
+
+        // When
+        underTest.updateCustomer(new Customer(
+                customer.getId(), "Ana Maria", "ana.maria@gmail.com", "password", 21, Gender.FEMALE));
+
+        // Then
+        assertThat(underTest.selectAllCustomers()).hasSize(count);
+        assertThat(underTest.selectCustomerById(customer.getId()))
+                .map(Customer::getName)
+                .contains("Ana Maria");
+        assertThat(underTest.existsCustomerWithEmail("ana@gmail.com")).isFalse();
+        assertThat(underTest.selectUserByEmail("ana.maria@gmail.com")).isPresent();
+    }
+
+    @Test
+    void updateCustomerOnlyWritesNonNullFields() {
+        // Given
+        Customer customer = new Customer("Ana", "ana@gmail.com", "password", 20, Gender.FEMALE);
+        underTest.insertCustomer(customer);
+        Customer update = new Customer();
+        update.setId(customer.getId());
+        update.setAge(21);
+
+        // When
+        underTest.updateCustomer(update);
+
+        // Then
+        assertThat(underTest.selectCustomerById(customer.getId())).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("Ana");
+            assertThat(c.getEmail()).isEqualTo("ana@gmail.com");
+            assertThat(c.getPassword()).isEqualTo("password");
+            assertThat(c.getAge()).isEqualTo(21);
+        });
+    }
+
+    @Test
+    void updateNamesAndAgesKeepsTheOtherFields() {
+        // Given
+        Customer customer = new Customer("Ana", "ana@gmail.com", "password", 20, Gender.FEMALE);
+        underTest.insertCustomer(customer);
+
+        // When
+        underTest.updateNamesAndAges(List.of(
+                new Customer(customer.getId(), "Ana Maria", null, null, 21, null),
+                new Customer(customer.getId() + 100, "Missing", null, null, 30, null)), 10);
+
+        // Then
+        assertThat(underTest.selectCustomerById(customer.getId())).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("Ana Maria");
+            assertThat(c.getAge()).isEqualTo(21);
+            assertThat(c.getEmail()).isEqualTo("ana@gmail.com");
+            assertThat(c.getPassword()).isEqualTo("password");
+            assertThat(c.getGender()).isEqualTo(Gender.FEMALE);
+        });
+        assertThat(underTest.selectUserByEmail("ana@gmail.com")).isPresent();
+    }
+
+    @Test
+    void updateChangedFieldsReturnsEmptyWhenNothingChanged() {
+        // Given
+        Customer customer = new Customer("Ana", "ana@gmail.com", "password", 20, Gender.FEMALE);
+        underTest.insertCustomer(customer);
+        Customer update = new Customer();
+        update.setId(customer.getId());
+        update.setName("Ana");
+
+        // When
+        Optional<Customer> actual = underTest.updateChangedFields(update);
+
+        // Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void updateChangedFieldsToTakenEmailLeavesBothCustomersUntouched() {
+        // Given
+        Customer ana = new Customer("Ana", "ana@gmail.com", "password", 20, Gender.FEMALE);
+        Customer ben = new Customer("Ben", "ben@gmail.com", "password", 30, Gender.MALE);
+        underTest.insertCustomer(ana);
+        underTest.insertCustomer(ben);
+        Customer update = new Customer();
+        update.setId(ben.getId());
+        update.setName("Benjamin");
+        update.setEmail("ANA@gmail.com");
+
+        // When / Then
+        assertThatThrownBy(() -> underTest.updateChangedFields(update))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectCustomerById(ben.getId()))
+                .map(Customer::getName)
+                .contains("Ben");
+        assertThat(underTest.selectUserByEmail("ben@gmail.com")).isPresent();
+        assertThat(underTest.selectUserByEmail("ana@gmail.com"))
+                .map(Customer::getId)
+                .contains(ana.getId());
+    }
+
+    @Test
+    void deleteFreesTheEmail() {
+        // Given
+        Customer customer = new Customer("Ana", "ana@gmail.com", "password", 20, Gender.FEMALE);
+        underTest.insertCustomer(customer);
+
+        // When
+        underTest.deleteCustomerById(customer.getId());
+
+        // Then
+        assertThat(underTest.existsCustomerWithId(customer.getId())).isFalse();
+        assertThat(underTest.insertCustomerIfEmailAvailable(
+                new Customer("Ana", "ana@gmail.com", "password", 20, Gender.FEMALE))).isTrue();
+    }
+
+    @Test
+    void updatePasswordReplacesHash() {
+        // Given
+        underTest.insertCustomer(new Customer("Ana", "ana@gmail.com", "old", 20, Gender.FEMALE));
+
+        // When
+        underTest.updatePassword("ANA@gmail.com", "new");
+
+        // Then
+        assertThat(underTest.selectUserByEmail("ana@gmail.com"))
+                .map(Customer::getPassword)
+                .contains("new");
+    }
+
+    @Test
+    void selectCustomersPagesInIdOrder() {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            underTest.insertCustomer(new Customer("C" + i, "c" + i + "@gmail.com", "password", 20, Gender.MALE));
+        }
+        List<Customer> firstPage = underTest.selectCustomers(null, 3);
+
+        // When
+        List<Customer> secondPage = underTest.selectCustomers(firstPage.get(2).getId(), 3);
+
+        // Then
+        assertThat(firstPage).extracting(Customer::getId).isSorted();
+        assertThat(secondPage).extracting(Customer::getId).isSorted()
+                .allMatch(id -> id > firstPage.get(2).getId());
+    }
+
+    @Test
+    void selectExistingEmailsUsesTheIndex() {
+        // When
+        Set<String> actual = underTest.selectExistingEmails(List.of("ALEX@gmail.com", "nobody@gmail.com"));
+
+        // Then
+        assertThat(actual).containsExactly("alex@gmail.com");
+    }
+
+    @Test
+    void returnedCustomersAreCopies() {
+        // Given
+        Customer customer = new Customer("Ana", "ana@gmail.com", "password", 20, Gender.FEMALE);
+        underTest.insertCustomer(customer);
+
+        // When
+        underTest.selectCustomerById(customer.getId()).orElseThrow().setName("Changed");
+        customer.setName("Changed too");
+
+        // Then
+        assertThat(underTest.selectCustomerById(customer.getId()))
+                .map(Customer::getName)
+                .contains("Ana");
+    }
+
+    @Test
+    void concurrentInsertsOfTheSameEmailHaveOneWinner() throws Exception {
+        // Given
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Boolean>> inserts = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            inserts.add(() -> {
+                start.await();
+                return underTest.insertCustomerIfEmailAvailable(
+                        new Customer("Ana", "race@gmail.com", "password", 20, Gender.FEMALE));
+            });
+        }
+
+        // When
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (Callable<Boolean> insert : inserts) {
+            results.add(executor.submit(insert));
+        }
+        start.countDown();
+        int winners = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                winners++;
+            }
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(winners).isEqualTo(1);
+        assertThat(underTest.selectAllCustomers())
+                .filteredOn(customer -> customer.getEmail().equals("race@gmail.com"))
+                .hasSize(1);
+    }
+}
@@ -0,0 +1,104 @@
+package com.lavong55.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerPrincipalStoreTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    private CustomerPrincipalStore underTest;
+
+    private final CustomerPrincipal alex = new CustomerPrincipal(
+            1L, "alex@gmail.com", List.of(new SimpleGrantedAuthority("ROLE_USER")));
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerPrincipalStore(jdbcTemplate, new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void loadPrincipalQueriesOnlyOnce() {
+        // Given
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("alex@gmail.com")))
+                .thenReturn(List.of(alex));
+
+        // When
+        underTest.loadPrincipal("alex@gmail.com");
+        CustomerPrincipal actual = underTest.loadPrincipal("ALEX@gmail.com");
+
+        // Then
+        assertThat(actual).isEqualTo(alex);
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowMapper.class), eq("alex@gmail.com"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void evictForcesReload() {
+        // Given
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("alex@gmail.com")))
+                .thenReturn(List.of(alex));
+        underTest.loadPrincipal("alex@gmail.com");
+
+        // When
+        underTest.evict(1L);
+        underTest.loadPrincipal("alex@gmail.com");
+
+        // Then
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowMapper.class), eq("alex@gmail.com"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void unknownEmailThrows() {
+        // Given
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("jamila@gmail.com")))
+                .thenReturn(List.of());
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.loadPrincipal("jamila@gmail.com"))
+                .isInstanceOf(UsernameNotFoundException.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void evictDuringLoadIsNotOverwritten() {
+        // Given the customer is deleted while their principal is being queried
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("alex@gmail.com")))
+                .thenAnswer(invocation -> {
+                    underTest.evict(1L);
+                    return List.of(alex);
+                })
+                .thenReturn(List.of());
+
+        // When
+        underTest.loadPrincipal("alex@gmail.com");
+
+        // Then the stale principal was not kept
+        assertThatThrownBy(() -> underTest.loadPrincipal("alex@gmail.com"))
+                .isInstanceOf(UsernameNotFoundException.class);
+    }
+}
@@ -0,0 +1,134 @@
+package com.lavong55.customer;
+
+import com.lavong55.AbstractTestContainers;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerR2dbcDataAccessServiceTest extends AbstractTestContainers {
+
+    private CustomerR2dbcDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.builder()
+                .option(ConnectionFactoryOptions.DRIVER, "postgresql")
+                .option(ConnectionFactoryOptions.HOST, postgreSQLContainer.getHost())
+                .option(ConnectionFactoryOptions.PORT, postgreSQLContainer.getFirstMappedPort())
+                .option(ConnectionFactoryOptions.DATABASE, postgreSQLContainer.getDatabaseName())
+                .option(ConnectionFactoryOptions.USER, postgreSQLContainer.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, postgreSQLContainer.getPassword())
+                .build();
+        // A tiny fetch size so streaming the table takes several round trips.
+        underTest = new CustomerR2dbcDataAccessService(
+                DatabaseClient.create(ConnectionFactories.get(options)), 2);
+    }
+
+    private Customer newCustomer() {
+        return new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                "password", 20,
+                Gender.MALE);
+    }
+
+    @Test
+    void insertAndSelectCustomerById() {
+        // Given
+        Customer customer = newCustomer();
+
+        // When
+        Long id = underTest.insertCustomerIfEmailAvailable(customer).block();
+        Customer actual = underTest.selectCustomerById(id).block();
+
+        // Then
+        assertThat(actual).isNotNull();
+        assertThat(actual.getId()).isEqualTo(id);
+        assertThat(actual.getEmail()).isEqualTo(customer.getEmail());
+        assertThat(actual.getGender()).isEqualTo(Gender.MALE);
+    }
+
+    @Test
+    void insertWithTakenEmailCompletesEmpty() {
+        // Given
+        Customer customer = newCustomer();
+        underTest.insertCustomerIfEmailAvailable(customer).block();
+
+        // When
+        Long actual = underTest.insertCustomerIfEmailAvailable(new Customer(
+                "Other", customer.getEmail(), "password", 30, Gender.FEMALE)).block();
+
+        // Then
+        assertThat(actual).isNull();
+    }
+
+    @Test
+    void selectAllCustomersStreamsEveryRowInIdOrder() {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            underTest.insertCustomerIfEmailAvailable(newCustomer()).block();
+        }
+
+        // When
+        List<Customer> actual = underTest.selectAllCustomers().collectList().block();
+
+        // Then
+        assertThat(actual).hasSizeGreaterThanOrEqualTo(5);
+        assertThat(actual).extracting(Customer::getId).isSorted();
+    }
+
+    @Test
+    void updateChangedFieldsReturnsRowOnlyWhenSomethingChanged() {
+        // Given
+        Long id = underTest.insertCustomerIfEmailAvailable(newCustomer()).block();
+        Customer update = new Customer();
+        update.setId(id);
+        update.setName("Renamed");
+
+        // When
+        Customer changed = underTest.updateChangedFields(update).block();
+        Customer unchanged = underTest.updateChangedFields(update).block();
+
+        // Then
+        assertThat(changed).isNotNull();
+        assertThat(changed.getName()).isEqualTo("Renamed");
+        assertThat(unchanged).isNull();
+    }
+
+    @Test
+    void updateToTakenEmailThrowsDuplicateKey() {
+        // Given
+        Customer taken = newCustomer();
+        underTest.insertCustomerIfEmailAvailable(taken).block();
+        Long id = underTest.insertCustomerIfEmailAvailable(newCustomer()).block();
+        Customer update = new Customer();
+        update.setId(id);
+        update.setEmail(taken.getEmail());
+
+        // When / Then
+        assertThatThrownBy(() -> underTest.updateChangedFields(update).block())
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void deleteCustomerById() {
+        // Given
+        Long id = underTest.insertCustomerIfEmailAvailable(newCustomer()).block();
+
+        // When
+        Long deleted = underTest.deleteCustomerById(id).block();
+
+        // Then
+        assertThat(deleted).isEqualTo(1L);
+        assertThat(underTest.existsCustomerWithId(id).block()).isFalse();
+    }
+}
@@ -3,6 +3,8 @@ package com.lavong55.customer;
 import com.lavong55.exception.DuplicateResourceException;
 import com.lavong55.exception.RequestValidationException;
 import com.lavong55.exception.ResourceNotFoundException;
+import com.lavong55.jwt.RefreshTokenService;
+import com.lavong55.jwt.TokenEpochStore;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,8 +12,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
@@ -26,6 +32,12 @@ class CustomerServiceTest {
     private CustomerDao customerDao;
     @Mock
     private PasswordEncoder passwordEncoder;
+    @Mock
+    private CustomerPrincipalStore customerPrincipalStore;
+    @Mock
+    private TokenEpochStore tokenEpochStore;
+    @Mock
+    private RefreshTokenService refreshTokenService;
     // The class under test - CustomerService.
     private CustomerService underTest;
     private final CustomerDTOMapper customerDTOMapper = new CustomerDTOMapper();
@@ -34,7 +46,7 @@ class CustomerServiceTest {
     @BeforeEach
     void setUp() {
         // Initialize the CustomerService instance with the mock CustomerDao.
-        underTest = new CustomerService(customerDao, passwordEncoder, customerDTOMapper);
+        underTest = new CustomerService(customerDao, passwordEncoder, customerDTOMapper, customerPrincipalStore, tokenEpochStore, refreshTokenService);
     }
 
     // This cleanup method is executed after each test case. Nothing to clean up in this example.
@@ -53,6 +65,73 @@ class CustomerServiceTest {
         verify(customerDao).selectAllCustomers();
     }
 
+    // Test method to verify if getCustomers returns a page with a cursor when more rows exist.
+    @Test
+    void canGetCustomersPageWithNextCursor() {
+        // Given three customers in the database and a page size of two.
+        Customer c1 = new Customer(1L, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        Customer c2 = new Customer(2L, "Jamila", "jamila@gmail.com", "password", 21, Gender.FEMALE);
+        Customer c3 = new Customer(3L, "John", "john@gmail.com", "password", 30, Gender.MALE);
+        // The service asks for one extra row to detect the next page.
+        when(customerDao.selectCustomers(null, 3)).thenReturn(List.of(c1, c2, c3));
+
+        // When calling getCustomers with no cursor and a limit of two.
+        CustomerPage actual = underTest.getCustomers(null, 2);
+
+        // Then only two customers are returned and the cursor points at the last one.
+        assertThat(actual.customers()).extracting(CustomerDTO::id).containsExactly(1L, 2L);
+        assertThat(actual.nextCursor()).isEqualTo(2L);
+    }
+
+    // Test method to verify if getCustomers returns no cursor on the last page.
+    @Test
+    void canGetLastCustomersPage() {
+        // Given a single customer after the cursor.
+        Customer c3 = new Customer(3L, "John", "john@gmail.com", "password", 30, Gender.MALE);
+        when(customerDao.selectCustomers(2L, CustomerService.DEFAULT_PAGE_SIZE + 1)).thenReturn(List.of(c3));
+
+        // When calling getCustomers with the cursor and the default limit.
+        CustomerPage actual = underTest.getCustomers(2L, null);
+
+        // Then the page holds the customer and there is no next cursor.
+        assertThat(actual.customers()).extracting(CustomerDTO::id).containsExactly(3L);
+        assertThat(actual.nextCursor()).isNull();
+    }
+
+    // Test method to verify if getCustomers rejects a limit outside the allowed range.
+    @Test
+    void willThrowWhenGetCustomersLimitIsInvalid() {
+        assertThatThrownBy(() -> underTest.getCustomers(null, CustomerService.MAX_PAGE_SIZE + 1))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and %s".formatted(CustomerService.MAX_PAGE_SIZE));
+
+        verify(customerDao, never()).selectCustomers(any(), anyInt());
+    }
+
+    // Test method to verify if exportCustomers maps every streamed customer to a DTO.
+    @Test
+    void canExportCustomers() {
+        // Given the DAO streams two customers.
+        Customer c1 = new Customer(1L, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+        Customer c2 = new Customer(2L, "Jamila", "jamila@gmail.com", "password", 21, Gender.FEMALE);
+        doAnswer(invocation -> {
+            Consumer<Customer> action = invocation.getArgument(0);
+            action.accept(c1);
+            action.accept(c2);
+            return null;
+        }).when(customerDao).forEachCustomer(any());
+
+        // When exporting customers into a list.
+        List<CustomerDTO> exported = new ArrayList<>();
+        underTest.exportCustomers(exported::add);
+
+        // Then each customer is mapped in order.
+        assertThat(exported).containsExactly(
+                customerDTOMapper.apply(c1),
+                customerDTOMapper.apply(c2));
+        verify(customerDao, never()).selectAllCustomers();
+    }
+
     // Test method to verify if getCustomer retrieves the correct customer using the given ID.
     @Test
     void canGetCustomer() {
@@ -91,21 +170,23 @@ class CustomerServiceTest {
     void addCustomer() {
         // Given a new customer registration request.
         String email = "alex@gmail.com";
-        // When checking if email exists, return false (email does not exist in the database).
-        when(customerDao.existsCustomerWithEmail(email)).thenReturn(false);
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Alex", email, "password", 19, Gender.MALE
         );
 
         String passwordHash = "78yd87ewddewq";
         when(passwordEncoder.encode(request.password())).thenReturn(passwordHash);
+        // When inserting, the email is free so the row is written.
+        when(customerDao.insertCustomerIfEmailAvailable(any())).thenReturn(true);
 
         // When calling addCustomer with the request.
         underTest.addCustomer(request);
 
-        // Then verify that customerDao.insertCustomer is called, and capture the argument passed to it.
+        // Then verify that customerDao.insertCustomerIfEmailAvailable is called, and capture the argument passed to it.
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-        verify(customerDao).insertCustomer(customerArgumentCaptor.capture());
+        verify(customerDao).insertCustomerIfEmailAvailable(customerArgumentCaptor.capture());
+        // No separate existence check round trip.
+        verify(customerDao, never()).existsCustomerWithEmail(any());
 
         // Verify that the captured customer has the expected properties.
         Customer capturedCustomer = customerArgumentCaptor.getValue();
@@ -121,9 +202,9 @@ class CustomerServiceTest {
     void willThrowWhenEmailExistsWhileAddingACustomer() {
         // Given a customer registration request with an email that already exists in the database.
         String email = "alex@gmail.com";
-        // When checking if email exists, return true (email already exists).
-        when(customerDao.existsCustomerWithEmail(email)).thenReturn(true);
-        
+        // When inserting, the unique email index reports a conflict (email already exists).
+        when(customerDao.insertCustomerIfEmailAvailable(any())).thenReturn(false);
+
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Alex", email, "password", 19, Gender.MALE
         );
@@ -133,7 +214,7 @@ class CustomerServiceTest {
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessage("email already taken");
 
-        // Verify that customerDao.insertCustomer is never called, as the customer should not be added.
+        // Verify that the plain customerDao.insertCustomer is never called.
         verify(customerDao, never()).insertCustomer(any());
     }
 
@@ -150,6 +231,9 @@ class CustomerServiceTest {
 
         // Then verify that customerDao.deleteCustomerById is called with the given ID.
         verify(customerDao).deleteCustomerById(id);
+        // And that the cached principal for the deleted customer is evicted and its sessions revoked.
+        verify(customerPrincipalStore).evict(id);
+        verify(refreshTokenService).revokeAll(id);
     }
 
     // Test method to verify if deleteCustomerById throws ResourceNotFoundException when the ID does not exist.
@@ -169,158 +253,176 @@ class CustomerServiceTest {
         verify(customerDao, never()).deleteCustomerById(id);
     }
 
+    @Test
+    void revokeSessionsRevokesEveryTokenOfTheCustomer() {
+        // Given
+        long id = 10;
+        when(customerDao.existsCustomerWithId(id)).thenReturn(true);
+
+        // When
+        underTest.revokeSessions(id);
+
+        // Then
+        verify(refreshTokenService).revokeAll(id);
+        verify(customerDao, never()).deleteCustomerById(id);
+    }
+
+    @Test
+    void willThrowRevokeSessionsWhenCustomerNotExists() {
+        // Given
+        long id = 10;
+        when(customerDao.existsCustomerWithId(id)).thenReturn(false);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.revokeSessions(id))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] not found".formatted(id));
+        verify(refreshTokenService, never()).revokeAll(id);
+    }
+
     // Test method to verify if updateCustomer correctly updates all properties of an existing customer.
     @Test
     void canUpdateAllCustomersProperties() {
-        // Given an existing customer ID and a mock Customer object.
+        // Given an existing customer ID and an update request with new name, email, and age.
         long id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail.com", "password", 19,
-                Gender.MALE);
-        // When customerDao.selectCustomerById(id) is called, return the mock Customer.
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
-        // Given an update request with new name, email, and age.
-        String newEmail = "alexandro@gmail.com";
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
-                "Alexandro", newEmail, 23
+                "Alexandro", "alexandro@gmail.com", 23
         );
-        // When checking if email exists, return false (new email does not exist in the database).
-        when(customerDao.existsCustomerWithEmail(newEmail)).thenReturn(false);
+        // When the DAO applies the update in one statement, return the updated row.
+        when(customerDao.updateChangedFields(any())).thenAnswer(
+                invocation -> Optional.of(invocation.getArgument(0)));
 
         // When calling updateCustomer with the given ID and updateRequest.
         underTest.updateCustomer(id, updateRequest);
 
-        // Then verify that customerDao.updateCustomer is called, and capture the argument passed to it.
+        // Then verify that customerDao.updateChangedFields is called, and capture the argument passed to it.
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDao).updateChangedFields(customerArgumentCaptor.capture());
 
-        // Verify that the captured customer has the expected updated properties.
+        // Verify that only the requested fields are sent and no separate read is made.
         Customer capturedCustomer = customerArgumentCaptor.getValue();
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
         assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name()); // Verify that the customer's name is updated.
         assertThat(capturedCustomer.getEmail()).isEqualTo(updateRequest.email()); // Verify that the customer's email is updated.
         assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age()); // Verify that the customer's age is updated.
+        verify(customerDao, never()).selectCustomerById(any());
+        verify(customerDao, never()).existsCustomerWithEmail(any());
+        // Verify that the cached principal is evicted and tokens naming the old email are revoked.
+        verify(customerPrincipalStore).evict(id);
+        verify(tokenEpochStore).revoke(id);
     }
 
     // Test method to verify if updateCustomer correctly updates only the name of an existing customer.
     @Test
     void canUpdateOnlyCustomerName() {
-        // Given an existing customer ID and a mock Customer object.
+        // Given an existing customer ID and an update request with only the name changed.
         long id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail.com", "password", 19,
-                Gender.MALE);
-        // When customerDao.selectCustomerById(id) is called, return the mock Customer.
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
-        // Given an update request with only the name changed.
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
                 "Alexandro", null, null
         );
+        // When the DAO applies the update in one statement, return the updated row.
+        when(customerDao.updateChangedFields(any())).thenAnswer(
+                invocation -> Optional.of(invocation.getArgument(0)));
 
         // When calling updateCustomer with the given ID and updateRequest.
         underTest.updateCustomer(id, updateRequest);
 
-        // Then verify that customerDao.updateCustomer is called, and capture the argument passed to it.
+        // Then verify that customerDao.updateChangedFields is called, and capture the argument passed to it.
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDao).updateChangedFields(customerArgumentCaptor.capture());
 
-        // Verify that the captured customer has the expected updated name, while keeping other properties unchanged.
+        // Verify that only the requested fields are sent and no separate read is made.
         Customer capturedCustomer = customerArgumentCaptor.getValue();
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
         assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name()); // Verify that the customer's name is updated.
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge()); // Verify that the customer's age remains unchanged.
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail()); // Verify that the customer's email remains unchanged.
+        assertThat(capturedCustomer.getAge()).isNull(); // Verify that the customer's age is left untouched.
+        assertThat(capturedCustomer.getEmail()).isNull(); // Verify that the customer's email is left untouched.
+        verify(customerDao, never()).selectCustomerById(any());
+        verify(customerDao, never()).existsCustomerWithEmail(any());
     }
 
     // Test method to verify if updateCustomer correctly updates only the email of an existing customer.
     @Test
     void canUpdateOnlyCustomerEmail() {
-        // Given an existing customer ID and a mock Customer object.
+        // Given an existing customer ID and an update request with only the email changed.
         long id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail.com", "password", 19,
-                Gender.MALE);
-        // When customerDao.selectCustomerById(id) is called, return the mock Customer.
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
-        // Given an update request with only the email changed.
-        String newEmail = "alexandro@gmail.com";
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
-                null, newEmail, null
+                null, "alexandro@gmail.com", null
         );
-        // When checking if email exists, return false (new email does not exist in the database).
-        when(customerDao.existsCustomerWithEmail(newEmail)).thenReturn(false);
+        // When the DAO applies the update in one statement, return the updated row.
+        when(customerDao.updateChangedFields(any())).thenAnswer(
+                invocation -> Optional.of(invocation.getArgument(0)));
 
         // When calling updateCustomer with the given ID and updateRequest.
         underTest.updateCustomer(id, updateRequest);
 
-        // Then verify that customerDao.updateCustomer is called, and capture the argument passed to it.
+        // Then verify that customerDao.updateChangedFields is called, and capture the argument passed to it.
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDao).updateChangedFields(customerArgumentCaptor.capture());
 
-        // Verify that the captured customer has the expected updated email, while keeping other properties unchanged.
+        // Verify that only the requested fields are sent and no separate read is made.
         Customer capturedCustomer = customerArgumentCaptor.getValue();
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName()); // Verify that the customer's name remains unchanged.
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge()); // Verify that the customer's age remains unchanged.
-        assertThat(capturedCustomer.getEmail()).isEqualTo(newEmail); // Verify that the customer's email is updated.
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
+        assertThat(capturedCustomer.getName()).isNull(); // Verify that the customer's name is left untouched.
+        assertThat(capturedCustomer.getAge()).isNull(); // Verify that the customer's age is left untouched.
+        assertThat(capturedCustomer.getEmail()).isEqualTo(updateRequest.email()); // Verify that the customer's email is updated.
+        verify(customerDao, never()).selectCustomerById(any());
+        verify(customerDao, never()).existsCustomerWithEmail(any());
     }
 
     // Test method to verify if updateCustomer correctly updates only the age of an existing customer.
     @Test
     void canUpdateOnlyCustomerAge() {
-        // Given an existing customer ID and a mock Customer object.
+        // Given an existing customer ID and an update request with only the age changed.
         long id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail.com", "password", 19,
-                Gender.MALE);
-        // When customerDao.selectCustomerById(id) is called, return the mock Customer.
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
-
-        // Given an update request with only the age changed.
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
                 null, null, 22
         );
+        // When the DAO applies the update in one statement, return the updated row.
+        when(customerDao.updateChangedFields(any())).thenAnswer(
+                invocation -> Optional.of(invocation.getArgument(0)));
 
         // When calling updateCustomer with the given ID and updateRequest.
         underTest.updateCustomer(id, updateRequest);
 
-        // Then verify that customerDao.updateCustomer is called, and capture the argument passed to it.
+        // Then verify that customerDao.updateChangedFields is called, and capture the argument passed to it.
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDao).updateChangedFields(customerArgumentCaptor.capture());
 
-        // Verify that the captured customer has the expected updated age, while keeping other properties unchanged.
+        // Verify that only the requested fields are sent and no separate read is made.
         Customer capturedCustomer = customerArgumentCaptor.getValue();
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName()); // Verify that the customer's name remains unchanged.
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
+        assertThat(capturedCustomer.getName()).isNull(); // Verify that the customer's name is left untouched.
         assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age()); // Verify that the customer's age is updated.
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail()); // Verify that the customer's email remains unchanged.
+        assertThat(capturedCustomer.getEmail()).isNull(); // Verify that the customer's email is left untouched.
+        verify(customerDao, never()).selectCustomerById(any());
+        verify(customerDao, never()).existsCustomerWithEmail(any());
     }
 
     // Test method to verify if updateCustomer throws DuplicateResourceException when trying to update email to an already taken email.
     @Test
     void willThrowWhenTryingToUpdateCustomerEmailWhenAlreadyTaken() {
-        // Given an existing customer ID and a mock Customer object.
+        // Given an existing customer ID.
         long id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail.com", "password", 19,
-                Gender.MALE);
-        // When customerDao.selectCustomerById(id) is called, return the mock Customer.
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
 
         // Given an update request with a new email that already exists in the database.
         String newEmail = "alexandro@gmail.com";
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
                 null, newEmail, null
         );
-        // When checking if email exists, return true (new email already exists).
-        when(customerDao.existsCustomerWithEmail(newEmail)).thenReturn(true);
+        // When updating, the unique email index rejects the new email.
+        when(customerDao.updateChangedFields(any())).thenThrow(
+                new DuplicateKeyException("duplicate key value violates unique constraint"));
 
         // Then verify that calling updateCustomer with the given ID and updateRequest throws a DuplicateResourceException.
         assertThatThrownBy(() -> underTest.updateCustomer(id, updateRequest))
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessage("email already taken");
 
-        // Verify that customerDao.updateCustomer is never called, as the email update should not be allowed.
-        verify(customerDao, never()).updateCustomer(any());
+        // Verify that no extra reads are made to explain the failure.
+        verify(customerDao, never()).existsCustomerWithEmail(any());
+        verify(customerDao, never()).existsCustomerWithId(any());
     }
 
     // Test method to verify if updateCustomer throws RequestValidationException when there are no changes in the update request.
@@ -331,8 +433,8 @@ class CustomerServiceTest {
         Customer customer = new Customer(
                 id, "Alex", "alex@gmail.com", "password", 19,
                 Gender.MALE);
-        // When customerDao.selectCustomerById(id) is called, return the mock Customer.
-        when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        // When nothing was written, the customer is found to exist.
+        when(customerDao.existsCustomerWithId(id)).thenReturn(true);
 
         // Given an update request with no changes (same name, email, and age as the original customer).
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
@@ -347,4 +449,32 @@ class CustomerServiceTest {
         // Verify that customerDao.updateCustomer is never called, as there are no changes to apply.
         verify(customerDao, never()).updateCustomer(any());
     }
-}
\ No newline at end of file
+
+    // Test method to verify if updateCustomer throws ResourceNotFoundException when nothing was written for an unknown ID.
+    @Test
+    void willThrowWhenUpdatingCustomerThatDoesNotExist() {
+        // Given a customer ID that does not exist in the database.
+        long id = 10;
+        when(customerDao.existsCustomerWithId(id)).thenReturn(false);
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
+                "Alexandro", null, null
+        );
+
+        // Then verify that calling updateCustomer throws a ResourceNotFoundException.
+        assertThatThrownBy(() -> underTest.updateCustomer(id, updateRequest))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] not found".formatted(id));
+    }
+
+    // Test method to verify if an empty update request is rejected without touching the database.
+    @Test
+    void willThrowWhenCustomerUpdateRequestIsEmpty() {
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null, null, null);
+
+        assertThatThrownBy(() -> underTest.updateCustomer(10L, updateRequest))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("no data changes found");
+
+        verifyNoInteractions(customerDao);
+    }
+}
@@ -0,0 +1,236 @@
+package com.lavong55.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class CustomerStorePersistenceTest {
+
+    private static final int SEGMENT_SIZE = 2 * CustomerRecords.MAX_RECORD_BYTES;
+
+    @TempDir
+    Path directory;
+
+    private final List<CustomerStorePersistence> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(CustomerStorePersistence::close);
+    }
+
+    @Test
+    void freshStoreStartsEmptyWithoutSeedCustomers() {
+        // When
+        CustomerListDataAccessService underTest = open("sync");
+
+        // Then
+        assertThat(underTest.selectAllCustomers()).isEmpty();
+    }
+
+    @Test
+    void replaysLogAfterRestart() {
+        // Given
+        CustomerListDataAccessService store = open("sync");
+        Customer ana = new Customer("Ana", "ana@gmail.com", "hash", 20, Gender.FEMALE);
+        Customer ben = new Customer("Ben", "ben@gmail.com", "hash", 30, Gender.MALE);
+        store.insertCustomer(ana);
+        store.insertCustomer(ben);
+        Customer update = new Customer();
+        update.setId(ana.getId());
+        update.setEmail("ana.maria@gmail.com");
+        store.updateChangedFields(update);
+        store.updatePassword("ana.maria@gmail.com", "new-hash");
+        store.deleteCustomerById(ben.getId());
+        crash();
+
+        // When
+        CustomerListDataAccessService underTest = open("sync");
+
+        // Then
+        assertThat(underTest.selectAllCustomers())
+                .extracting(Customer::getId, Customer::getEmail, Customer::getPassword)
+                .containsExactly(tuple(ana.getId(), "ana.maria@gmail.com", "new-hash"));
+        assertThat(underTest.existsCustomerWithEmail("ana@gmail.com")).isFalse();
+        Customer next = new Customer("Cy", "cy@gmail.com", "hash", 40, Gender.MALE);
+        underTest.insertCustomer(next);
+        assertThat(next.getId()).isEqualTo(ben.getId() + 1);
+    }
+
+    @Test
+    void writeRejectedByTheLogLeavesTheStoreUnchanged() {
+        // Given
+        CustomerListDataAccessService store = open("sync");
+        Customer ana = new Customer("Ana", "ana@gmail.com", "hash", 20, Gender.FEMALE);
+        store.insertCustomer(ana);
+        String oversized = "x".repeat(CustomerRecords.MAX_STRING_BYTES + 1);
+        Customer rejected = new Customer(oversized, "ben@gmail.com", "hash", 30, Gender.MALE);
+        Customer update = new Customer();
+        update.setId(ana.getId());
+        update.setName(oversized);
+        update.setEmail("ana.maria@gmail.com");
+
+        // When
+        assertThatThrownBy(() -> store.insertCustomer(rejected))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> store.updateChangedFields(update))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        // Then
+        assertThat(store.selectAllCustomers())
+                .extracting(Customer::getName, Customer::getEmail)
+                .containsExactly(tuple("Ana", "ana@gmail.com"));
+        assertThat(store.existsCustomerWithEmail("ben@gmail.com")).isFalse();
+        assertThat(store.existsCustomerWithEmail("ana.maria@gmail.com")).isFalse();
+        store.insertCustomer(new Customer("Ben", "ben@gmail.com", "hash", 30, Gender.MALE));
+        crash();
+        assertThat(open("sync").selectAllCustomers())
+                .extracting(Customer::getName, Customer::getEmail)
+                .containsExactly(tuple("Ana", "ana@gmail.com"), tuple("Ben", "ben@gmail.com"));
+    }
+
+    @Test
+    void recoversFromSnapshotPlusLogTail() {
+        // Given
+        CustomerStorePersistence persistence = persistence("periodic");
+        CustomerListDataAccessService store = new CustomerListDataAccessService(persistence);
+        for (int i = 0; i < 100; i++) {
+            store.insertCustomer(new Customer("C" + i, "c" + i + "@gmail.com", "hash", 20, Gender.MALE));
+        }
+        persistence.snapshot();
+        store.deleteCustomerById(1L);
+        store.insertCustomer(new Customer("Tail", "tail@gmail.com", "hash", 20, Gender.MALE));
+        crash();
+
+        // When
+        CustomerListDataAccessService underTest = open("periodic");
+
+        // Then
+        assertThat(underTest.selectAllCustomers()).hasSize(100);
+        assertThat(underTest.existsCustomerWithId(1L)).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("tail@gmail.com")).isTrue();
+        assertThat(snapshots()).hasSize(1);
+    }
+
+    @Test
+    void snapshotDropsCoveredSegments() {
+        // Given
+        CustomerStorePersistence persistence = persistence("periodic");
+        CustomerListDataAccessService store = new CustomerListDataAccessService(persistence);
+        String name = "x".repeat(1000);
+        // Enough rows to fill several segments.
+        for (int i = 0; i < 2_000; i++) {
+            store.insertCustomer(new Customer(name, "c" + i + "@gmail.com", "hash", 20, Gender.MALE));
+        }
+        assertThat(segments()).hasSizeGreaterThan(2);
+
+        // When
+        persistence.snapshot();
+        persistence.shutdown();
+        opened.remove(persistence);
+
+        // Then
+        assertThat(segments()).hasSize(1);
+        CustomerListDataAccessService underTest = open("periodic");
+        assertThat(underTest.selectAllCustomers()).hasSize(2_000);
+        assertThat(underTest.selectUserByEmail("c1999@gmail.com")).map(Customer::getName).contains(name);
+    }
+
+    @Test
+    void tornTailIsDroppedAndAppendingResumesBeforeIt() throws IOException {
+        // Given
+        CustomerListDataAccessService store = open("sync");
+        store.insertCustomer(new Customer("Ana", "ana@gmail.com", "hash", 20, Gender.FEMALE));
+        store.insertCustomer(new Customer("Ben", "ben@gmail.com", "hash", 30, Gender.MALE));
+        crash();
+        // Flip a byte inside Ben's record, as if the write was torn.
+        long benEnd = 2L * CustomerRecords.upsert(new Customer(1L, "Ana", "ana@gmail.com", "hash", 20, Gender.FEMALE)).length;
+        try (RandomAccessFile file = new RandomAccessFile(segments().get(0).toFile(), "rw")) {
+            file.seek(benEnd - 1);
+            file.write(0x7F);
+        }
+
+        // When
+        CustomerListDataAccessService recovered = open("sync");
+        recovered.insertCustomer(new Customer("Cy", "cy@gmail.com", "hash", 40, Gender.MALE));
+        crash();
+        CustomerListDataAccessService underTest = open("sync");
+
+        // Then
+        assertThat(underTest.selectAllCustomers())
+                .extracting(Customer::getName)
+                .containsExactly("Ana", "Cy");
+    }
+
+    @Test
+    void concurrentSyncWritersAreAllDurable() throws InterruptedException {
+        // Given
+        CustomerListDataAccessService store = open("sync");
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int writer = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    store.insertCustomer(new Customer("W", writer + "-" + i + "@gmail.com", "hash", 20, Gender.MALE));
+                }
+            });
+            thread.start();
+            writers.add(thread);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        crash();
+
+        // When
+        CustomerListDataAccessService underTest = open("sync");
+
+        // Then
+        assertThat(underTest.selectAllCustomers()).hasSize(1_600);
+    }
+
+    private CustomerListDataAccessService open(String durability) {
+        return new CustomerListDataAccessService(persistence(durability));
+    }
+
+    private CustomerStorePersistence persistence(String durability) {
+        CustomerStorePersistence persistence = new CustomerStorePersistence(
+                directory, SEGMENT_SIZE, durability, Duration.ofMillis(5), Duration.ofHours(1));
+        opened.add(persistence);
+        return persistence;
+    }
+
+    // Stops every open store without its shutdown snapshot.
+    private void crash() {
+        opened.forEach(CustomerStorePersistence::close);
+        opened.clear();
+    }
+
+    private List<Path> segments() {
+        return files(".log");
+    }
+
+    private List<Path> snapshots() {
+        return files(".snap");
+    }
+
+    private List<Path> files(String suffix) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(suffix)).sorted().toList();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
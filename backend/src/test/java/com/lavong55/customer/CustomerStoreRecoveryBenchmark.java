@@ -0,0 +1,119 @@
+package com.lavong55.customer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+Fills a persistent list store, snapshots it, writes a log tail on top and "crashes" (no shutdown
+snapshot), then times recovery: snapshot read, log replay and index rebuild. Also prints insert
+throughput from concurrent writers under each durability mode.
+
+Run with:
+  mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+      -Dexec.args="-Xmx8g -cp %classpath com.lavong55.customer.CustomerStoreRecoveryBenchmark 5000000 200000"
+where the arguments are the snapshot row count and the log tail length.
+*/
+public class CustomerStoreRecoveryBenchmark {
+
+    private static final String BCRYPT_HASH = "$2a$10$N9qo8uLOickgx2ZMRZoMyeIjZAgcfl7p92ldGxad68LJZdL17lhWy";
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int WRITERS = 16;
+    private static final int WRITES_PER_WRITER = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int tail = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+
+        for (String durability : List.of("periodic", "sync")) {
+            Path directory = Files.createTempDirectory("customer-store");
+            try {
+                writeThroughput(directory, durability);
+            } finally {
+                delete(directory);
+            }
+        }
+
+        Path directory = Files.createTempDirectory("customer-store");
+        try {
+            CustomerStorePersistence persistence = persistence(directory, "periodic");
+            CustomerListDataAccessService store = new CustomerListDataAccessService(persistence);
+            for (int i = 0; i < records; i++) {
+                store.insertCustomer(customer(i));
+            }
+            long start = System.nanoTime();
+            persistence.snapshot();
+            System.out.printf("snapshot of %,d rows: %,d ms%n", records, (System.nanoTime() - start) / 1_000_000);
+            for (int i = 0; i < tail; i++) {
+                Customer update = new Customer();
+                update.setId(1L + i % records);
+                update.setAge(i % 100);
+                store.updateChangedFields(update);
+            }
+            persistence.close();
+            store = null;
+            System.gc();
+
+            start = System.nanoTime();
+            CustomerStorePersistence recovered = persistence(directory, "periodic");
+            CustomerListDataAccessService restored = new CustomerListDataAccessService(recovered);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("recovery of %,d rows + %,d log records: %,d ms (%,d rows)%n",
+                    records, tail, millis, restored.selectCustomers(null, Integer.MAX_VALUE).size());
+            recovered.close();
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void writeThroughput(Path directory, String durability) throws InterruptedException {
+        CustomerStorePersistence persistence = persistence(directory, durability);
+        CustomerListDataAccessService store = new CustomerListDataAccessService(persistence);
+        List<Thread> writers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < WRITES_PER_WRITER; i++) {
+                    store.insertCustomer(customer(writer * WRITES_PER_WRITER + i));
+                }
+            });
+            thread.start();
+            writers.add(thread);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-8s %d writers: %,.0f inserts/s%n",
+                durability, WRITERS, WRITERS * WRITES_PER_WRITER / seconds);
+        persistence.close();
+    }
+
+    private static CustomerStorePersistence persistence(Path directory, String durability) {
+        return new CustomerStorePersistence(directory, SEGMENT_SIZE, durability,
+                Duration.ofMillis(10), Duration.ofDays(1));
+    }
+
+    private static Customer customer(int i) {
+        return new Customer(
+                "Customer Number " + i,
+                "customer." + i + "@example.com",
+                BCRYPT_HASH,
+                18 + i % 80,
+                i % 2 == 0 ? Gender.MALE : Gender.FEMALE);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
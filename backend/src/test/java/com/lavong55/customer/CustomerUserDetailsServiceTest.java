@@ -0,0 +1,79 @@
+package com.lavong55.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerUserDetailsServiceTest {
+
+    @Mock
+    private CustomerDao customerDao;
+    @Mock
+    private CustomerDao passwordStore;
+    private CustomerUserDetailsService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerUserDetailsService(customerDao, passwordStore, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.shutdown();
+    }
+
+    @Test
+    void upgradedHashIsWrittenThroughThePasswordStore() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", "old-hash", 20, Gender.MALE);
+
+        // When
+        UserDetails upgraded = underTest.updatePassword(customer, "new-hash");
+
+        // Then
+        assertThat(upgraded.getPassword()).isEqualTo("new-hash");
+        verify(passwordStore, timeout(1000)).updatePassword("alex@gmail.com", "new-hash");
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void upgradesBeyondTheQueueAreDropped() throws InterruptedException {
+        // Given
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        }).when(passwordStore).updatePassword("a@gmail.com", "hash");
+
+        // When
+        underTest.updatePassword(customer("a@gmail.com"), "hash");
+        writing.await();
+        underTest.updatePassword(customer("b@gmail.com"), "hash");
+        underTest.updatePassword(customer("c@gmail.com"), "hash");
+        release.countDown();
+
+        // Then
+        verify(passwordStore, timeout(1000)).updatePassword("b@gmail.com", "hash");
+        verify(passwordStore, never()).updatePassword("c@gmail.com", "hash");
+    }
+
+    private static Customer customer(String email) {
+        return new Customer(1L, "Alex", email, "old-hash", 20, Gender.MALE);
+    }
+}
@@ -0,0 +1,39 @@
+package com.lavong55.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmailBloomFilterTest {
+
+    @Test
+    void mightContainEveryAddedEmailIgnoringCase() {
+        // Given
+        EmailBloomFilter underTest = new EmailBloomFilter(1_000, 0.01);
+        underTest.add("Alex@Gmail.com");
+
+        // Then
+        assertThat(underTest.mightContain("alex@gmail.com")).isTrue();
+        assertThat(underTest.mightContain("ALEX@GMAIL.COM")).isTrue();
+        assertThat(underTest.approximateElementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTarget() {
+        // Given a filter filled to capacity
+        EmailBloomFilter underTest = new EmailBloomFilter(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> underTest.add("customer-" + i + "@gmail.com"));
+
+        // When probing emails that were never added
+        long falsePositives = IntStream.range(0, 10_000)
+                .filter(i -> underTest.mightContain(UUID.randomUUID() + "@gmail.com"))
+                .count();
+
+        // Then
+        assertThat(falsePositives).isLessThan(300);
+        assertThat(underTest.expectedFalsePositiveRate()).isLessThan(0.02);
+    }
+}
@@ -0,0 +1,39 @@
+package com.lavong55.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongIntHashIndexTest {
+
+    @Test
+    void matchesHashMapUnderRandomPutsAndRemoves() {
+        // Given
+        LongIntHashIndex underTest = new LongIntHashIndex(4);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        // When
+        for (int i = 0; i < 100_000; i++) {
+            // A small key range forces collisions, overwrites and removals inside probe runs.
+            long key = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                underTest.remove(key);
+                expected.remove(key);
+            } else {
+                underTest.put(key, i);
+                expected.put(key, i);
+            }
+        }
+
+        // Then
+        assertThat(underTest.size()).isEqualTo(expected.size());
+        for (long key = 1; key <= 5_000; key++) {
+            assertThat(underTest.get(key)).isEqualTo(expected.getOrDefault(key, LongIntHashIndex.ABSENT));
+        }
+    }
+}
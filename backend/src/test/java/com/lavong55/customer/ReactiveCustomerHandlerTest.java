@@ -0,0 +1,259 @@
+package com.lavong55.customer;
+
+import com.lavong55.config.ReactiveServerConfig;
+import com.lavong55.jwt.JWTUtil;
+import com.lavong55.jwt.RefreshTokenService;
+import com.lavong55.jwt.TokenPair;
+import com.lavong55.jwt.TokenEpochStore;
+import com.lavong55.jwt.VerifiedToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveCustomerHandlerTest {
+
+    private static final String TOKEN = "token";
+
+    @Mock
+    private ReactiveCustomerDao customerDao;
+    @Mock
+    private PasswordEncoder passwordEncoder;
+    @Mock
+    private JWTUtil jwtUtil;
+    @Mock
+    private CachingCustomerDataAccessService customerCache;
+    @Mock
+    private BloomFilterCustomerDataAccessService emailFilter;
+    @Mock
+    private CustomerPrincipalStore customerPrincipalStore;
+    @Mock
+    private TokenEpochStore tokenEpochStore;
+    @Mock
+    private RefreshTokenService refreshTokenService;
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        ReactiveCustomerHandler handler = new ReactiveCustomerHandler(customerDao, passwordEncoder,
+                new CustomerDTOMapper(), customerCache, emailFilter, customerPrincipalStore,
+                tokenEpochStore, refreshTokenService);
+        webTestClient = WebTestClient
+                .bindToRouterFunction(new ReactiveServerConfig().reactiveCustomerRoutes(handler, jwtUtil))
+                .build();
+    }
+
+    private void givenValidToken() {
+        VerifiedToken token = new VerifiedToken("alex@gmail.com", "jti", 1L, 0,
+                List.of("ROLE_USER"), Instant.now().plusSeconds(60));
+        when(jwtUtil.verify(TOKEN)).thenReturn(token);
+        when(jwtUtil.isTokenValid(token, "alex@gmail.com")).thenReturn(true);
+    }
+
+    @Test
+    void canStreamAllCustomersAsNdjson() {
+        // Given
+        givenValidToken();
+        when(customerDao.selectAllCustomers()).thenReturn(Flux.just(
+                new Customer(1L, "Alex", "alex@gmail.com", "password", 19, Gender.MALE),
+                new Customer(2L, "Jamila", "jamila@gmail.com", "password", 21, Gender.FEMALE)));
+
+        // When
+        List<CustomerDTO> actual = webTestClient.get()
+                .uri("/api/v1/customers")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(CustomerDTO.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        // Then
+        assertThat(actual).extracting(CustomerDTO::email)
+                .containsExactly("alex@gmail.com", "jamila@gmail.com");
+    }
+
+    @Test
+    void getCustomerReturnsNotFoundApiError() {
+        // Given
+        givenValidToken();
+        when(customerDao.selectCustomerById(10L)).thenReturn(Mono.empty());
+
+        // When / Then
+        webTestClient.get()
+                .uri("/api/v1/customers/10")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("customer with id [10] not found")
+                .jsonPath("$.path").isEqualTo("/api/v1/customers/10");
+    }
+
+    @Test
+    void rejectsRequestsWithoutBearerToken() {
+        // When / Then
+        webTestClient.get()
+                .uri("/api/v1/customers/1")
+                .exchange()
+                .expectStatus().isForbidden();
+        verify(customerDao, never()).selectCustomerById(any());
+    }
+
+    @Test
+    void rejectsRevokedToken() {
+        // Given
+        VerifiedToken token = new VerifiedToken("alex@gmail.com", "jti", 1L, 0,
+                List.of("ROLE_USER"), Instant.now().plusSeconds(60));
+        when(jwtUtil.verify(TOKEN)).thenReturn(token);
+        when(jwtUtil.isTokenValid(token, "alex@gmail.com")).thenReturn(false);
+
+        // When / Then
+        webTestClient.get()
+                .uri("/api/v1/customers/1")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN)
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    void canRegisterCustomerWithoutToken() {
+        // Given
+        when(passwordEncoder.encode("password")).thenReturn("hash");
+        when(customerDao.insertCustomerIfEmailAvailable(any())).thenReturn(Mono.just(5L));
+        when(refreshTokenService.issue(5L, "alex@gmail.com", List.of("ROLE_USER")))
+                .thenReturn(new TokenPair("issued", "refresh"));
+
+        // When / Then
+        webTestClient.post()
+                .uri("/api/v1/customers")
+                .bodyValue(Map.of(
+                        "name", "Alex",
+                        "email", "alex@gmail.com",
+                        "password", "password",
+                        "age", 19,
+                        "gender", "MALE"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.AUTHORIZATION, "issued")
+                .expectBody()
+                .jsonPath("$.accessToken").isEqualTo("issued")
+                .jsonPath("$.refreshToken").isEqualTo("refresh");
+        verify(emailFilter).remember("alex@gmail.com");
+    }
+
+    @Test
+    void registerWithTakenEmailReturnsConflict() {
+        // Given
+        when(passwordEncoder.encode("password")).thenReturn("hash");
+        when(customerDao.insertCustomerIfEmailAvailable(any())).thenReturn(Mono.empty());
+
+        // When / Then
+        webTestClient.post()
+                .uri("/api/v1/customers")
+                .bodyValue(Map.of(
+                        "name", "Alex",
+                        "email", "alex@gmail.com",
+                        "password", "password",
+                        "age", 19,
+                        "gender", "MALE"))
+                .exchange()
+                .expectStatus().isEqualTo(409);
+        verify(emailFilter, never()).remember(any());
+    }
+
+    @Test
+    void updateWithNoChangesReturnsBadRequest() {
+        // Given
+        givenValidToken();
+        when(customerDao.updateChangedFields(any())).thenReturn(Mono.empty());
+        when(customerDao.existsCustomerWithId(1L)).thenReturn(Mono.just(true));
+
+        // When / Then
+        webTestClient.put()
+                .uri("/api/v1/customers/1")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN)
+                .bodyValue(Map.of("name", "Alex"))
+                .exchange()
+                .expectStatus().isBadRequest();
+        verify(customerCache, never()).invalidate(any());
+    }
+
+    @Test
+    void updateEmailInvalidatesCachesAndRevokesTokens() {
+        // Given
+        givenValidToken();
+        when(customerDao.updateChangedFields(any())).thenReturn(Mono.just(
+                new Customer(1L, "Alex", "new@gmail.com", "password", 19, Gender.MALE)));
+
+        // When
+        webTestClient.put()
+                .uri("/api/v1/customers/1")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN)
+                .bodyValue(Map.of("email", "new@gmail.com"))
+                .exchange()
+                .expectStatus().isOk();
+
+        // Then
+        verify(customerCache).invalidate(1L);
+        verify(customerPrincipalStore).evict(1L);
+        verify(tokenEpochStore).revoke(1L);
+        verify(emailFilter).remember("new@gmail.com");
+    }
+
+    @Test
+    void deleteRevokesSessionsBeforeDeleting() {
+        // Given
+        givenValidToken();
+        when(customerDao.existsCustomerWithId(1L)).thenReturn(Mono.just(true));
+        when(customerDao.deleteCustomerById(1L)).thenReturn(Mono.just(1L));
+
+        // When
+        webTestClient.delete()
+                .uri("/api/v1/customers/1")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN)
+                .exchange()
+                .expectStatus().isOk();
+
+        // Then
+        verify(refreshTokenService).revokeAll(1L);
+        verify(customerCache).invalidate(1L);
+        verify(customerPrincipalStore).evict(1L);
+    }
+
+    @Test
+    void deleteMissingCustomerReturnsNotFound() {
+        // Given
+        givenValidToken();
+        when(customerDao.existsCustomerWithId(1L)).thenReturn(Mono.just(false));
+
+        // When / Then
+        webTestClient.delete()
+                .uri("/api/v1/customers/1")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN)
+                .exchange()
+                .expectStatus().isNotFound();
+        verify(customerDao, never()).deleteCustomerById(any());
+    }
+}
@@ -0,0 +1,295 @@
+package com.lavong55.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WriteBehindCustomerDataAccessServiceTest {
+
+    @Mock
+    private CustomerDao delegate;
+    private SimpleMeterRegistry meterRegistry;
+    private WriteBehindCustomerDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // A long interval, so the tests decide when batches are written.
+        underTest = new WriteBehindCustomerDataAccessService(delegate, meterRegistry, 100, 50, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.shutdown();
+    }
+
+    @Test
+    void coalescesUpdatesToOneBatchedRow() {
+        // Given
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(alex()));
+
+        // When
+        underTest.updateChangedFields(update(1L, "Alexander", null));
+        underTest.updateChangedFields(update(1L, null, 30));
+        underTest.updateChangedFields(update(1L, "Alex B.", null));
+        underTest.flush();
+
+        // Then
+        verify(delegate, times(1)).selectCustomerById(1L);
+        verify(delegate, never()).updateChangedFields(any());
+        List<Customer> batch = captureBatch();
+        assertThat(batch).singleElement().satisfies(row -> {
+            assertThat(row.getName()).isEqualTo("Alex B.");
+            assertThat(row.getAge()).isEqualTo(30);
+        });
+        assertThat(meterRegistry.get("customer.write.behind.coalesced").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("customer.write.behind.flush").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void readsSeeTheirOwnWritesBeforeFlush() {
+        // Given
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(alex()));
+        when(delegate.selectUserByEmail("alex@gmail.com")).thenReturn(Optional.of(alex()));
+        when(delegate.selectCustomers(null, 10)).thenReturn(List.of(alex()));
+
+        // When
+        Optional<Customer> updated = underTest.updateChangedFields(update(1L, null, 30));
+
+        // Then
+        assertThat(updated).map(Customer::getAge).contains(30);
+        assertThat(underTest.selectCustomerById(1L)).map(Customer::getAge).contains(30);
+        assertThat(underTest.selectUserByEmail("alex@gmail.com")).map(Customer::getAge).contains(30);
+        assertThat(underTest.selectCustomers(null, 10)).extracting(Customer::getAge).containsExactly(30);
+        assertThat(meterRegistry.get("customer.write.behind.queue.depth").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void unchangedOrMissingRowsAreNotQueued() {
+        // Given
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(alex()));
+        when(delegate.selectCustomerById(2L)).thenReturn(Optional.empty());
+
+        // When
+        Optional<Customer> unchanged = underTest.updateChangedFields(update(1L, "Alex", 19));
+        Optional<Customer> missing = underTest.updateChangedFields(update(2L, "Ghost", null));
+
+        // Then
+        assertThat(unchanged).isEmpty();
+        assertThat(missing).isEmpty();
+        assertThat(underTest.pendingCount()).isZero();
+    }
+
+    @Test
+    void emailChangeIsSynchronousAndCarriesPendingFields() {
+        // Given
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(alex()));
+        underTest.updateChangedFields(update(1L, "Alexander", null));
+        Customer emailChange = update(1L, null, null);
+        emailChange.setEmail("alexander@gmail.com");
+        when(delegate.updateChangedFields(any())).thenReturn(Optional.of(alex()));
+
+        // When
+        underTest.updateChangedFields(emailChange);
+
+        // Then
+        ArgumentCaptor<Customer> captor = ArgumentCaptor.forClass(Customer.class);
+        verify(delegate).updateChangedFields(captor.capture());
+        assertThat(captor.getValue().getEmail()).isEqualTo("alexander@gmail.com");
+        assertThat(captor.getValue().getName()).isEqualTo("Alexander");
+        assertThat(underTest.pendingCount()).isZero();
+    }
+
+    @Test
+    void rejectedEmailChangeKeepsPendingRow() {
+        // Given
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(alex()));
+        underTest.updateChangedFields(update(1L, "Alexander", null));
+        Customer emailChange = update(1L, null, null);
+        emailChange.setEmail("taken@gmail.com");
+        when(delegate.updateChangedFields(any())).thenThrow(new DuplicateKeyException("taken"));
+
+        // When / Then
+        assertThatThrownBy(() -> underTest.updateChangedFields(emailChange))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectCustomerById(1L)).map(Customer::getName).contains("Alexander");
+    }
+
+    @Test
+    void failedFlushKeepsRowsForRetry() {
+        // Given
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(alex()));
+        underTest.updateChangedFields(update(1L, null, 30));
+        doThrow(new DataAccessResourceFailureException("down"))
+                .doNothing()
+                .when(delegate).updateNamesAndAges(any(), anyInt());
+
+        // When
+        assertThatThrownBy(() -> underTest.flush()).isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(underTest.pendingCount()).isEqualTo(1);
+        underTest.flush();
+
+        // Then
+        verify(delegate, times(2)).updateNamesAndAges(any(), eq(50));
+        assertThat(underTest.pendingCount()).isZero();
+        assertThat(meterRegistry.get("customer.write.behind.flush.failures").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void deleteDropsPendingRow() {
+        // Given
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(alex()));
+        underTest.updateChangedFields(update(1L, null, 30));
+
+        // When
+        underTest.deleteCustomerById(1L);
+        underTest.flush();
+
+        // Then
+        verify(delegate).deleteCustomerById(1L);
+        verify(delegate, never()).updateNamesAndAges(any(), anyInt());
+    }
+
+    @Test
+    void rowDeletedDuringAFailedFlushIsNotRetried() {
+        // Given
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(alex()));
+        underTest.updateChangedFields(update(1L, null, 30));
+        doAnswer(invocation -> {
+            underTest.deleteCustomerById(1L);
+            throw new DataAccessResourceFailureException("down");
+        }).when(delegate).updateNamesAndAges(any(), anyInt());
+
+        // When
+        assertThatThrownBy(() -> underTest.flush()).isInstanceOf(DataAccessResourceFailureException.class);
+
+        // Then
+        assertThat(underTest.pendingCount()).isZero();
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.empty());
+        assertThat(underTest.selectCustomerById(1L)).isEmpty();
+    }
+
+    @Test
+    void batchBeingWrittenCountsTowardsMaxPending() throws Exception {
+        // Given
+        underTest.shutdown();
+        underTest = new WriteBehindCustomerDataAccessService(delegate, meterRegistry, 1, 50, Duration.ofHours(1));
+        when(delegate.selectCustomerById(any())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            return Optional.of(new Customer(id, "C" + id, "c" + id + "@gmail.com", "password", 20, Gender.MALE));
+        });
+        underTest.updateChangedFields(update(1L, null, 30));
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        }).doNothing().when(delegate).updateNamesAndAges(any(), anyInt());
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(underTest::flush);
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        CompletableFuture<Optional<Customer>> second =
+                CompletableFuture.supplyAsync(() -> underTest.updateChangedFields(update(2L, null, 30)));
+
+        // Then
+        assertThatThrownBy(() -> second.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+        release.countDown();
+        flush.get(5, TimeUnit.SECONDS);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isPresent();
+    }
+
+    @Test
+    void fullQueueBlocksNewIdsUntilAFlushMakesRoom() throws Exception {
+        // Given
+        underTest.shutdown();
+        underTest = new WriteBehindCustomerDataAccessService(delegate, meterRegistry, 1, 50, Duration.ofHours(1));
+        when(delegate.selectCustomerById(any())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            return Optional.of(new Customer(id, "C" + id, "c" + id + "@gmail.com", "password", 20, Gender.MALE));
+        });
+        underTest.updateChangedFields(update(1L, null, 30));
+
+        // When
+        CompletableFuture<Optional<Customer>> second =
+                CompletableFuture.supplyAsync(() -> underTest.updateChangedFields(update(2L, null, 30)));
+
+        // Then
+        assertThat(second.get(5, TimeUnit.SECONDS)).isPresent();
+        verify(delegate).updateNamesAndAges(eq(List.of(
+                new Customer(1L, "C1", "c1@gmail.com", "password", 30, Gender.MALE))), eq(50));
+    }
+
+    @Test
+    void shutdownFlushesPendingRows() {
+        // Given
+        when(delegate.selectCustomerById(1L)).thenReturn(Optional.of(alex()));
+        underTest.updateChangedFields(update(1L, null, 30));
+
+        // When
+        underTest.shutdown();
+
+        // Then
+        assertThat(captureBatch()).extracting(Customer::getAge).containsExactly(30);
+    }
+
+    @Test
+    void insertsGoStraightToDelegate() {
+        // Given
+        Customer customer = alex();
+
+        // When
+        underTest.insertCustomer(customer);
+
+        // Then
+        verify(delegate).insertCustomer(customer);
+    }
+
+    private List<Customer> captureBatch() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Customer>> captor = ArgumentCaptor.forClass(List.class);
+        verify(delegate).updateNamesAndAges(captor.capture(), eq(50));
+        return captor.getValue();
+    }
+
+    private static Customer alex() {
+        return new Customer(1L, "Alex", "alex@gmail.com", "password", 19, Gender.MALE);
+    }
+
+    private static Customer update(Long id, String name, Integer age) {
+        Customer update = new Customer();
+        update.setId(id);
+        update.setName(name);
+        update.setAge(age);
+        return update;
+    }
+}
@@ -0,0 +1,78 @@
+package com.lavong55.datasource;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadRoutingTest {
+
+    private final ReadRouting underTest = new ReadRouting(true, Duration.ofMinutes(1), 100);
+
+    @Test
+    void readsAreMarkedForReplica() {
+        // When
+        ReadRouting.Route route = underTest.read(ReadRouting::current, 1L);
+
+        // Then
+        assertThat(route).isEqualTo(ReadRouting.Route.REPLICA);
+        assertThat(ReadRouting.current()).isNull();
+    }
+
+    @Test
+    void recentlyWrittenKeysStayOnPrimary() {
+        // Given
+        underTest.written(1L, "ana@gmail.com");
+
+        // When / Then
+        assertThat(underTest.read(ReadRouting::current, 1L)).isEqualTo(ReadRouting.Route.PRIMARY);
+        assertThat(underTest.read(ReadRouting::current, "ana@gmail.com")).isEqualTo(ReadRouting.Route.PRIMARY);
+        assertThat(underTest.read(ReadRouting::current, 2L)).isEqualTo(ReadRouting.Route.REPLICA);
+    }
+
+    @Test
+    void writesExpireAfterWindow() {
+        // Given
+        ReadRouting shortWindow = new ReadRouting(true, Duration.ofMillis(1), 100);
+        shortWindow.written(1L);
+
+        // When
+        sleep(20);
+
+        // Then
+        assertThat(shortWindow.read(ReadRouting::current, 1L)).isEqualTo(ReadRouting.Route.REPLICA);
+    }
+
+    @Test
+    void enclosingPrimaryPinWins() {
+        // Given
+        underTest.written(1L);
+
+        // When
+        ReadRouting.Route inner = underTest.read(() -> underTest.read(ReadRouting::current, 2L), 1L);
+
+        // Then
+        assertThat(inner).isEqualTo(ReadRouting.Route.PRIMARY);
+    }
+
+    @Test
+    void disabledRoutingMarksNothing() {
+        // Given
+        ReadRouting disabled = ReadRouting.disabled();
+
+        // When
+        ReadRouting.Route route = disabled.read(ReadRouting::current);
+
+        // Then
+        assertThat(route).isNull();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.lavong55.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primary;
+    @Mock
+    private DataSource first;
+    @Mock
+    private DataSource second;
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection firstConnection = mock(Connection.class);
+    private final Connection secondConnection = mock(Connection.class);
+
+    private final ReadRouting readRouting = new ReadRouting(true, Duration.ofMinutes(1), 100);
+    private SimpleMeterRegistry meterRegistry;
+    private ReplicaSet replicaSet;
+    private ReplicaRoutingDataSource underTest;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        lenient().when(primary.getConnection()).thenReturn(primaryConnection);
+        lenient().when(first.getConnection()).thenReturn(firstConnection);
+        lenient().when(second.getConnection()).thenReturn(secondConnection);
+        meterRegistry = new SimpleMeterRegistry();
+        // Lag probe off: the mocks can't answer it.
+        replicaSet = new ReplicaSet(primary, List.of(first, second), ReplicaSet.Strategy.ROUND_ROBIN,
+                Duration.ZERO, Duration.ofSeconds(1), meterRegistry);
+        underTest = new ReplicaRoutingDataSource(replicaSet);
+    }
+
+    @AfterEach
+    void tearDown() {
+        replicaSet.close();
+    }
+
+    @Test
+    void unmarkedWorkUsesPrimary() throws SQLException {
+        // When
+        Connection connection = underTest.getConnection();
+
+        // Then
+        assertThat(connection).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void markedReadsRoundRobinOverReplicas() {
+        // When
+        List<Connection> connections = List.of(read(), read(), read());
+
+        // Then
+        assertThat(connections).containsExactly(firstConnection, secondConnection, firstConnection);
+    }
+
+    @Test
+    void readOnlyTransactionUsesReplica() throws SQLException {
+        // Given
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            // When
+            Connection connection = underTest.getConnection();
+
+            // Then
+            assertThat(connection).isIn(firstConnection, secondConnection);
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+    }
+
+    @Test
+    void recentWriteKeepsReadOnPrimaryEvenInReadOnlyTransaction() throws SQLException {
+        // Given
+        readRouting.written(7L);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            // When
+            Connection connection = readRouting.read(this::connection, 7L);
+
+            // Then
+            assertThat(connection).isSameAs(primaryConnection);
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+    }
+
+    @Test
+    void failingReplicaIsSkippedAndReadFallsBack() throws SQLException {
+        // Given
+        when(first.getConnection()).thenThrow(new SQLException("refused"));
+
+        // When
+        Connection fallback = read();
+        List<Connection> next = List.of(read(), read());
+
+        // Then
+        assertThat(fallback).isSameAs(primaryConnection);
+        assertThat(next).containsOnly(secondConnection);
+        assertThat(meterRegistry.get("datasource.replica.available").tag("replica", "replica-0").gauge().value())
+                .isZero();
+    }
+
+    @Test
+    void failedReplicaIsRetriedAfterTheBackOffWithoutAProbe() throws Exception {
+        // Given
+        replicaSet.close();
+        replicaSet = new ReplicaSet(primary, List.of(first), ReplicaSet.Strategy.ROUND_ROBIN,
+                Duration.ZERO, Duration.ofMillis(50), meterRegistry);
+        underTest = new ReplicaRoutingDataSource(replicaSet);
+        replicaSet.failed(first);
+        assertThat(read()).isSameAs(primaryConnection);
+
+        // When
+        Thread.sleep(100);
+
+        // Then
+        assertThat(read()).isSameAs(firstConnection);
+    }
+
+    @Test
+    void noAvailableReplicaMeansPrimary() {
+        // Given
+        replicaSet.failed(first);
+        replicaSet.failed(second);
+
+        // When
+        Connection connection = read();
+
+        // Then
+        assertThat(connection).isSameAs(primaryConnection);
+        assertThat(meterRegistry.get("datasource.routing.fallbacks").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void strategyNamesAreLenient() {
+        assertThat(ReplicaSet.strategy("least-loaded")).isEqualTo(ReplicaSet.Strategy.LEAST_LOADED);
+        assertThat(ReplicaSet.strategy("ROUND_ROBIN")).isEqualTo(ReplicaSet.Strategy.ROUND_ROBIN);
+    }
+
+    private Connection read() {
+        return readRouting.read(this::connection);
+    }
+
+    private Connection connection() {
+        try {
+            return underTest.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
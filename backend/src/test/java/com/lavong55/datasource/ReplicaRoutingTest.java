@@ -0,0 +1,148 @@
+package com.lavong55.datasource;
+
+import com.lavong55.AbstractTestContainers;
+import com.lavong55.customer.Customer;
+import com.lavong55.customer.CustomerJDBCDataAccessService;
+import com.lavong55.customer.CustomerRowMapper;
+import com.lavong55.customer.Gender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two independent databases stand in for a primary and its replica: a row only on the "replica"
+// shows which side served a read.
+class ReplicaRoutingTest extends AbstractTestContainers {
+
+    @Container
+    private static final PostgreSQLContainer<?> replicaContainer =
+            new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("lavong55-dao-replica-test")
+                    .withUsername("lavong55")
+                    .withPassword("password");
+
+    private final CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+    private ReplicaSet replicaSet;
+    private DataSource routing;
+    private JdbcTemplate replicaJdbcTemplate;
+    private CustomerJDBCDataAccessService underTest;
+
+    @BeforeAll
+    static void migrateReplica() {
+        Flyway.configure()
+                .dataSource(
+                        replicaContainer.getJdbcUrl(),
+                        replicaContainer.getUsername(),
+                        replicaContainer.getPassword())
+                .load()
+                .migrate();
+    }
+
+    @BeforeEach
+    void setUp() {
+        setUp(replicaContainer.getJdbcUrl());
+    }
+
+    @AfterEach
+    void tearDown() {
+        replicaSet.close();
+    }
+
+    @Test
+    void keyedReadIsServedByReplica() {
+        // Given
+        long id = 1_000_000 + Math.abs(UUID.randomUUID().hashCode() % 1_000_000);
+        replicaJdbcTemplate.update(
+                "INSERT INTO customer(id, name, email, password, age, gender) VALUES (?, ?, ?, ?, ?, ?)",
+                id, "Replica Only", "replica-" + UUID.randomUUID() + "@example.com", "password", 30, "MALE");
+
+        // When
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        // Then
+        assertThat(actual).map(Customer::getName).contains("Replica Only");
+    }
+
+    @Test
+    void writeGoesToPrimaryAndReadOfItStaysThere() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        // When
+        underTest.insertCustomer(new Customer("Primary Only", email, "password", 20, Gender.FEMALE));
+        Optional<Customer> actual = underTest.selectUserByEmail(email);
+
+        // Then
+        assertThat(actual).map(Customer::getName).contains("Primary Only");
+        assertThat(replicaJdbcTemplate.queryForObject(
+                "SELECT count(*) FROM customer WHERE email = ?", Integer.class, email)).isZero();
+    }
+
+    @Test
+    void readOnlyTransactionUsesReplica() {
+        // Given
+        String email = "replica-" + UUID.randomUUID() + "@example.com";
+        replicaJdbcTemplate.update(
+                "INSERT INTO customer(name, email, password, age, gender) VALUES (?, ?, ?, ?, ?)",
+                "Replica Only", email, "password", 30, "MALE");
+        TransactionTemplate readOnly = new TransactionTemplate(new DataSourceTransactionManager(routing));
+        readOnly.setReadOnly(true);
+
+        // When
+        Integer count = readOnly.execute(status -> new JdbcTemplate(routing).queryForObject(
+                "SELECT count(*) FROM customer WHERE email = ?", Integer.class, email));
+
+        // Then
+        assertThat(count).isEqualTo(1);
+    }
+
+    @Test
+    void unreachableReplicaFallsBackToPrimary() {
+        // Given
+        replicaSet.close();
+        setUp("jdbc:postgresql://localhost:1/unreachable");
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer("Primary Only", email, "password", 20, Gender.MALE));
+        replicaSet.checkLag();
+
+        // When
+        List<Customer> actual = underTest.selectAllCustomers();
+
+        // Then
+        assertThat(actual).extracting(Customer::getEmail).contains(email);
+    }
+
+    private void setUp(String replicaUrl) {
+        DataSource replica = DataSourceBuilder.create()
+                .driverClassName(replicaContainer.getDriverClassName())
+                .url(replicaUrl)
+                .username(replicaContainer.getUsername())
+                .password(replicaContainer.getPassword())
+                .build();
+        replicaJdbcTemplate = new JdbcTemplate(replica);
+        replicaSet = new ReplicaSet(getJdbcTemplate().getDataSource(), List.of(replica),
+                ReplicaSet.Strategy.ROUND_ROBIN, Duration.ZERO, Duration.ofSeconds(1), new SimpleMeterRegistry());
+        routing = new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(replicaSet));
+        underTest = new CustomerJDBCDataAccessService(
+                new JdbcTemplate(routing),
+                customerRowMapper,
+                new ReadRouting(true, Duration.ofSeconds(5), 1_000));
+    }
+}
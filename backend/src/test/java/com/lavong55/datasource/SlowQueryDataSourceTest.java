@@ -0,0 +1,90 @@
+package com.lavong55.datasource;
+
+import com.lavong55.AbstractTestContainers;
+import com.lavong55.customer.Customer;
+import com.lavong55.customer.CustomerJDBCDataAccessService;
+import com.lavong55.customer.CustomerRowMapper;
+import com.lavong55.customer.Gender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlowQueryDataSourceTest extends AbstractTestContainers {
+
+    private SlowQueryLog slowQueryLog;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // Every statement is slow and every slow statement is explained.
+        slowQueryLog = new SlowQueryLog(Duration.ZERO, 1, Duration.ZERO, Duration.ofSeconds(5), 1000);
+        jdbcTemplate = new JdbcTemplate(new SlowQueryDataSource(getJdbcTemplate().getDataSource(), slowQueryLog));
+    }
+
+    @AfterEach
+    void tearDown() {
+        slowQueryLog.shutdown();
+    }
+
+    @Test
+    void daoStatementsAreTimedUnderTheirSql() {
+        // Given
+        CustomerJDBCDataAccessService dao = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper());
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        // When
+        dao.insertCustomer(new Customer("Ana", email, "password", 20, Gender.FEMALE));
+        dao.selectUserByEmail(email);
+        dao.selectUserByEmail(email);
+
+        // Then
+        assertThat(slowQueryLog.top(100))
+                .filteredOn(stats -> stats.sql().startsWith("SELECT") && stats.sql().contains("lower(email)"))
+                .extracting(SlowQueryLog.StatementStats::calls)
+                .contains(2L);
+        assertThat(slowQueryLog.top(100))
+                .anyMatch(stats -> stats.sql().startsWith("INSERT INTO customer"));
+    }
+
+    @Test
+    void sampledSlowQueryGetsAnalyzedPlan() throws InterruptedException {
+        // When
+        jdbcTemplate.queryForList("SELECT id FROM customer WHERE age > ?", 200);
+
+        // Then
+        String plan = awaitPlan("SELECT id FROM customer WHERE age > ?");
+        assertThat(plan).contains("Seq Scan").contains("actual time");
+    }
+
+    @Test
+    void writesAreExplainedWithoutRunning() throws InterruptedException {
+        // When
+        jdbcTemplate.update("DELETE FROM customer WHERE id = ?", -1L);
+
+        // Then
+        String plan = awaitPlan("DELETE FROM customer WHERE id = ?");
+        assertThat(plan).contains("Delete on customer").doesNotContain("actual time");
+    }
+
+    private String awaitPlan(String sql) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            String plan = slowQueryLog.top(1000)
+                    .stream()
+                    .filter(stats -> stats.sql().equals(sql) && stats.lastPlan() != null)
+                    .map(SlowQueryLog.StatementStats::lastPlan)
+                    .findFirst()
+                    .orElse(null);
+            if (plan != null) {
+                return plan;
+            }
+            Thread.sleep(50);
+        }
+        return null;
+    }
+}
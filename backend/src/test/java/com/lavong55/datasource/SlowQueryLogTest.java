@@ -0,0 +1,86 @@
+package com.lavong55.datasource;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlowQueryLogTest {
+
+    private final SlowQueryLog underTest = new SlowQueryLog(
+            Duration.ofMillis(100), 0, Duration.ofMinutes(1), Duration.ofSeconds(1), 3);
+
+    @Test
+    void normalizeCollapsesWhitespaceAndPlaceholderLists() {
+        // When
+        String actual = underTest.normalize("""
+                SELECT lower(email)
+                FROM customer
+                WHERE lower(email) IN (?, ?,?)
+                """);
+
+        // Then
+        assertThat(actual).isEqualTo("SELECT lower(email) FROM customer WHERE lower(email) IN (?, ...)");
+    }
+
+    @Test
+    void topOrdersByTotalTime() {
+        // Given
+        underTest.record("SELECT 1", millis(5), List.of(), null);
+        underTest.record("SELECT 1", millis(5), List.of(), null);
+        underTest.record("SELECT 2", millis(30), List.of(), null);
+        underTest.record("SELECT 3", millis(1), List.of(), null);
+
+        // When
+        List<SlowQueryLog.StatementStats> actual = underTest.top(2);
+
+        // Then
+        assertThat(actual).extracting(SlowQueryLog.StatementStats::sql).containsExactly("SELECT 2", "SELECT 1");
+        assertThat(actual.get(1).calls()).isEqualTo(2);
+        assertThat(actual.get(1).meanMillis()).isEqualTo(5.0);
+    }
+
+    @Test
+    void slowCallsAreCounted() {
+        // When
+        underTest.record("SELECT 1", millis(150), List.of(1L), null);
+        underTest.record("SELECT 1", millis(10), List.of(1L), null);
+
+        // Then
+        SlowQueryLog.StatementStats stats = underTest.top(1).get(0);
+        assertThat(stats.slowCalls()).isEqualTo(1);
+        assertThat(stats.maxMillis()).isEqualTo(150.0);
+    }
+
+    @Test
+    void statementsBeyondTheLimitShareOneEntry() {
+        // When
+        for (int i = 0; i < 5; i++) {
+            underTest.record("SELECT " + i, millis(1), null, null);
+        }
+
+        // Then
+        assertThat(underTest.top(10))
+                .extracting(SlowQueryLog.StatementStats::sql)
+                .containsExactlyInAnyOrder("SELECT 0", "SELECT 1", "SELECT 2", SlowQueryLog.OTHER);
+    }
+
+    @Test
+    void resetClearsCounts() {
+        // Given
+        underTest.record("SELECT 1", millis(1), null, null);
+
+        // When
+        underTest.reset();
+
+        // Then
+        assertThat(underTest.top(10)).isEmpty();
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
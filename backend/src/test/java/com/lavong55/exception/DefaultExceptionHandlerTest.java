@@ -0,0 +1,45 @@
+package com.lavong55.exception;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DefaultExceptionHandlerTest {
+
+    private final DefaultExceptionHandler underTest = new DefaultExceptionHandler();
+    private final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/auth/login");
+
+    @Test
+    void overloadWrappedByAuthenticationProviderIsServiceUnavailable() {
+        // Given
+        InternalAuthenticationServiceException e = new InternalAuthenticationServiceException(
+                "lookup failed", new ServiceOverloadedException("busy", Duration.ofSeconds(3)));
+
+        // When
+        ResponseEntity<ApiError> actual = underTest.handleException(e, request);
+
+        // Then
+        assertThat(actual.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(actual.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("3");
+    }
+
+    @Test
+    void otherInternalAuthenticationFailuresStayServerErrors() {
+        // Given
+        InternalAuthenticationServiceException e = new InternalAuthenticationServiceException(
+                "lookup failed", new IllegalStateException("database down"));
+
+        // When
+        ResponseEntity<ApiError> actual = underTest.handleException(e, request);
+
+        // Then
+        assertThat(actual.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+}
@@ -11,7 +11,9 @@ import org.springframework.http.MediaType; // Importing the MediaType class from
 import org.springframework.test.web.reactive.server.WebTestClient; // Importing the WebTestClient class from Spring WebFlux.
 import reactor.core.publisher.Mono; // Importing the Mono class from Reactor Core.
 
+import java.util.ArrayList; // Importing the ArrayList class from java.util.
 import java.util.List; // Importing the List interface from java.util.
+import java.util.Optional; // Importing the Optional class from java.util.
 import java.util.Random; // Importing the Random class from java.util.
 import java.util.UUID; // Importing the UUID class from java.util.
 
@@ -65,17 +67,7 @@ public class CustomerIntegrationTest {
                 .get(0); // Set the "Authorization" header with the JWT token for authentication.
 
         // Get all customers using a GET request and validate that the newly registered customer is present.
-        List<CustomerDTO> allCustomers = webTestClient.get() // Create a GET request using the WebTestClient.
-                .uri(CUSTOMER_PATH) // Set the URI for the request to get all customers.
-                .accept(MediaType.APPLICATION_JSON) // Set the "Accept" header to specify that the expected response format is JSON.
-                .header(AUTHORIZATION, String.format("Bearer %s", jwtToken))
-                .exchange() // Execute the GET request and get the response as a ClientResponse.
-                .expectStatus() // Begin expectation for the response status.
-                .isOk() // Expect an HTTP 200 OK response status.
-                .expectBodyList(new ParameterizedTypeReference<CustomerDTO>() { // Expect the response body to be a list of Customer objects.
-                })
-                .returnResult() // Return the response body as a ResultActions.
-                .getResponseBody(); // Get the list of Customer objects from the response body.
+        List<CustomerDTO> allCustomers = getAllCustomers(jwtToken); // Walk every page of customers.
 
         // Extract the ID of the registered customer from the response and set it in the expected customer object.
         var id = allCustomers.stream() // Convert the list of customers to a Stream.
@@ -154,17 +146,7 @@ public class CustomerIntegrationTest {
                 .get(0); // Set the "Authorization" header with the JWT token for authentication.
 
         // Get all customers using a GET request and validate that the newly registered customer is present.
-        List<CustomerDTO> allCustomers = webTestClient.get() // Create a GET request using the WebTestClient.
-                .uri(CUSTOMER_PATH) // Set the URI for the request to get all customers.
-                .accept(MediaType.APPLICATION_JSON) // Set the "Accept" header to specify that the expected response format is JSON.
-                .header(AUTHORIZATION, String.format("Bearer %s", jwtToken)) // Set the "Authorization" header with the JWT token for authentication.
-                .exchange() // Execute the GET request and get the response as a ClientResponse.
-                .expectStatus() // Begin expectation for the response status.
-                .isOk() // Expect an HTTP 200 OK response status.
-                .expectBodyList(new ParameterizedTypeReference<CustomerDTO>() { // Expect the response body to be a list of Customer objects.
-                })
-                .returnResult() // Return the response body as a ResultActions.
-                .getResponseBody(); // Get the list of Customer objects from the response body.
+        List<CustomerDTO> allCustomers = getAllCustomers(jwtToken); // Walk every page of customers.
 
         // Extract the ID of the registered customer from the response.
         var id = allCustomers.stream() // Convert the list of customers to a Stream.
@@ -224,17 +206,7 @@ public class CustomerIntegrationTest {
 
 
         // Get all customers using a GET request and validate that the newly registered customer is present.
-        List<CustomerDTO> allCustomers = webTestClient.get() // Create a GET request using the WebTestClient.
-                .uri(CUSTOMER_PATH) // Set the URI for the request to get all customers.
-                .accept(MediaType.APPLICATION_JSON) // Set the "Accept" header to specify that the expected response format is JSON.
-                .header(AUTHORIZATION, String.format("Bearer %s", jwtToken)) // Set the "Authorization" header with the JWT token for authentication.
-                .exchange() // Execute the GET request and get the response as a ClientResponse.
-                .expectStatus() // Begin expectation for the response status.
-                .isOk() // Expect an HTTP 200 OK response status.
-                .expectBodyList(new ParameterizedTypeReference<CustomerDTO>() { // Expect the response body to be a list of Customer objects.
-                })
-                .returnResult() // Return the response body as a ResultActions.
-                .getResponseBody(); // Get the list of Customer objects from the response body.
+        List<CustomerDTO> allCustomers = getAllCustomers(jwtToken); // Walk every page of customers.
 
         // Extract the ID of the registered customer from the response.
         long id = allCustomers.stream() // Convert the list of customers to a Stream.
@@ -282,4 +254,30 @@ public class CustomerIntegrationTest {
         // Assert that the updated customer matches the expected updated customer data.
         assertThat(updatedCustomer).isEqualTo(expected); // Use AssertJ to compare the updated customer with the expected updated customer.
     }
+
+    // Walk the keyset-paginated customer list by following nextCursor until the last page.
+    private List<CustomerDTO> getAllCustomers(String jwtToken) {
+        List<CustomerDTO> allCustomers = new ArrayList<>();
+        Long cursor = null;
+        do {
+            Long after = cursor;
+            CustomerPage page = webTestClient.get()
+                    .uri(uriBuilder -> uriBuilder
+                            .path(CUSTOMER_PATH)
+                            .queryParamIfPresent("after", Optional.ofNullable(after))
+                            .queryParam("limit", 1000)
+                            .build())
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(AUTHORIZATION, String.format("Bearer %s", jwtToken))
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBody(CustomerPage.class)
+                    .returnResult()
+                    .getResponseBody();
+            allCustomers.addAll(page.customers());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return allCustomers;
+    }
 }
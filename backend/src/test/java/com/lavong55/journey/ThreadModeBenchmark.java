@@ -0,0 +1,214 @@
+package com.lavong55.journey;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lavong55.Main;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/*
+Boots the application twice against the same Postgres container, once on the Tomcat platform
+thread pool and once with threads.virtual.enabled=true, and drives the read (GET customer),
+write (PUT customer) and login journeys at increasing client concurrency. Prints throughput,
+p99 latency and error count per mode, journey and concurrency so the two can be compared.
+
+Needs Docker and a Java 21+ runtime for the virtual mode. Run with:
+  mvn test-compile exec:java -Dexec.classpathScope=test \
+      -Dexec.mainClass=com.lavong55.journey.ThreadModeBenchmark -Dexec.args="10"
+where the argument is the seconds spent on each journey and concurrency (default 10).
+*/
+public class ThreadModeBenchmark {
+
+    private static final int[] CONCURRENCY = {8, 32, 128, 512};
+    private static final int USERS = 16;
+    private static final String PASSWORD = "password";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private final List<User> users = new ArrayList<>();
+
+    private ThreadModeBenchmark(int port) {
+        this.baseUrl = "http://localhost:" + port + "/api/v1";
+    }
+
+    private record User(long id, String email, String token) {
+    }
+
+    private record Result(long requests, long errors, long p99Micros) {
+    }
+
+    private interface Journey {
+        boolean run(User user) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+                .withDatabaseName("customer")
+                .withUsername("lavong55")
+                .withPassword("password")) {
+            postgres.start();
+            System.out.printf("%-8s %-6s %11s %12s %10s %8s%n",
+                    "mode", "journey", "concurrency", "requests/s", "p99 ms", "errors");
+            for (boolean virtual : new boolean[]{false, true}) {
+                try (ConfigurableApplicationContext context = start(postgres, virtual)) {
+                    int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                    new ThreadModeBenchmark(port).run(virtual ? "virtual" : "platform", seconds);
+                }
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(PostgreSQLContainer<?> postgres, boolean virtual) {
+        return new SpringApplicationBuilder(Main.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=" + postgres.getJdbcUrl(),
+                        "spring.datasource.username=" + postgres.getUsername(),
+                        "spring.datasource.password=" + postgres.getPassword(),
+                        "threads.virtual.enabled=" + virtual,
+                        "auth.login-throttle.per-ip.capacity=100000000",
+                        "auth.login-throttle.per-username.capacity=100000000")
+                .run();
+    }
+
+    private void run(String mode, int seconds) throws Exception {
+        for (int i = 0; i < USERS; i++) {
+            users.add(registerAndLogin());
+        }
+        Journey read = user -> send(HttpRequest.newBuilder(uri("/customers/" + user.id()))
+                .header("Authorization", "Bearer " + user.token())
+                .GET()) == 200;
+        Journey write = user -> send(HttpRequest.newBuilder(uri("/customers/" + user.id()))
+                .header("Authorization", "Bearer " + user.token())
+                .header("Content-Type", "application/json")
+                .PUT(json("{\"name\":\"" + UUID.randomUUID() + "\"}"))) == 200;
+        Journey login = user -> send(loginRequest(user.email())) == 200;
+
+        for (String journey : List.of("read", "write", "login")) {
+            Journey action = switch (journey) {
+                case "read" -> read;
+                case "write" -> write;
+                default -> login;
+            };
+            for (int concurrency : CONCURRENCY) {
+                Result result = drive(action, concurrency, Duration.ofSeconds(seconds));
+                System.out.printf("%-8s %-6s %11d %12.1f %10.2f %8d%n",
+                        mode, journey, concurrency,
+                        result.requests() / (double) seconds,
+                        result.p99Micros() / 1000.0,
+                        result.errors());
+            }
+        }
+    }
+
+    // Closed-loop load: each client thread sends its next request as soon as the last completes.
+    private Result drive(Journey journey, int concurrency, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int c = 0; c < concurrency; c++) {
+            User user = users.get(c % users.size());
+            futures.add(clients.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                long errors = 0;
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    boolean ok;
+                    try {
+                        ok = journey.run(user);
+                    } catch (Exception e) {
+                        ok = false;
+                    }
+                    if (!ok) {
+                        errors++;
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = (System.nanoTime() - start) / 1000;
+                }
+                long[] result = Arrays.copyOf(latencies, count + 1);
+                result[count] = errors;
+                return result;
+            }));
+        }
+        clients.shutdown();
+        clients.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+
+        long errors = 0;
+        List<long[]> samples = new ArrayList<>();
+        for (Future<long[]> future : futures) {
+            long[] result = future.get();
+            errors += result[result.length - 1];
+            samples.add(Arrays.copyOf(result, result.length - 1));
+        }
+        long[] all = samples.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        long p99 = all.length == 0 ? 0 : all[(int) Math.min(all.length - 1, Math.ceil(all.length * 0.99) - 1)];
+        return new Result(all.length, errors, p99);
+    }
+
+    private User registerAndLogin() throws Exception {
+        String email = "bench-" + UUID.randomUUID() + "@lavong55.com";
+        int status = send(HttpRequest.newBuilder(uri("/customers"))
+                .header("Content-Type", "application/json")
+                .POST(json(MAPPER.writeValueAsString(Map.of(
+                        "name", "Bench",
+                        "email", email,
+                        "password", PASSWORD,
+                        "age", 30,
+                        "gender", "MALE")))));
+        if (status != 200) {
+            throw new IllegalStateException("registration failed with " + status);
+        }
+        HttpResponse<String> response = client.send(loginRequest(email).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("login failed with " + response.statusCode());
+        }
+        JsonNode body = MAPPER.readTree(response.body());
+        return new User(body.path("customerDTO").path("id").asLong(), email, body.path("token").asText());
+    }
+
+    private HttpRequest.Builder loginRequest(String email) throws Exception {
+        return HttpRequest.newBuilder(uri("/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(json(MAPPER.writeValueAsString(Map.of(
+                        "username", email,
+                        "password", PASSWORD))));
+    }
+
+    private int send(HttpRequest.Builder request) throws Exception {
+        return client.send(request.timeout(Duration.ofSeconds(30)).build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static HttpRequest.BodyPublisher json(String body) {
+        return HttpRequest.BodyPublishers.ofString(body);
+    }
+}
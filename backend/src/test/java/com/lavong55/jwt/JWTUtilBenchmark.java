@@ -0,0 +1,91 @@
+package com.lavong55.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/*
+Compares the per-request cost of authenticating a bearer token:
+  legacyPath   - what JWTAuthenticationFilter used to do: three full parses, each rebuilding
+                 the parser and re-deriving the HMAC key
+  parseOnce    - one parse with the shared key and parser
+  verifyCached - JWTUtil.verify() in the steady state (digest + cache hit)
+
+Run with:
+  mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+      -Dexec.args="-cp %classpath com.lavong55.jwt.JWTUtilBenchmark"
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JWTUtilBenchmark {
+
+    private static final String SECRET_KEY =
+            "foobar_123456789_foobar_123456789_foobar_123456789_foobar_123456789";
+
+    private JWTUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JWTUtil(new SimpleMeterRegistry(), new TokenEpochStore(), new RevokedTokenIndex(), Duration.ofMinutes(15), 10_000, Duration.ofMinutes(5));
+        token = jwtUtil.issueToken("alex@gmail.com", "ROLE_USER");
+    }
+
+    @Benchmark
+    public boolean legacyPath() {
+        String subject = legacyClaims(token).getSubject();
+        return legacyClaims(token).getSubject().equals(subject)
+                && !legacyClaims(token).getExpiration().before(Date.from(Instant.now()));
+    }
+
+    @Benchmark
+    public boolean parseOnce() {
+        VerifiedToken verified = jwtUtil.parse(token);
+        return jwtUtil.isTokenValid(verified, verified.subject());
+    }
+
+    @Benchmark
+    public boolean verifyCached() {
+        VerifiedToken verified = jwtUtil.verify(token);
+        return jwtUtil.isTokenValid(verified, verified.subject());
+    }
+
+    private static Claims legacyClaims(String token) {
+        return Jwts
+                .parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET_KEY.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JWTUtilBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
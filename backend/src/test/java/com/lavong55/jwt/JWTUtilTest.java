@@ -0,0 +1,118 @@
+package com.lavong55.jwt;
+
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JWTUtilTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TokenEpochStore tokenEpochStore;
+    private RevokedTokenIndex revokedTokenIndex;
+    private JWTUtil underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tokenEpochStore = new TokenEpochStore();
+        revokedTokenIndex = new RevokedTokenIndex();
+        underTest = new JWTUtil(meterRegistry, tokenEpochStore, revokedTokenIndex, Duration.ofMinutes(15), 100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void verifyReturnsClaimsFromOneParse() {
+        // Given
+        String token = underTest.issueToken("alex@gmail.com", "ROLE_USER");
+
+        // When
+        VerifiedToken actual = underTest.verify(token);
+
+        // Then
+        assertThat(actual.subject()).isEqualTo("alex@gmail.com");
+        assertThat(actual.scopes()).isEqualTo(List.of("ROLE_USER"));
+        assertThat(actual.expiresAt()).isAfter(Instant.now());
+        assertThat(underTest.isTokenValid(actual, "alex@gmail.com")).isTrue();
+        assertThat(underTest.isTokenValid(actual, "jamila@gmail.com")).isFalse();
+    }
+
+    @Test
+    void revokedCustomerTokensAreNoLongerValid() {
+        // Given
+        String token = underTest.issueToken("alex@gmail.com", 1L, List.of("ROLE_USER"));
+        VerifiedToken verified = underTest.verify(token);
+        assertThat(verified.customerId()).isEqualTo(1L);
+        assertThat(underTest.isTokenValid(verified, "alex@gmail.com")).isTrue();
+
+        // When
+        tokenEpochStore.revoke(1L);
+
+        // Then
+        assertThat(underTest.isTokenValid(token, "alex@gmail.com")).isFalse();
+        String reissued = underTest.issueToken("alex@gmail.com", 1L, List.of("ROLE_USER"));
+        assertThat(underTest.isTokenValid(reissued, "alex@gmail.com")).isTrue();
+    }
+
+    @Test
+    void tokenFromAnEpochNotLoadedYetIsValid() {
+        // Given
+        tokenEpochStore.revoke(1L);
+        String token = underTest.issueToken("alex@gmail.com", 1L, List.of("ROLE_USER"));
+
+        // When
+        JWTUtil lagging = new JWTUtil(meterRegistry, new TokenEpochStore(), revokedTokenIndex,
+                Duration.ofMinutes(15), 100, Duration.ofMinutes(5));
+
+        // Then
+        assertThat(lagging.isTokenValid(token, "alex@gmail.com")).isTrue();
+    }
+
+    @Test
+    void revokedJtiIsNoLongerValid() {
+        // Given
+        IssuedToken issued = underTest.issueAccessToken("alex@gmail.com", 1L, List.of("ROLE_USER"));
+        assertThat(issued.expiresAt()).isBefore(Instant.now().plus(Duration.ofMinutes(16)));
+
+        // When
+        revokedTokenIndex.revoke(issued.jti(), issued.expiresAt());
+
+        // Then
+        assertThat(underTest.verify(issued.token()).jti()).isEqualTo(issued.jti());
+        assertThat(underTest.isTokenValid(issued.token(), "alex@gmail.com")).isFalse();
+    }
+
+    @Test
+    void verifyServesRepeatedTokensFromCache() {
+        // Given
+        String token = underTest.issueToken("alex@gmail.com", "ROLE_USER");
+
+        // When
+        VerifiedToken first = underTest.verify(token);
+        VerifiedToken second = underTest.verify(token);
+
+        // Then
+        assertThat(second).isSameAs(first);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "verifiedTokens").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void verifyRejectsTamperedToken() {
+        // Given
+        String token = underTest.issueToken("alex@gmail.com", "ROLE_USER");
+        String tampered = token.substring(0, token.length() - 2)
+                + (token.endsWith("A") ? "BB" : "AA");
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.verify(tampered))
+                .isInstanceOf(JwtException.class);
+    }
+}
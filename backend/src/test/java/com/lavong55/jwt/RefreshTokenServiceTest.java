@@ -0,0 +1,135 @@
+package com.lavong55.jwt;
+
+import com.lavong55.AbstractTestContainers;
+import com.lavong55.customer.Customer;
+import com.lavong55.customer.CustomerJDBCDataAccessService;
+import com.lavong55.customer.CustomerRowMapper;
+import com.lavong55.customer.Gender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RefreshTokenServiceTest extends AbstractTestContainers {
+
+    private final RevokedTokenIndex revokedTokenIndex = new RevokedTokenIndex();
+    private TokenEpochStore tokenEpochStore;
+    private JWTUtil jwtUtil;
+    private RefreshTokenService underTest;
+    private CustomerJDBCDataAccessService customerDao;
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate jdbcTemplate = getJdbcTemplate();
+        tokenEpochStore = new TokenEpochStore(jdbcTemplate, Duration.ZERO);
+        jwtUtil = new JWTUtil(new SimpleMeterRegistry(), tokenEpochStore, revokedTokenIndex,
+                Duration.ofMinutes(15), 100, Duration.ofMinutes(5));
+        underTest = new RefreshTokenService(jdbcTemplate, jwtUtil, revokedTokenIndex, tokenEpochStore,
+                new DataSourceTransactionManager(jdbcTemplate.getDataSource()),
+                Duration.ofDays(14), Duration.ofMinutes(5));
+
+        customerDao = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper());
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        customer = new Customer("Alex", email, "password", 20, Gender.MALE);
+        customerDao.insertCustomerIfEmailAvailable(customer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.shutdown();
+    }
+
+    @Test
+    void refreshRotatesTheRefreshToken() {
+        // Given
+        TokenPair issued = underTest.issue(customer.getId(), customer.getEmail(), List.of("ROLE_USER"));
+
+        // When
+        TokenPair refreshed = underTest.refresh(issued.refreshToken());
+
+        // Then
+        assertThat(jwtUtil.isTokenValid(refreshed.accessToken(), customer.getEmail())).isTrue();
+        assertThat(refreshed.refreshToken()).isNotEqualTo(issued.refreshToken());
+        assertThatThrownBy(() -> underTest.refresh(issued.refreshToken()))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void logoutRevokesRefreshAndAccessToken() {
+        // Given
+        TokenPair issued = underTest.issue(customer.getId(), customer.getEmail(), List.of("ROLE_USER"));
+
+        // When
+        underTest.revoke(issued.refreshToken());
+
+        // Then
+        assertThat(jwtUtil.isTokenValid(issued.accessToken(), customer.getEmail())).isFalse();
+        assertThatThrownBy(() -> underTest.refresh(issued.refreshToken()))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void revokeAllSurvivesARestart() {
+        // Given
+        TokenPair issued = underTest.issue(customer.getId(), customer.getEmail(), List.of("ROLE_USER"));
+        underTest.revokeAll(customer.getId());
+
+        // When
+        TokenEpochStore restarted = new TokenEpochStore(getJdbcTemplate(), Duration.ZERO);
+        restarted.loadOnStartup();
+        JWTUtil restartedJwtUtil = new JWTUtil(new SimpleMeterRegistry(), restarted, new RevokedTokenIndex(),
+                Duration.ofMinutes(15), 100, Duration.ofMinutes(5));
+
+        // Then
+        assertThat(restarted.currentEpoch(customer.getId())).isEqualTo(1L);
+        assertThat(restartedJwtUtil.isTokenValid(issued.accessToken(), customer.getEmail())).isFalse();
+    }
+
+    @Test
+    void revocationOfADeletedCustomerReachesOtherInstances() {
+        // Given
+        TokenPair issued = underTest.issue(customer.getId(), customer.getEmail(), List.of("ROLE_USER"));
+        TokenEpochStore otherInstance = new TokenEpochStore(getJdbcTemplate(), Duration.ZERO);
+        otherInstance.loadOnStartup();
+        assertThat(otherInstance.currentEpoch(customer.getId())).isZero();
+
+        // When
+        underTest.revokeAll(customer.getId());
+        customerDao.deleteCustomerById(customer.getId());
+        otherInstance.load();
+
+        // Then
+        JWTUtil otherJwtUtil = new JWTUtil(new SimpleMeterRegistry(), otherInstance, new RevokedTokenIndex(),
+                Duration.ofMinutes(15), 100, Duration.ofMinutes(5));
+        assertThat(otherInstance.currentEpoch(customer.getId())).isEqualTo(1L);
+        assertThat(otherJwtUtil.isTokenValid(issued.accessToken(), customer.getEmail())).isFalse();
+    }
+
+    @Test
+    void revocationIndexIsRebuiltAtStartup() {
+        // Given
+        TokenPair issued = underTest.issue(customer.getId(), customer.getEmail(), List.of("ROLE_USER"));
+        underTest.revoke(issued.refreshToken());
+        String jti = jwtUtil.verify(issued.accessToken()).jti();
+        revokedTokenIndex.prune(Instant.MAX);
+        assertThat(revokedTokenIndex.isRevoked(jti)).isFalse();
+
+        // When
+        underTest.loadOnStartup();
+
+        // Then
+        assertThat(revokedTokenIndex.isRevoked(jti)).isTrue();
+    }
+}
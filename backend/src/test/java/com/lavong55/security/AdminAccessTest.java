@@ -0,0 +1,54 @@
+package com.lavong55.security;
+
+import com.lavong55.customer.CustomerPrincipal;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdminAccessTest {
+
+    private final AdminAccess underTest = new AdminAccess(List.of(" Ops@Gmail.com ", ""));
+
+    @Test
+    void selfRegisteredCustomerIsRejected() {
+        assertThat(underTest.isAdmin(customer("alex@gmail.com", "ROLE_USER"))).isFalse();
+    }
+
+    @Test
+    void listedEmailIsAdmittedIgnoringCase() {
+        assertThat(underTest.isAdmin(customer("ops@gmail.com", "ROLE_USER"))).isTrue();
+    }
+
+    @Test
+    void adminAuthorityIsAdmitted() {
+        assertThat(underTest.isAdmin(customer("alex@gmail.com", AdminAccess.ADMIN))).isTrue();
+    }
+
+    @Test
+    void anonymousIsRejected() {
+        AnonymousAuthenticationToken anonymous = new AnonymousAuthenticationToken(
+                "key", "anonymousUser", List.of(new SimpleGrantedAuthority("ROLE_ANONYMOUS")));
+
+        assertThat(underTest.isAdmin(anonymous)).isFalse();
+        assertThat(underTest.isAdmin(null)).isFalse();
+    }
+
+    @Test
+    void noAdminEmailsByDefault() {
+        AdminAccess defaults = new AdminAccess(List.of());
+
+        assertThat(defaults.isAdmin(customer("ops@gmail.com", "ROLE_USER"))).isFalse();
+    }
+
+    private static UsernamePasswordAuthenticationToken customer(String email, String role) {
+        List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority(role));
+        return new UsernamePasswordAuthenticationToken(
+                new CustomerPrincipal(1L, email, authorities), null, authorities);
+    }
+}
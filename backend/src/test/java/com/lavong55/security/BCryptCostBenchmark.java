@@ -0,0 +1,74 @@
+package com.lavong55.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/*
+Measures one BCrypt hash per strength on this host and recommends the highest strength whose
+hash still fits the target (default 250 ms; each step doubles the cost). Set the result as
+password-hashing.bcrypt-strength; existing hashes are upgraded on their owners' next login.
+
+Run with:
+  mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+      -Dexec.args="-cp %classpath com.lavong55.security.BCryptCostBenchmark 250"
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BCryptCostBenchmark {
+
+    @Param({"8", "9", "10", "11", "12", "13", "14"})
+    public int strength;
+
+    private BCryptPasswordEncoder encoder;
+
+    @Setup
+    public void setUp() {
+        encoder = new BCryptPasswordEncoder(strength);
+    }
+
+    @Benchmark
+    public String encode() {
+        return encoder.encode("correct horse battery staple");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        double targetMillis = args.length > 0 ? Double.parseDouble(args[0]) : 250;
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(BCryptCostBenchmark.class.getSimpleName())
+                .build())
+                .run();
+        results.stream()
+                .filter(result -> result.getPrimaryResult().getScore() <= targetMillis)
+                .max(Comparator.comparingInt(result ->
+                        Integer.parseInt(result.getParams().getParam("strength"))))
+                .ifPresentOrElse(
+                        result -> System.out.printf(
+                                "password-hashing.bcrypt-strength: %s (%.1f ms per hash, target %.0f ms)%n",
+                                result.getParams().getParam("strength"),
+                                result.getPrimaryResult().getScore(),
+                                targetMillis),
+                        () -> System.out.printf("No measured strength fits %.0f ms; even 8 is too slow on this host%n", targetMillis));
+    }
+}
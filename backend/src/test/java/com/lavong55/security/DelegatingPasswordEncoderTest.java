@@ -0,0 +1,53 @@
+package com.lavong55.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DelegatingPasswordEncoderTest {
+
+    private final PasswordEncoder underTest = SecurityConfig.delegatingPasswordEncoder("bcrypt", 5);
+
+    @Test
+    void newHashesArePrefixedAndCurrent() {
+        // When
+        String hash = underTest.encode("password");
+
+        // Then
+        assertThat(hash).startsWith("{bcrypt}");
+        assertThat(underTest.matches("password", hash)).isTrue();
+        assertThat(underTest.upgradeEncoding(hash)).isFalse();
+    }
+
+    @Test
+    void legacyUnprefixedHashMatchesAndNeedsUpgrade() {
+        // Given a hash stored before prefixes were introduced
+        String legacy = new BCryptPasswordEncoder(4).encode("password");
+
+        // Then
+        assertThat(underTest.matches("password", legacy)).isTrue();
+        assertThat(underTest.upgradeEncoding(legacy)).isTrue();
+    }
+
+    @Test
+    void lowerCostHashNeedsUpgrade() {
+        // Given
+        String weaker = "{bcrypt}" + new BCryptPasswordEncoder(4).encode("password");
+
+        // Then
+        assertThat(underTest.matches("password", weaker)).isTrue();
+        assertThat(underTest.upgradeEncoding(weaker)).isTrue();
+    }
+
+    @Test
+    void otherAlgorithmNeedsUpgrade() {
+        // Given
+        String pbkdf2 = SecurityConfig.delegatingPasswordEncoder("pbkdf2", 5).encode("password");
+
+        // Then
+        assertThat(underTest.matches("password", pbkdf2)).isTrue();
+        assertThat(underTest.upgradeEncoding(pbkdf2)).isTrue();
+    }
+}
@@ -0,0 +1,111 @@
+package com.lavong55.security;
+
+import com.lavong55.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHasherTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private SimpleMeterRegistry meterRegistry;
+    private PasswordHasher underTest;
+
+    // Stand-in for BCrypt that holds its worker until the test releases it.
+    private final PasswordEncoder slowEncoder = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hashed-" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword.equals("hashed-" + rawPassword);
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new PasswordHasher(slowEncoder, 1, 0, Duration.ofSeconds(2), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        underTest.shutdown();
+    }
+
+    @Test
+    void boundedEncoderRunsOnPool() {
+        // Given
+        release.countDown();
+
+        // When
+        String actual = underTest.boundedEncoder().encode("password");
+
+        // Then
+        assertThat(actual).isEqualTo("hashed-password");
+        assertThat(underTest.boundedEncoder().matches("password", actual)).isTrue();
+        assertThat(meterRegistry.get("password.hashing.time").tag("operation", "encode").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void boundedEncoderRejectsWhenSaturated() throws InterruptedException {
+        // Given the only interactive slot is taken by a registration
+        CompletableFuture<String> registration =
+                CompletableFuture.supplyAsync(() -> underTest.boundedEncoder().encode("first"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.boundedEncoder().encode("password"))
+                .isInstanceOf(ServiceOverloadedException.class)
+                .satisfies(e -> assertThat(((ServiceOverloadedException) e).getRetryAfter())
+                        .isEqualTo(Duration.ofSeconds(2)));
+        assertThat(meterRegistry.get("password.hashing.rejected").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(registration.join()).isEqualTo("hashed-first");
+    }
+
+    @Test
+    void loginIsServedWhileBulkHashingSaturatesThePool() throws Exception {
+        // Given an import holds every bulk permit and the only worker
+        CompletableFuture<String> bulk = underTest.encodeAsync("bulk");
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<CompletableFuture<String>> nextBulk = CompletableFuture.supplyAsync(
+                () -> underTest.encodeAsync("next"));
+
+        // When a login arrives
+        CompletableFuture<Boolean> login = CompletableFuture.supplyAsync(
+                () -> underTest.boundedEncoder().matches("password", "hashed-password"));
+
+        // Then it is queued, not refused, while further bulk work waits for a permit
+        Thread.sleep(100);
+        assertThat(nextBulk).isNotDone();
+        release.countDown();
+        assertThat(login.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(bulk.join()).isEqualTo("hashed-bulk");
+        assertThat(nextBulk.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS)).isEqualTo("hashed-next");
+        assertThat(meterRegistry.find("password.hashing.rejected").counter().count()).isZero();
+    }
+}
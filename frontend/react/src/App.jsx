@@ -1,4 +1,6 @@
 import {
+    Button,
+    Center,
     Wrap,
     WrapItem,
     Spinner,
@@ -14,24 +16,41 @@ import {errorNotification} from "./services/notification.js";
 const App = () => {
 
     const [customers, setCustomers] = useState([]);
+    // Cursor of the next page; null once the last page has been loaded.
+    const [nextCursor, setNextCursor] = useState(null);
     const [loading, setLoading] = useState(false);
+    const [loadingMore, setLoadingMore] = useState(false);
     const [err, setError] = useState("");
 
+    const showError = (err) => {
+        setError(err.response.data.message)
+        errorNotification(
+            err.code,
+            err.response.data.message
+        )
+    }
+
+    // Reloads from the first page, e.g. after a customer was created, updated or deleted.
     const fetchCustomers = () => {
         setLoading(true);
         getCustomers().then(res => {
-            setCustomers(res.data)
-        }).catch(err => {
-            setError(err.response.data.message)
-            errorNotification(
-                err.code,
-                err.response.data.message
-            )
-        }).finally(() => {
+            setCustomers(res.data.customers)
+            setNextCursor(res.data.nextCursor)
+        }).catch(showError).finally(() => {
             setLoading(false)
         })
     }
 
+    const loadMoreCustomers = () => {
+        setLoadingMore(true);
+        getCustomers(nextCursor).then(res => {
+            setCustomers(loaded => [...loaded, ...res.data.customers])
+            setNextCursor(res.data.nextCursor)
+        }).catch(showError).finally(() => {
+            setLoadingMore(false)
+        })
+    }
+
     useEffect(() => {
         fetchCustomers();
     }, [])
@@ -79,7 +98,7 @@ const App = () => {
             />
             <Wrap justify={"center"} spacing={"30px"}>
                 {customers.map((customer, index) => (
-                    <WrapItem key={index}>
+                    <WrapItem key={customer.id}>
                         <CardWithImage
                             {...customer}
                             imageNumber={index}
@@ -88,6 +107,16 @@ const App = () => {
                     </WrapItem>
                 ))}
             </Wrap>
+            {nextCursor != null && (
+                <Center mt={8}>
+                    <Button
+                        onClick={loadMoreCustomers}
+                        isLoading={loadingMore}
+                    >
+                        Load more
+                    </Button>
+                </Center>
+            )}
         </SidebarWithHeader>
     )
 }
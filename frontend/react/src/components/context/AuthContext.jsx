@@ -4,7 +4,11 @@ import {
     useEffect,
     useState
 } from "react";
-import {getCustomers, login as performLogin} from "../../services/client.js";
+import {
+    getCustomers,
+    login as performLogin,
+    logout as performLogout
+} from "../../services/client.js";
 import jwtDecode from "jwt-decode";
 
 const AuthContext = createContext({});
@@ -29,6 +33,7 @@ const AuthProvider = ({ children }) => {
             performLogin(usernameAndPassword).then(res => {
                 const jwtToken = res.headers["authorization"];
                 localStorage.setItem("access_token", jwtToken);
+                localStorage.setItem("refresh_token", res.data.refreshToken);
 
                 const decodedToken = jwtDecode(jwtToken);
 
@@ -44,7 +49,13 @@ const AuthProvider = ({ children }) => {
     }
 
     const logOut = () => {
+        const refreshToken = localStorage.getItem("refresh_token");
+        if (refreshToken) {
+            // Best effort: revoke the session server-side, but log out locally regardless.
+            performLogout(refreshToken).catch(() => {});
+        }
         localStorage.removeItem("access_token")
+        localStorage.removeItem("refresh_token")
         setCustomer(null)
     }
 
@@ -54,7 +65,8 @@ const AuthProvider = ({ children }) => {
             return false;
         }
         const { exp: expiration } = jwtDecode(token);
-        if (Date.now() > expiration * 1000) {
+        // An expired access token is renewed on the next request while a refresh token is held.
+        if (Date.now() > expiration * 1000 && !localStorage.getItem("refresh_token")) {
             logOut()
             return false;
         }
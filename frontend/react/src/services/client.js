@@ -6,11 +6,31 @@ const getAuthConfig = () => ({
     }
 })
 
-export const getCustomers = async () => {
+// Access tokens are short-lived: on a rejected request, trade the refresh token for a new
+// pair once and replay the request with the new access token.
+axios.interceptors.response.use(undefined, async (error) => {
+    const original = error.config;
+    const refreshToken = localStorage.getItem("refresh_token");
+    const status = error.response?.status;
+    if (!original || original._retried || !refreshToken
+        || (status !== 401 && status !== 403)
+        || original.url?.includes("/api/v1/auth/")) {
+        throw error;
+    }
+    original._retried = true;
+    const res = await refreshTokens(refreshToken);
+    original.headers.Authorization = `Bearer ${res.data.accessToken}`;
+    return axios(original);
+})
+
+export const getCustomers = async (after, limit) => {
     try {
         return await axios.get(
             `${import.meta.env.VITE_API_BASE_URL}/api/v1/customers`,
-            getAuthConfig()
+            {
+                ...getAuthConfig(),
+                params: { after, limit }
+            }
         )
     } catch (e) {
         throw e;
@@ -60,4 +80,31 @@ export const login = async (usernameAndPassword) => {
     } catch (e) {
         throw e;
     }
-}
\ No newline at end of file
+}
+
+export const refreshTokens = async (refreshToken) => {
+    try {
+        const res = await axios.post(
+            `${import.meta.env.VITE_API_BASE_URL}/api/v1/auth/refresh`,
+            { refreshToken }
+        )
+        localStorage.setItem("access_token", res.data.accessToken);
+        localStorage.setItem("refresh_token", res.data.refreshToken);
+        return res;
+    } catch (e) {
+        localStorage.removeItem("access_token");
+        localStorage.removeItem("refresh_token");
+        throw e;
+    }
+}
+
+export const logout = async (refreshToken) => {
+    try {
+        return await axios.post(
+            `${import.meta.env.VITE_API_BASE_URL}/api/v1/auth/logout`,
+            { refreshToken }
+        )
+    } catch (e) {
+        throw e;
+    }
+}